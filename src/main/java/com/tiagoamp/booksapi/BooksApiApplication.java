@@ -3,7 +3,6 @@ package com.tiagoamp.booksapi;
 import com.tiagoamp.booksapi.model.AppUser;
 import com.tiagoamp.booksapi.model.Role;
 import com.tiagoamp.booksapi.service.UserService;
-import org.modelmapper.ModelMapper;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
@@ -11,8 +10,6 @@ import org.springframework.context.MessageSource;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.support.ReloadableResourceBundleMessageSource;
 import org.springframework.security.config.annotation.method.configuration.EnableGlobalMethodSecurity;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.validation.beanvalidation.LocalValidatorFactoryBean;
 
 @SpringBootApplication
@@ -32,18 +29,6 @@ public class BooksApiApplication {
 		};
 	}
 
-	@Bean
-	public ModelMapper getModelMapper() {
-		var mapper = new ModelMapper();
-		mapper.getConfiguration().setSkipNullEnabled(true);
-		return mapper;
-	}
-
-	@Bean
-	public PasswordEncoder passwordEncoder() {
-		return new BCryptPasswordEncoder();
-	}
-
 	@Bean
 	public MessageSource messageSource() {
 		ReloadableResourceBundleMessageSource messageSource = new ReloadableResourceBundleMessageSource();
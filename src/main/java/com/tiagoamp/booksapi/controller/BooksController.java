@@ -1,61 +1,194 @@
 package com.tiagoamp.booksapi.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.tiagoamp.booksapi.dto.*;
+import com.tiagoamp.booksapi.exception.BatchTooLargeException;
+import com.tiagoamp.booksapi.model.Book;
+import com.tiagoamp.booksapi.model.BookFilter;
+import com.tiagoamp.booksapi.model.CursorPage;
+import com.tiagoamp.booksapi.model.ItemResult;
+import com.tiagoamp.booksapi.model.Review;
 import com.tiagoamp.booksapi.service.BooksService;
 import com.tiagoamp.booksapi.util.BookMapper;
+import com.tiagoamp.booksapi.util.BookResponseCache;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import jakarta.annotation.security.RolesAllowed;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.validation.ConstraintViolation;
 import jakarta.validation.Valid;
+import jakarta.validation.Validator;
 import lombok.RequiredArgsConstructor;
+import org.springdoc.core.annotations.ParameterObject;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.hateoas.MediaTypes;
+import org.springframework.http.HttpOutputMessage;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.GenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageConverter;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.util.DigestUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import java.util.regex.Pattern;
 
 import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.linkTo;
 import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
+import static org.springframework.http.MediaType.APPLICATION_NDJSON_VALUE;
 
 @RestController
 @RequestMapping("/books")
 @RequiredArgsConstructor
 public class BooksController {
 
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+    private static final String HAL_ETAG_SUFFIX = "-hal";  // tells the representations with links from the plain ones
+    private static final Pattern VERSION_ETAG = Pattern.compile("\"(\\d{1,9})(?:" + HAL_ETAG_SUFFIX + ")?\"");
+    private static final int NO_VERSION = -1;  // never matches a book version
+    private static final int EXPORT_FLUSH_LINES = 1000;
+
     private final BooksService service;
     private final BookMapper bookMapper;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final BookResponseCache responseCache;
+    private final RequestMappingHandlerAdapter handlerAdapter;  // its message converters serialize cached responses
+
+    @Value("${batch.max-size:1000}")
+    private int batchMaxSize;  // items of a batch registration, inserted in a single transaction
+
+    @Value("${import.commit-size:500}")
+    private int importCommitSize;  // lines of an import committed per transaction
 
-    @Operation( summary = "Find books", description = "Get registered books" )
-    @GetMapping
+    @Operation( summary = "Find books", description = "Get registered books, one page at a time (at most 100 per page). " +
+            "Sending the 'after' parameter (empty for the first page) switches to cursor pagination: " +
+            "the token for the next page is returned in the '" + NEXT_CURSOR_HEADER + "' header. " +
+            "Books can be filtered by 'language', a range of years of publication ('yearFrom', 'yearTo', inclusive) " +
+            "and their 'author' names: each word sent must begin a word of them (first names, surnames, co-authors). Filters must be sent again along with the 'after' token. " +
+            "The number of registered books is returned in the '" + TOTAL_COUNT_HEADER + "' header: " +
+            "for filtered books, only with their first page (page 0, or an empty 'after'), as they are counted by the database. " +
+            "Sending 'include=reviews' embeds the first reviews of each book. " +
+            "Pages without embedded reviews are sent with an ETag, for conditional requests (If-None-Match). " +
+            "Accepting only '" + MediaType.APPLICATION_JSON_VALUE + "' returns books without links" )
+    @GetMapping(produces = MediaTypes.HAL_JSON_VALUE)  // also for */*, preferred in declaration order
     @RolesAllowed( {"ADMIN","USER"} ) // needs to enable 'EnableGlobalMethodSecurity' at security class to work
-    public ResponseEntity<List<BookResponse>> getBooks(
-            @RequestParam(value = "size", required = false, defaultValue = "3") Integer size,
-            @RequestParam(value = "page", required = false, defaultValue = "0") Integer pageNumber,
-            @RequestParam(value = "sort", required = false, defaultValue = "title") String sortField,
-            @RequestParam(value = "direction", required = false, defaultValue = "ASC") String sortDirection) {
-        var books = service.findBooks(size, pageNumber, sortField, sortDirection);
-        var booksResp = books.stream().map(bookMapper::toResponse)
-                .map(b -> b.add( linkTo(methodOn(this.getClass()).getBook(b.getId())).withSelfRel() ))
-                .toList();
-        return ResponseEntity.ok(booksResp);
+    public ResponseEntity<List<BookResponse>> getBooks(@ModelAttribute @ParameterObject BooksQuery query,
+                                                       ServletWebRequest request) {
+        // self links only differ by id: built once, expanded for each book
+        var selfLink = LinkTemplate.of(linkTo(methodOn(this.getClass()).getBook(null, null, null)).withSelfRel(), "id");
+        return findBooks(query, request, halRepresentation(b -> b.add(selfLink.expand(b.getId()))));
+    }
+
+    @Operation(hidden = true)  // documented along with getBooks
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    @RolesAllowed( {"ADMIN","USER"} )
+    public ResponseEntity<List<PlainBookResponse>> getPlainBooks(@ModelAttribute @ParameterObject BooksQuery query,
+                                                                 ServletWebRequest request) {
+        return findBooks(query, request, plainRepresentation());
     }
 
-    @Operation(summary = "Find book by id", description = "Find book by id",
+    @Operation(summary = "Find book by id", description = "Find book by id. " +
+            "Sending 'include=reviews' embeds its first reviews. " +
+            "Without embedded reviews, the book is sent with ETag and Last-Modified headers, " +
+            "for conditional requests (If-None-Match, If-Modified-Since). " +
+            "Accepting only '" + MediaType.APPLICATION_JSON_VALUE + "' returns the book without links",
             responses = {  @ApiResponse( responseCode = "404", description = "Book not found",
                     content = { @Content(schema = @Schema(implementation = ErrorResponse.class)) }) } )
-    @GetMapping("/{id}")
+    @GetMapping(value = "/{id}", produces = MediaTypes.HAL_JSON_VALUE)
+    @RolesAllowed( {"ADMIN","USER"} )
+    public ResponseEntity<BookResponse> getBook(@PathVariable("id") Integer id,
+            @RequestParam(value = "include", required = false) List<String> include,
+            ServletWebRequest request) {
+        return findBook(id, includesReviews(include), request, halRepresentation(this::addBookLinks));
+    }
+
+    @Operation(hidden = true)  // documented along with getBook
+    @GetMapping(value = "/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
+    @RolesAllowed( {"ADMIN","USER"} )
+    public ResponseEntity<PlainBookResponse> getPlainBook(@PathVariable("id") Integer id,
+            @RequestParam(value = "include", required = false) List<String> include,
+            ServletWebRequest request) {
+        return findBook(id, includesReviews(include), request, plainRepresentation());
+    }
+
+    @Operation( summary = "Search books", description = "Find books by words of their title, authors or reviews, " +
+            "case and accent insensitive. Books matching more of the words, mostly in their title, come first. " +
+            "The number of matching books is returned in the '" + TOTAL_COUNT_HEADER + "' header" )
+    @GetMapping("/search")
+    @RolesAllowed( {"ADMIN","USER"} )
+    public ResponseEntity<List<BookResponse>> searchBooks(
+            @RequestParam(value = "q") String query,
+            @RequestParam(value = "size", required = false, defaultValue = "10") Integer size,
+            @RequestParam(value = "page", required = false, defaultValue = "0") Integer pageNumber) {
+        var hits = service.searchBooks(query, size, pageNumber);
+        var selfLink = LinkTemplate.of(linkTo(methodOn(this.getClass()).getBook(null, null, null)).withSelfRel(), "id");
+        var booksResp = hits.books().stream()
+                .map(b -> bookMapper.toResponse(b).add(selfLink.expand(b.getId())))
+                .toList();
+        return ResponseEntity.ok().header(TOTAL_COUNT_HEADER, String.valueOf(hits.total())).body(booksResp);
+    }
+
+    @Operation( summary = "Suggest book titles", description = "Get the titles starting with the prefix, " +
+            "case and accent insensitive, in alphabetical order. Meant for autocompletion as the user types" )
+    @GetMapping("/suggest")
     @RolesAllowed( {"ADMIN","USER"} )
-    public ResponseEntity<BookResponse> getBook(@PathVariable("id") Integer id) {
-        var book = service.findBookById(id);
-        var bookResp = bookMapper.toResponse(book)
-                .add( linkTo(methodOn(this.getClass()).getReviews(id)).withRel("reviews") )
-                .add( linkTo(methodOn(this.getClass()).getBooks(null, null, null, null))
-                        .withRel("books") );
-        return ResponseEntity.ok(bookResp);
+    public ResponseEntity<List<String>> suggestTitles(
+            @RequestParam(value = "prefix") String prefix,
+            @RequestParam(value = "size", required = false, defaultValue = "10") Integer size) {
+        return ResponseEntity.ok(service.suggestTitles(prefix, size));
+    }
+
+    @Operation(summary = "Export books", description = "Stream all registered books, ordered by id, " +
+            "one JSON object per line. Sending 'include=reviews' adds all the reviews of each book")
+    @GetMapping(value = "/export", produces = APPLICATION_NDJSON_VALUE)
+    @RolesAllowed( {"ADMIN","USER"} )
+    public void exportBooks(@RequestParam(value = "include", required = false) List<String> include,
+                            HttpServletResponse response) throws IOException {
+        var json = ndjsonGenerator(response);
+        var lines = new AtomicInteger();
+        // books are written as they are read from the database, never holding the catalog in memory
+        if (includesReviews(include))
+            service.forEachBookWithReviews((book, reviews) -> {
+                var bookResp = bookMapper.toPlainResponse(book);
+                plainRepresentation().setReviews().accept(bookResp, reviews);
+                writeLine(json, bookResp, lines.incrementAndGet() % EXPORT_FLUSH_LINES == 0);
+            });
+        else
+            service.forEachBook(book -> writeLine(json, bookMapper.toPlainResponse(book),
+                    lines.incrementAndGet() % EXPORT_FLUSH_LINES == 0));
+        json.close();
     }
 
     @Operation(summary = "Register new book", description = "Register new book",
@@ -67,49 +200,153 @@ public class BooksController {
     public ResponseEntity<BookResponse> createBook(@RequestBody @Valid BookRequest request) {
         var book = bookMapper.toModel(request);
         book = service.createBook(book);
-        var bookResp = bookMapper.toResponse(book);
-        return ResponseEntity.created(URI.create(book.getId().toString())).body(bookResp);
+        var bookResp = addBookLinks(bookMapper.toResponse(book));  // the representation its ETag tells
+        return ResponseEntity.created(URI.create(book.getId().toString()))
+                .eTag(eTagOf(book, MediaTypes.HAL_JSON)).lastModified(book.getLastModified())
+                .body(bookResp);
+    }
+
+    @Operation(summary = "Register many books", description = "Register many books at once. " +
+            "Each item gets its own result, in request order: the created book (status 201) " +
+            "or the error that rejected it (status 400). Larger batches are sent through the import",
+            responses = {  @ApiResponse( responseCode = "400", description = "More items than a batch allows",
+                    content = { @Content(schema = @Schema(implementation = ErrorResponse.class)) })  } )
+    @PostMapping("batch")
+    @RolesAllowed("ADMIN")
+    public ResponseEntity<List<BatchItemResponse>> createBooks(@RequestBody List<BookRequest> requests) {
+        if (requests.size() > batchMaxSize)
+            throw new BatchTooLargeException(requests.size(), batchMaxSize);
+        var itemsResp = new BatchItemResponse[requests.size()];
+        var books = new ArrayList<Book>();
+        var bookIndexes = new ArrayList<Integer>();
+        for (int i = 0; i < requests.size(); i++) {  // invalid items are rejected without failing the whole batch
+            if (requests.get(i) == null) {
+                itemsResp[i] = new BatchItemResponse(i, HttpStatus.BAD_REQUEST.value(), null,
+                        new ErrorResponse("ValidationException", "Missing item"));
+                continue;
+            }
+            var violations = validator.validate(requests.get(i));
+            if (violations.isEmpty()) {
+                books.add(bookMapper.toModel(requests.get(i)));
+                bookIndexes.add(i);
+            } else {
+                itemsResp[i] = new BatchItemResponse(i, HttpStatus.BAD_REQUEST.value(), null, validationError(violations));
+            }
+        }
+        var results = service.createBooks(books);
+        for (int j = 0; j < results.size(); j++)
+            itemsResp[bookIndexes.get(j)] = itemResponse(bookIndexes.get(j), results.get(j));
+        return ResponseEntity.ok(Arrays.asList(itemsResp));
+    }
+
+    @Operation(summary = "Import books", description = "Register books read from a stream of JSON objects, one per line, " +
+            "each optionally with its 'reviews' (as written by the export). Lines are committed in chunks, " +
+            "and the result of each line is streamed back once its chunk is committed, one JSON object per line: " +
+            "the created book (status 201) or the error that rejected the line (status 400, or 409 when concurrent " +
+            "writes kept its chunk from being committed)")
+    @PostMapping(value = "import", consumes = APPLICATION_NDJSON_VALUE, produces = APPLICATION_NDJSON_VALUE)
+    @RolesAllowed("ADMIN")
+    public void importBooks(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        var reader = new BufferedReader(new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8));
+        var json = ndjsonGenerator(response);
+        var chunk = new ImportChunk();
+        // lines are read, committed and answered chunk by chunk, never holding the whole body in memory
+        String line;
+        for (int index = 0; (line = reader.readLine()) != null; index++) {
+            if (line.isBlank())
+                continue;
+            addImportLine(chunk, index, line);
+            if (chunk.size() >= importCommitSize) {
+                importChunk(chunk, json);
+                chunk = new ImportChunk();
+            }
+        }
+        importChunk(chunk, json);
+        json.close();
     }
 
-    @Operation(summary = "Update book info", description = "Update book info",
+    @Operation(summary = "Update book info", description = "Update book info. " +
+            "Sending the book ETag in If-Match updates it only if it was not modified since",
             responses = {
                     @ApiResponse( responseCode = "400", description = "Invalid Request data",
                             content = { @Content(schema = @Schema(implementation = ErrorResponse.class)) } ),
                     @ApiResponse( responseCode = "404", description = "Book not found",
+                            content = { @Content(schema = @Schema(implementation = ErrorResponse.class)) } ),
+                    @ApiResponse( responseCode = "409", description = "Book modified concurrently, without If-Match",
+                            content = { @Content(schema = @Schema(implementation = ErrorResponse.class)) } ),
+                    @ApiResponse( responseCode = "412", description = "Book modified since the ETag in If-Match",
                             content = { @Content(schema = @Schema(implementation = ErrorResponse.class)) } )
             })
     @PutMapping("{id}")
     @RolesAllowed("ADMIN")
-    public ResponseEntity<BookResponse> updateBook(@PathVariable("id") Integer id, @RequestBody @Valid BookRequest request) {
+    public ResponseEntity<BookResponse> updateBook(@PathVariable("id") Integer id, @RequestBody @Valid BookRequest request,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         var book = bookMapper.toModel(request);
         book.setId(id);
+        book.setVersion(versionOf(ifMatch));  // checked in the same transaction as the update
         book = service.updateBook(book);
-        var bookResp = bookMapper.toResponse(book);
-        return ResponseEntity.ok(bookResp);
+        var bookResp = addBookLinks(bookMapper.toResponse(book));  // the representation its ETag tells
+        return ResponseEntity.ok().eTag(eTagOf(book, MediaTypes.HAL_JSON)).lastModified(book.getLastModified()).body(bookResp);
     }
 
     @Operation(
-            summary = "Delete book by id", description = "Delete book by id",
+            summary = "Delete book by id", description = "Delete book by id. " +
+            "Sending the book ETag in If-Match deletes it only if it was not modified since",
             responses = {  @ApiResponse( responseCode = "404", description = "Book not found",
+                    content = { @Content(schema = @Schema(implementation = ErrorResponse.class)) }),
+                    @ApiResponse( responseCode = "409", description = "Book modified concurrently, without If-Match",
+                    content = { @Content(schema = @Schema(implementation = ErrorResponse.class)) }),
+                    @ApiResponse( responseCode = "412", description = "Book modified since the ETag in If-Match",
                     content = { @Content(schema = @Schema(implementation = ErrorResponse.class)) })  })
     @DeleteMapping("{id}")
     @RolesAllowed("ADMIN") // needs to enable 'EnableGlobalMethodSecurity' at security class to work
     @ResponseStatus(HttpStatus.NO_CONTENT)  // This annotation helps Swagger to automatically generate documentation
-    public ResponseEntity deleteBook(@PathVariable("id") Integer id) {
-        service.deleteBook(id);
+    public ResponseEntity deleteBook(@PathVariable("id") Integer id,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        service.deleteBook(id, versionOf(ifMatch));
         return ResponseEntity.noContent().build();
     }
 
-    @Operation( summary = "Find reviews", description = "Get review of a book" )
+    @Operation( summary = "Find reviews", description = "Get reviews of a book, one page at a time (at most 100 per page). " +
+            "Sending the 'after' parameter (empty for the first page) switches to cursor pagination: " +
+            "the token for the next page is returned in the '" + NEXT_CURSOR_HEADER + "' header. " +
+            "Accepting '" + APPLICATION_NDJSON_VALUE + "' streams all reviews instead, one JSON object per line" )
     @RolesAllowed( {"ADMIN","USER"} )
     @GetMapping("{bookId}/reviews")
-    public ResponseEntity<List<ReviewResponse>> getReviews(@PathVariable("bookId") Integer bookId) {
-        var reviews = service.findReviews(bookId);
-        var reviewsResp = reviews.stream()
-                .map(ReviewResponse::new)
-                .map(r -> r.add( linkTo(methodOn(this.getClass()).getBook(bookId)).withRel("book") ))
+    public ResponseEntity<List<ReviewResponse>> getReviews(
+            @PathVariable("bookId") Integer bookId,
+            @RequestParam(value = "size", required = false, defaultValue = "20") Integer size,
+            @RequestParam(value = "page", required = false, defaultValue = "0") Integer pageNumber,
+            @RequestParam(value = "after", required = false) String after) {
+        var page = after == null ? service.findReviews(bookId, size, pageNumber)
+                : service.findReviews(bookId, size, after);
+        var bookLink = linkTo(methodOn(this.getClass()).getBook(bookId, null, null)).withRel("book").expand();  // same link for every review
+        var reviewsResp = page.getItems().stream()
+                .map(r -> new ReviewResponse(r.getText()).add(bookLink))
                 .toList();
-        return ResponseEntity.ok(reviewsResp);
+        var response = ResponseEntity.ok();
+        if (page.hasNext())
+            response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+        return response.body(reviewsResp);
+    }
+
+    @Operation(hidden = true)  // documented along with getReviews
+    @RolesAllowed( {"ADMIN","USER"} )
+    @GetMapping(value = "{bookId}/reviews", produces = APPLICATION_NDJSON_VALUE)
+    public void streamReviews(@PathVariable("bookId") Integer bookId, HttpServletResponse response) throws IOException {
+        var json = ndjsonGenerator(response);
+        // reviews are written as they are read, a missing book fails before anything is written
+        service.forEachReview(bookId, review -> {
+            try {
+                json.writeStartObject();
+                json.writeStringField("review", review.getText());
+                json.writeEndObject();
+                json.writeRaw('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        json.close();
     }
 
     @Operation(
@@ -130,4 +367,312 @@ public class BooksController {
         return ResponseEntity.created(URI.create("/")).body(reviewResp);
     }
 
+
+    private String eTagOf(Book book, MediaType mediaType) {
+        return eTagOf(book.getVersion().toString(), mediaType);  // strong ETag, quoted by spring
+    }
+
+    private String eTagOf(CursorPage<Book> page, Long count, MediaType mediaType) {
+        // a page changes when any of its books is updated, or when books are added or removed before it
+        var content = new StringBuilder().append(count).append(';').append(page.getNextCursor());
+        page.getItems().forEach(b -> content.append(';').append(b.getId()).append(':').append(b.getVersion()));
+        return eTagOf(DigestUtils.md5DigestAsHex(content.toString().getBytes(StandardCharsets.UTF_8)), mediaType);
+    }
+
+    /**
+     * ETag of the representation: the HAL and plain JSON ones differ byte for byte, so they never share a strong ETag
+     */
+    private String eTagOf(String tag, MediaType mediaType) {
+        return MediaTypes.HAL_JSON.equals(mediaType) ? tag + HAL_ETAG_SUFFIX : tag;
+    }
+
+    private Integer versionOf(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*"))
+            return null;  // unconditional
+        var matcher = VERSION_ETAG.matcher(ifMatch.trim());
+        return matcher.matches() ? Integer.valueOf(matcher.group(1)) : NO_VERSION;  // weak or unknown ETags never match
+    }
+
+    /**
+     * Page of books in the representation, with the first reviews of each book when asked
+     */
+    private <T> ResponseEntity<List<T>> findBooks(BooksQuery query, ServletWebRequest request, Representation<T> representation) {
+        var filter = query.filter();
+        var page = query.after() == null
+                ? service.findBooks(query.size(), query.page(), query.sort(), query.direction(), filter)
+                : service.findBooks(query.size(), query.after(), query.sort(), query.direction(), filter);
+        // the registered books are counted in memory, the filtered ones by the database: once, along with their first page
+        Long count = filter.isEmpty() || query.firstPage() ? service.countBooks(filter) : null;
+        // reviews are not versioned, so only pages without them can be validated
+        if (!query.withReviews() && notModified(request, eTagOf(page, count, representation.mediaType()), -1))
+            return null;  // 304, nothing mapped nor serialized
+        var booksResp = page.getItems().stream().map(representation.toResponse()).toList();
+        if (query.withReviews())
+            embedReviews(booksResp, representation);
+        return pageResponse(page, count).body(booksResp);
+    }
+
+    private ResponseEntity.BodyBuilder pageResponse(CursorPage<Book> page, Long count) {
+        var response = ResponseEntity.ok();
+        if (count != null)
+            response.header(TOTAL_COUNT_HEADER, String.valueOf(count));
+        if (page.hasNext())
+            response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+        return response;
+    }
+
+    /**
+     * Book response, written from the serialized response cache when the representation is cacheable
+     */
+    private <T> ResponseEntity<T> findBook(Integer id, boolean withReviews, ServletWebRequest request,
+                                           Representation<T> representation) {
+        var mediaType = representation.mediaType();
+        var variant = cacheableVariant(request.getRequest(), mediaType, withReviews);
+        var cached = variant == null ? null : responseCache.get(id);
+        if (cached != null && cached.body(variant) != null) {  // hot book, nothing loaded, mapped nor serialized
+            if (!withReviews && notModified(request, eTagOf(String.valueOf(cached.version()), mediaType), cached.lastModified()))
+                return null;  // 304
+            write(request.getResponse(), mediaType, cached.body(variant));
+            return null;
+        }
+        long reviewsStamp = responseCache.reviewsStamp();  // before the reviews are read, a review added since is not cached
+        var book = service.findBookById(id);  // usually served by the second-level cache
+        if (!withReviews && notModified(request, eTagOf(book, mediaType), book.getLastModified().toEpochMilli()))
+            return null;  // 304, nothing mapped nor serialized
+        T bookResp = representation.toResponse().apply(book);
+        if (withReviews)
+            embedReviews(List.of(bookResp), representation);
+        if (variant == null)
+            return ResponseEntity.ok(bookResp);
+        byte[] body = serialize(bookResp, representation.type(), mediaType);
+        responseCache.put(id, book.getVersion(), reviewsStamp, book.getLastModified().toEpochMilli(), variant, body);
+        write(request.getResponse(), mediaType, body);
+        return null;
+    }
+
+    /**
+     * Cached representation for the request, null when its Accept header is not a plain one
+     * (those are negotiated as usual, and not cached)
+     */
+    private BookResponseCache.Variant cacheableVariant(HttpServletRequest request, MediaType mediaType, boolean withReviews) {
+        String accept = request.getHeader(HttpHeaders.ACCEPT);
+        if (accept != null && !accept.equals(MediaType.ALL_VALUE) && !accept.equals(mediaType.toString()))
+            return null;
+        // links are absolute, so they depend on the address the book was requested at
+        String baseUrl = request.getScheme() + "://" + request.getServerName() + ":" + request.getServerPort() + request.getContextPath();
+        return new BookResponseCache.Variant(mediaType, withReviews, baseUrl);
+    }
+
+    private boolean notModified(ServletWebRequest request, String eTag, long lastModified) {
+        // the representations are negotiated by the Accept header, caches must keep them apart
+        request.getResponse().addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        return request.checkNotModified(eTag, lastModified);
+    }
+
+    @SuppressWarnings("unchecked")
+    private byte[] serialize(Object bookResp, Class<?> type, MediaType mediaType) {
+        var body = new ByteArrayOutputStream();
+        var message = new HttpOutputMessage() {
+            private final HttpHeaders headers = new HttpHeaders();
+            @Override public OutputStream getBody() { return body; }
+            @Override public HttpHeaders getHeaders() { return headers; }
+        };
+        try {  // the same converter the response would be written with
+            for (HttpMessageConverter<?> converter : handlerAdapter.getMessageConverters()) {
+                if (converter instanceof GenericHttpMessageConverter<?> generic
+                        && generic.canWrite(type, type, mediaType)) {
+                    ((GenericHttpMessageConverter<Object>) generic).write(bookResp, type, mediaType, message);
+                    return body.toByteArray();
+                }
+                if (converter.canWrite(type, mediaType)) {
+                    ((HttpMessageConverter<Object>) converter).write(bookResp, mediaType, message);
+                    return body.toByteArray();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        throw new IllegalStateException("No converter for " + mediaType);
+    }
+
+    private void write(HttpServletResponse response, MediaType mediaType, byte[] body) {
+        response.setContentType(mediaType.toString());
+        response.setContentLength(body.length);
+        try {
+            response.getOutputStream().write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private ErrorResponse validationError(Set<? extends ConstraintViolation<?>> violations) {
+        Map<String, String> fieldErrors = new HashMap<>();
+        violations.forEach(v -> fieldErrors.put(v.getPropertyPath().toString(), v.getMessage()));
+        return new ErrorResponse("ValidationException", "Invalid fields", fieldErrors);
+    }
+
+    private BatchItemResponse itemResponse(int index, ItemResult<Book> result) {
+        return result.isOk()
+                ? new BatchItemResponse(index, HttpStatus.CREATED.value(), bookMapper.toResponse(result.getItem()), null)
+                : new BatchItemResponse(index, HttpStatus.BAD_REQUEST.value(), null,
+                        new ErrorResponse(result.getError().getClass().getSimpleName(), result.getError().getMessage()));
+    }
+
+    private void addImportLine(ImportChunk chunk, int index, String line) {
+        BookImportRequest bookReq;
+        try {
+            bookReq = objectMapper.readValue(line, BookImportRequest.class);
+        } catch (JsonProcessingException e) {  // a malformed line is rejected, the following ones are still read
+            chunk.reject(index, new ErrorResponse("JsonParseException", "Could not parse Json"));
+            return;
+        }
+        var violations = validator.validate(bookReq);
+        if (!violations.isEmpty()) {
+            chunk.reject(index, validationError(violations));
+            return;
+        }
+        var reviews = bookReq.getReviews() == null ? List.<String>of()
+                : bookReq.getReviews().stream().map(ReviewRequest::getReview).toList();
+        chunk.accept(index, bookMapper.toModel(bookReq), reviews);
+    }
+
+    private void importChunk(ImportChunk chunk, JsonGenerator json) throws IOException {
+        if (!chunk.books.isEmpty()) {
+            try {
+                var results = importChunkBooks(chunk);
+                for (int j = 0; j < results.size(); j++)
+                    chunk.itemsResp.put(chunk.bookIndexes.get(j), itemResponse(chunk.bookIndexes.get(j), results.get(j)));
+            } catch (DataIntegrityViolationException e) {  // conflicted again: its lines are rejected, the import goes on
+                var error = new ErrorResponse("ConflictException", "Conflicting concurrent writes, import the line again");
+                chunk.bookIndexes.forEach(index -> chunk.itemsResp.put(index,
+                        new BatchItemResponse(index, HttpStatus.CONFLICT.value(), null, error)));
+            }
+        }
+        chunk.itemsResp.values().forEach(item -> writeLine(json, item, false));
+        json.flush();  // reports the progress of the import
+    }
+
+    /**
+     * Imports the books of the chunk. A title registered by another request since it was checked rolls the chunk back,
+     * the chunk is then imported once more, finding that title registered
+     */
+    private List<ItemResult<Book>> importChunkBooks(ImportChunk chunk) {
+        try {
+            return service.importBooks(chunk.books, chunk.reviews);
+        } catch (DataIntegrityViolationException e) {
+            return service.importBooks(chunk.books, chunk.reviews);
+        }
+    }
+
+    private JsonGenerator ndjsonGenerator(HttpServletResponse response) throws IOException {
+        response.setContentType(APPLICATION_NDJSON_VALUE);
+        var json = objectMapper.getFactory().createGenerator(response.getOutputStream());
+        json.setRootValueSeparator(null);  // lines are separated by new lines only, not the default space
+        return json;
+    }
+
+    private void writeLine(JsonGenerator json, Object value, boolean flush) {
+        try {
+            json.writeObject(value);
+            json.writeRaw('\n');
+            if (flush)  // sends what was written so far to the client
+                json.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static boolean includesReviews(List<String> include) {
+        return include != null && include.contains("reviews");
+    }
+
+    private <T> void embedReviews(List<T> booksResp, Representation<T> representation) {
+        var ids = booksResp.stream().map(representation.idOf()).toList();
+        var reviews = service.findFirstReviews(ids);  // one query for the whole page
+        booksResp.forEach(b -> representation.setReviews().accept(b,
+                reviews.getOrDefault(representation.idOf().apply(b), List.of())));
+    }
+
+    /**
+     * HAL representation of books, given their links by the function
+     */
+    private Representation<BookResponse> halRepresentation(UnaryOperator<BookResponse> addLinks) {
+        return new Representation<>(MediaTypes.HAL_JSON, BookResponse.class, b -> addLinks.apply(bookMapper.toResponse(b)),
+                BookResponse::getId, (b, reviews) -> b.setReviews(
+                        reviews.stream().map(r -> new ReviewResponse(r.getText())).toList() ));
+    }
+
+    private Representation<PlainBookResponse> plainRepresentation() {
+        return new Representation<>(MediaType.APPLICATION_JSON, PlainBookResponse.class, bookMapper::toPlainResponse,
+                PlainBookResponse::getId, (b, reviews) -> b.setReviews(
+                        reviews.stream().map(r -> new PlainReviewResponse(r.getText())).toList() ));
+    }
+
+    private BookResponse addBookLinks(BookResponse bookResp) {
+        return bookResp
+                .add( linkTo(methodOn(this.getClass()).getReviews(bookResp.getId(), null, null, null)).withRel("reviews").expand() )
+                .add( linkTo(methodOn(this.getClass()).getBooks(null, null)).withRel("books").expand() );  // without the optional parameters
+    }
+
+
+    /**
+     * Parameters of a request for a page of books, bound once for all its representations.
+     * Parameters not sent take their default values
+     */
+    public record BooksQuery(Integer size, Integer page, String sort, String direction, String after,
+                             String language, Integer yearFrom, Integer yearTo, String author, List<String> include) {
+
+        public BooksQuery {
+            size = size == null ? 3 : size;
+            page = page == null ? 0 : page;
+            sort = sort == null ? "title" : sort;
+            direction = direction == null ? "ASC" : direction;
+        }
+
+        BookFilter filter() {
+            return BookFilter.of(language, yearFrom, yearTo, author);
+        }
+
+        boolean withReviews() {
+            return includesReviews(include);
+        }
+
+        boolean firstPage() {
+            return after == null ? page <= 0 : after.isEmpty();
+        }
+    }
+
+    /**
+     * How books are sent in a media type: mapped to their responses, which are then given their reviews when asked
+     */
+    private record Representation<T>(MediaType mediaType, Class<T> type, Function<Book, T> toResponse,
+                                     Function<T, Integer> idOf, BiConsumer<T, List<Review>> setReviews) { }
+
+    /**
+     * Lines of an import waiting to be committed: the responses of the rejected lines,
+     * and the accepted books along with their reviews and line indexes
+     */
+    private static class ImportChunk {
+
+        final Map<Integer, BatchItemResponse> itemsResp = new TreeMap<>();  // in line order
+        final List<Book> books = new ArrayList<>();
+        final List<List<String>> reviews = new ArrayList<>();
+        final List<Integer> bookIndexes = new ArrayList<>();
+
+        void reject(int index, ErrorResponse error) {
+            itemsResp.put(index, new BatchItemResponse(index, HttpStatus.BAD_REQUEST.value(), null, error));
+        }
+
+        void accept(int index, Book book, List<String> bookReviews) {
+            books.add(book);
+            reviews.add(bookReviews);
+            bookIndexes.add(index);
+        }
+
+        int size() {
+            return itemsResp.size() + books.size();
+        }
+
+    }
+
 }
@@ -0,0 +1,42 @@
+package com.tiagoamp.booksapi.controller;
+
+import org.springframework.hateoas.Link;
+import org.springframework.hateoas.LinkRelation;
+import org.springframework.hateoas.UriTemplate;
+
+/**
+ * Link with one variable, expanded by concatenation.
+ * Built once through a controller method proxy, instead of once per linked resource.
+ * Optional request parameters of the controller method are left out, as Link.expand() does
+ */
+public final class LinkTemplate {
+
+    private final String prefix;
+    private final String suffix;
+    private final LinkRelation relation;
+
+
+    private LinkTemplate(String prefix, String suffix, LinkRelation relation) {
+        this.prefix = prefix;
+        this.suffix = suffix;
+        this.relation = relation;
+    }
+
+
+    public static LinkTemplate of(Link link, String variable) {
+        String href = link.getHref();
+        String placeholder = "{" + variable + "}";
+        int index = href.indexOf(placeholder);
+        if (index < 0)
+            throw new IllegalArgumentException(String.format("Link '%s' has no variable '%s'", href, variable));
+        String suffix = href.substring(index + placeholder.length());
+        if (!suffix.isEmpty())
+            suffix = UriTemplate.of(suffix).expand().toString();  // drops the unset parameters ('{?include}')
+        return new LinkTemplate(href.substring(0, index), suffix, link.getRel());
+    }
+
+    public Link expand(Object value) {
+        return Link.of(prefix + value + suffix, relation);
+    }
+
+}
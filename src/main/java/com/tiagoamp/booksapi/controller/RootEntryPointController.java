@@ -14,7 +14,7 @@ public class RootEntryPointController {
     @GetMapping
     public ResponseEntity<RootEntryPointResponse> getRoot() {
         RootEntryPointResponse resp = new RootEntryPointResponse()
-                .add( linkTo(methodOn(BooksController.class).getBooks(null, null, null, null))
+                .add( linkTo(methodOn(BooksController.class).getBooks(null, null))
                         .withRel("books") );
         return ResponseEntity.ok(resp);
     }
@@ -4,6 +4,7 @@ import com.tiagoamp.booksapi.dto.AppUserRequest;
 import com.tiagoamp.booksapi.dto.AppUserResponse;
 import com.tiagoamp.booksapi.dto.AuthenticationRequest;
 import com.tiagoamp.booksapi.dto.AuthenticationResponse;
+import com.tiagoamp.booksapi.dto.RefreshTokenRequest;
 import com.tiagoamp.booksapi.model.AppUser;
 import com.tiagoamp.booksapi.service.AuthenticationService;
 import com.tiagoamp.booksapi.service.UserService;
@@ -42,10 +43,23 @@ public class UserController {
         return ResponseEntity.created(URI.create(user.getId().toString())).body(resp);
     }
 
+    @DeleteMapping("/{id}/tokens")
+    @RolesAllowed("ADMIN")
+    public ResponseEntity<Void> revokeTokens(@PathVariable("id") Integer id) {
+        userService.revokeTokens(id);  // tokens issued so far are rejected, the user can log in again
+        return ResponseEntity.noContent().build();
+    }
+
     @PostMapping("/login")
     public ResponseEntity<AuthenticationResponse> login(@RequestBody @Valid AuthenticationRequest request) {
-        var token = authenticationService.authenticate(request.getEmail(), request.getPassword());
-        return ResponseEntity.ok(new AuthenticationResponse(token));
+        var tokens = authenticationService.authenticate(request.getEmail(), request.getPassword());
+        return ResponseEntity.ok(new AuthenticationResponse(tokens.getAccessToken(), tokens.getRefreshToken()));
+    }
+
+    @PostMapping("/token/refresh")
+    public ResponseEntity<AuthenticationResponse> refreshToken(@RequestBody @Valid RefreshTokenRequest request) {
+        var tokens = authenticationService.refresh(request.getRefreshToken());  // the refresh token is replaced too
+        return ResponseEntity.ok(new AuthenticationResponse(tokens.getAccessToken(), tokens.getRefreshToken()));
     }
 
 }
@@ -0,0 +1,17 @@
+package com.tiagoamp.booksapi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchItemResponse {
+
+        Integer index;  // position of the item in the request
+        Integer status;
+        BookResponse book;
+        ErrorResponse error;
+
+}
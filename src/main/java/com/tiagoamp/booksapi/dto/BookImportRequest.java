@@ -0,0 +1,23 @@
+package com.tiagoamp.booksapi.dto;
+
+import jakarta.validation.Valid;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import java.util.List;
+
+/**
+ * Line of a books import: the book along with its reviews, as written by the books export
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+@ToString(callSuper = true)
+@NoArgsConstructor
+public class BookImportRequest extends BookRequest {
+
+        @Valid
+        List<ReviewRequest> reviews;
+
+}
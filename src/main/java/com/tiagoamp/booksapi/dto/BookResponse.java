@@ -1,10 +1,13 @@
 package com.tiagoamp.booksapi.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.hateoas.RepresentationModel;
 
+import java.util.List;
+
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -15,5 +18,7 @@ public class BookResponse extends RepresentationModel<BookResponse> {
         String language;
         Integer yearOfPublication;
         String authors;
+        @JsonInclude(JsonInclude.Include.NON_NULL)  // only present when reviews are included
+        List<ReviewResponse> reviews;
 
 }
@@ -0,0 +1,26 @@
+package com.tiagoamp.booksapi.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Book without hypermedia links, for clients accepting plain 'application/json'
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PlainBookResponse {
+
+        Integer id;
+        String title;
+        String language;
+        Integer yearOfPublication;
+        String authors;
+        @JsonInclude(JsonInclude.Include.NON_NULL)  // only present when reviews are included
+        List<PlainReviewResponse> reviews;
+
+}
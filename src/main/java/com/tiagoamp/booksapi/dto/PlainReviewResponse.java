@@ -0,0 +1,17 @@
+package com.tiagoamp.booksapi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Review without hypermedia links, embedded in plain book responses
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PlainReviewResponse {
+
+    String review;
+
+}
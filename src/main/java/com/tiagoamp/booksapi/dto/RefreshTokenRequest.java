@@ -0,0 +1,12 @@
+package com.tiagoamp.booksapi.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import lombok.Data;
+
+@Data
+public class RefreshTokenRequest {
+
+    @NotEmpty(message = "{required.field}")
+    private String refreshToken;
+
+}
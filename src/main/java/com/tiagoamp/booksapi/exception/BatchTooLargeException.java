@@ -0,0 +1,9 @@
+package com.tiagoamp.booksapi.exception;
+
+public class BatchTooLargeException extends RuntimeException {
+
+    public BatchTooLargeException(int size, int maxSize) {
+        super(String.format("Batch of %d items exceeds the limit of %d items", size, maxSize));
+    }
+
+}
@@ -0,0 +1,25 @@
+package com.tiagoamp.booksapi.exception;
+
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConcurrentUpdateException extends RuntimeException {
+
+    private String resourceName;
+    private String resourceId;
+
+
+    public ConcurrentUpdateException(String resourceName, Integer resourceId) {
+        this(resourceName, resourceId.toString());
+    }
+
+
+    public String getMessage() {
+        if (resourceName == null || resourceId == null)
+            return null;
+        return String.format("Resource '%s' with id '%s' is being modified concurrently, try again", resourceName, resourceId);
+    }
+
+}
@@ -0,0 +1,9 @@
+package com.tiagoamp.booksapi.exception;
+
+public class InvalidCursorException extends RuntimeException {
+
+    public InvalidCursorException(String message) {
+        super(message);
+    }
+
+}
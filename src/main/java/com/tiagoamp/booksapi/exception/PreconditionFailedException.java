@@ -0,0 +1,25 @@
+package com.tiagoamp.booksapi.exception;
+
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+
+@NoArgsConstructor
+@AllArgsConstructor
+public class PreconditionFailedException extends RuntimeException {
+
+    private String resourceName;
+    private String resourceId;
+
+
+    public PreconditionFailedException(String resourceName, Integer resourceId) {
+        this(resourceName, resourceId.toString());
+    }
+
+
+    public String getMessage() {
+        if (resourceName == null || resourceId == null)
+            return null;
+        return String.format("Resource '%s' with id '%s' was modified, its current version does not match", resourceName, resourceId);
+    }
+
+}
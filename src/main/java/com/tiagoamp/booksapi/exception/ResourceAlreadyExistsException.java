@@ -17,8 +17,10 @@ public class ResourceAlreadyExistsException extends RuntimeException {
 
 
     public String getMessage() {
-        if (resourceName == null || resourceId == null)
+        if (resourceName == null)
             return null;
+        if (resourceId == null)  // conflicting resource not readable yet
+            return String.format("Resource '%s' already registered", resourceName);
         return String.format("Resource '%s' already registered with id '%s'", resourceName, resourceId);
     }
 
@@ -0,0 +1,20 @@
+package com.tiagoamp.booksapi.exception;
+
+import java.time.Duration;
+
+public class ServiceOverloadedException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+
+    public ServiceOverloadedException(String msg, Duration retryAfter) {
+        super(msg);
+        this.retryAfter = retryAfter;
+    }
+
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+
+}
@@ -30,6 +30,12 @@ public class AppUser implements UserDetails {
     @Enumerated(EnumType.STRING)
     private Role role;
 
+    private int tokenVersion;  // sent in the tokens issued to the user, incremented to revoke all of them
+
+
+    public AppUser(Integer id, String name, String email, String password, Role role) {
+        this(id, name, email, password, role, 0);
+    }
 
     public AppUser(String name, String email, String password, Role role) {
         this.name = name;
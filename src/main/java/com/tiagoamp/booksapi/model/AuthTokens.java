@@ -0,0 +1,16 @@
+package com.tiagoamp.booksapi.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Tokens issued on login and on refresh: a short-lived access token and the refresh token to replace it
+ */
+@Data
+@AllArgsConstructor
+public class AuthTokens {
+
+    private String accessToken;
+    private String refreshToken;
+
+}
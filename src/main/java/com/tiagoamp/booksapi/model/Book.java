@@ -4,7 +4,7 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
-import java.time.LocalDate;
+import java.time.Instant;
 
 @Data
 @NoArgsConstructor
@@ -16,5 +16,12 @@ public class Book {
     private String language;
     private Integer yearOfPublication;
     private String authors;
+    private Integer version;
+    private Instant lastModified;
+
+
+    public Book(Integer id, String title, String language, Integer yearOfPublication, String authors) {
+        this(id, title, language, yearOfPublication, authors, null, null);
+    }
 
 }
@@ -0,0 +1,72 @@
+package com.tiagoamp.booksapi.model;
+
+import com.tiagoamp.booksapi.exception.InvalidCursorException;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Set;
+
+/**
+ * Position of a book in a sorted listing (sort field value plus id),
+ * exchanged with clients as an opaque keyset pagination token
+ */
+@Getter
+@AllArgsConstructor
+public class BookCursor {
+
+    private static final Set<String> SORTABLE_FIELDS = Set.of("id", "title", "language", "yearOfPublication", "authors");
+    private static final Set<String> NUMERIC_FIELDS = Set.of("id", "yearOfPublication");
+    private static final String SEPARATOR = "\n";
+
+    private String sortField;
+    private String sortDirection;
+    private Comparable<?> value;  // null when the book has no value for the sort field
+    private Integer id;
+
+
+    public static boolean isSortable(String sortField) {
+        return SORTABLE_FIELDS.contains(sortField);
+    }
+
+    public static BookCursor of(Book book, String sortField, String sortDirection) {
+        Comparable<?> value = switch (sortField) {
+            case "id" -> book.getId();
+            case "title" -> book.getTitle();
+            case "language" -> book.getLanguage();
+            case "yearOfPublication" -> book.getYearOfPublication();
+            case "authors" -> book.getAuthors();
+            default -> throw new InvalidCursorException(String.format("Sort field '%s' not supported", sortField));
+        };
+        return new BookCursor(sortField, sortDirection, value, book.getId());
+    }
+
+    public static BookCursor decode(String token) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = decoded.split(SEPARATOR, 4);
+            String sortField = parts[0];
+            if (parts.length < 3 || !isSortable(sortField))
+                throw new InvalidCursorException("Invalid cursor");
+            Comparable<?> value = null;
+            if (parts.length == 4)
+                value = NUMERIC_FIELDS.contains(sortField) ? Integer.valueOf(parts[3]) : parts[3];
+            return new BookCursor(sortField, parts[1], value, Integer.valueOf(parts[2]));
+        } catch (IllegalArgumentException e) {  // bad base64 or number format
+            throw new InvalidCursorException("Invalid cursor");
+        }
+    }
+
+    public String encode() {
+        String raw = String.join(SEPARATOR, sortField, sortDirection, id.toString());
+        if (value != null)
+            raw += SEPARATOR + value;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public boolean matches(String sortField, String sortDirection) {
+        return this.sortField.equals(sortField) && this.sortDirection.equals(sortDirection);
+    }
+
+}
@@ -0,0 +1,37 @@
+package com.tiagoamp.booksapi.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Criteria a listing of books is restricted to, absent (null) criteria match every book
+ */
+@Getter
+@AllArgsConstructor
+public class BookFilter {
+
+    public static final BookFilter NONE = new BookFilter(null, null, null, null);
+
+    private String language;
+    private Integer yearFrom;  // inclusive
+    private Integer yearTo;  // inclusive
+    private String author;  // each of its words begins a word of the book authors
+
+
+    /**
+     * Filter of request parameters, blank ones are ignored
+     */
+    public static BookFilter of(String language, Integer yearFrom, Integer yearTo, String author) {
+        return new BookFilter(blankToNull(language), yearFrom, yearTo, blankToNull(author));
+    }
+
+    public boolean isEmpty() {
+        return language == null && yearFrom == null && yearTo == null && author == null;
+    }
+
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+
+}
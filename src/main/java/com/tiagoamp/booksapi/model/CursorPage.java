@@ -0,0 +1,23 @@
+package com.tiagoamp.booksapi.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Slice of a listing plus the opaque token of the next slice,
+ * which is null when there are no more items
+ */
+@Data
+@AllArgsConstructor
+public class CursorPage<T> {
+
+    private List<T> items;
+    private String nextCursor;
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+
+}
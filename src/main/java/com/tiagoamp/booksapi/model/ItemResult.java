@@ -0,0 +1,29 @@
+package com.tiagoamp.booksapi.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Outcome of one item of a bulk operation:
+ * the processed item, or the error that rejected it
+ */
+@Data
+@AllArgsConstructor
+public class ItemResult<T> {
+
+    private T item;
+    private RuntimeException error;
+
+    public static <T> ItemResult<T> ok(T item) {
+        return new ItemResult<>(item, null);
+    }
+
+    public static <T> ItemResult<T> failed(T item, RuntimeException error) {
+        return new ItemResult<>(item, error);
+    }
+
+    public boolean isOk() {
+        return error == null;
+    }
+
+}
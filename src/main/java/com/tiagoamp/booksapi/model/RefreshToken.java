@@ -0,0 +1,48 @@
+package com.tiagoamp.booksapi.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import java.time.Instant;
+
+/**
+ * Refresh token issued to a user, stored by the hash of its value.
+ * Each refresh replaces it by a new token of the same family (the tokens descending from one login)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "REFRESH_TOKENS",
+        uniqueConstraints = @UniqueConstraint(name = "UK_REFRESH_TOKENS_HASH", columnNames = "tokenHash"),
+        indexes = @Index(name = "IDX_REFRESH_TOKENS_FAMILY", columnList = "familyId"))
+public class RefreshToken {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+
+    private String tokenHash;
+
+    private String familyId;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "USER_ID")
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private AppUser user;
+
+    private Instant expiresAt;
+
+    private boolean used;  // already exchanged: presenting it again means it was stolen
+
+
+    public RefreshToken(String tokenHash, String familyId, AppUser user, Instant expiresAt) {
+        this(null, tokenHash, familyId, user, expiresAt, false);
+    }
+
+}
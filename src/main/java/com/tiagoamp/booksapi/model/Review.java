@@ -0,0 +1,18 @@
+package com.tiagoamp.booksapi.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Review {
+
+    private Long id;
+    private String text;
+    private LocalDateTime createdAt;
+
+}
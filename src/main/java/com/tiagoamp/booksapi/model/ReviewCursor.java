@@ -0,0 +1,30 @@
+package com.tiagoamp.booksapi.model;
+
+import com.tiagoamp.booksapi.exception.InvalidCursorException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position of a review in the listing of a book (reviews are listed by id),
+ * exchanged with clients as an opaque keyset pagination token
+ */
+public final class ReviewCursor {
+
+    private ReviewCursor() { }
+
+
+    public static String encode(Review review) {
+        byte[] raw = review.getId().toString().getBytes(StandardCharsets.UTF_8);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw);
+    }
+
+    public static Long decode(String token) {
+        try {
+            return Long.valueOf(new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {  // bad base64 or number format
+            throw new InvalidCursorException("Invalid cursor");
+        }
+    }
+
+}
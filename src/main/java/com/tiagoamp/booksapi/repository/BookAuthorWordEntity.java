@@ -0,0 +1,36 @@
+package com.tiagoamp.booksapi.repository;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+/**
+ * Lower-cased word of the authors of a book, kept along with them by the book: author filters seek them by prefix
+ */
+@Entity
+@Table(name = "BOOK_AUTHOR_WORDS", indexes = {
+        @Index(name = "IDX_BOOK_AUTHOR_WORDS_WORD_BOOK_ID", columnList = "WORD, BOOK_ID") })
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookAuthorWordEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "BOOK_AUTHOR_WORDS_SEQ_GENERATOR")
+    @SequenceGenerator(name = "BOOK_AUTHOR_WORDS_SEQ_GENERATOR", sequenceName = "BOOK_AUTHOR_WORDS_SEQ", allocationSize = 50)  // inserted in batches, as books
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "BOOK_ID", nullable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    @ToString.Exclude
+    private BookEntity book;
+
+    @Column(name = "WORD", nullable = false)
+    private String word;
+
+}
@@ -1,25 +1,49 @@
 package com.tiagoamp.booksapi.repository;
 
 import jakarta.persistence.*;
-import lombok.AllArgsConstructor;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.UpdateTimestamp;
 
-import java.time.LocalDate;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 @Entity
-@Table(name = "BOOKS")
+@Table(name = "BOOKS",
+        uniqueConstraints = @UniqueConstraint(name = BookEntity.UNIQUE_TITLE, columnNames = "title"),  // also serves title lookups and title sorted pages
+        indexes = {  // sort field + id indexes, to serve keyset pagination with index seeks
+        @Index(name = "IDX_BOOKS_LANGUAGE_ID", columnList = "language, id"),
+        @Index(name = "IDX_BOOKS_YEAR_ID", columnList = "yearOfPublication, id"),
+        @Index(name = "IDX_BOOKS_AUTHORS_ID", columnList = "authors, id"),
+        // filters: language combined with a year range (authors are filtered on their words, see authorWords)
+        @Index(name = "IDX_BOOKS_LANGUAGE_YEAR_ID", columnList = "language, yearOfPublication, id") })
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CacheConfiguration.BOOKS_REGION)
 @Data
 @NoArgsConstructor
-@AllArgsConstructor
 public class BookEntity {
 
+    public static final String UNIQUE_TITLE = "UK_BOOKS_TITLE";
+    private static final Pattern WORD_SEPARATORS = Pattern.compile("[\\s,]+");  // co-authors may be separated by a bare comma
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "BOOKS_SEQ_GENERATOR")
+    @SequenceGenerator(name = "BOOKS_SEQ_GENERATOR", sequenceName = "BOOKS_SEQ", allocationSize = 50)  // ids are taken in blocks, so inserts can be batched
     private Integer id;
 
+    @Column(nullable = false)  // unique and required, so titles alone give a total order
     private String title;
 
     private String language;
@@ -28,9 +52,52 @@ public class BookEntity {
 
     private String authors;
 
-    @ElementCollection(fetch=FetchType.LAZY)
-    @CollectionTable(name="REVIEWS", joinColumns=@JoinColumn(name="BOOK_ID"))
-    @Column(name="TEXT")
-    private List<String> reviews = new ArrayList<>();
+    @OneToMany(mappedBy = "book", cascade = CascadeType.ALL, orphanRemoval = true)  // replaced along with the authors
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude  // loaded lazily, only queried
+    private List<BookAuthorWordEntity> authorWords = new ArrayList<>();
+
+    @Version  // incremented on every update, exposed to clients as the book ETag
+    private Integer version;
+
+    @UpdateTimestamp  // set on insert and on every update
+    private Instant lastModified;
+
+
+    public BookEntity(Integer id, String title, String language, Integer yearOfPublication, String authors) {
+        this(id, title, language, yearOfPublication, authors, null, null);
+    }
+
+    public BookEntity(Integer id, String title, String language, Integer yearOfPublication, String authors,
+                      Integer version, Instant lastModified) {
+        this.id = id;
+        this.title = title;
+        this.language = language;
+        this.yearOfPublication = yearOfPublication;
+        setAuthors(authors);
+        this.version = version;
+        this.lastModified = lastModified;
+    }
+
+
+    public void setAuthors(String authors) {
+        if (Objects.equals(this.authors, authors))
+            return;  // words kept, not deleted and inserted again
+        this.authors = authors;
+        authorWords.clear();
+        wordsOf(authors).forEach(word -> authorWords.add(new BookAuthorWordEntity(null, this, word)));
+    }
+
+    /**
+     * Lower-cased words of the text, as authors are filtered by
+     */
+    static Set<String> wordsOf(String text) {
+        if (text == null)
+            return Set.of();
+        return WORD_SEPARATORS.splitAsStream(text.toLowerCase(Locale.ROOT))
+                .filter(word -> !word.isEmpty())
+                .collect(Collectors.toSet());
+    }
 
 }
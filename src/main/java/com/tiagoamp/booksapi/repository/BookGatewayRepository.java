@@ -1,34 +1,113 @@
 package com.tiagoamp.booksapi.repository;
 
 import com.tiagoamp.booksapi.model.Book;
+import com.tiagoamp.booksapi.model.BookCursor;
+import com.tiagoamp.booksapi.model.BookFilter;
+import com.tiagoamp.booksapi.model.CursorPage;
+import com.tiagoamp.booksapi.model.Review;
+import com.tiagoamp.booksapi.model.ReviewCursor;
 import com.tiagoamp.booksapi.util.BookMapper;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.Page;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.tiagoamp.booksapi.util.Transactions.afterCommit;
 
 @Repository
 @RequiredArgsConstructor
 public class BookGatewayRepository {
 
+    private static final Sort REVIEWS_ORDER = Sort.by("id");
+
     private final BookRepository bookRepo;
+    private final ReviewRepository reviewRepo;
     private final BookMapper mapper;
+    private final AtomicLong committedDelta = new AtomicLong();  // books added less books deleted, by the committed writes
+    private final AtomicLong committedWrites = new AtomicLong();  // writes committed, whether they moved the delta or not
+    private volatile Long countBase;  // books counted, less the committed delta they include
 
 
-    public List<Book> findAll(Integer size, Integer pageNumber, String sortField, String sortDirectionStr) {
-//        List<BookEntity> entities = bookRepo.findAll();
-        Sort.Direction sortDirection = Sort.Direction.valueOf(sortDirectionStr);
-        PageRequest pageable = PageRequest.of(pageNumber, size).withSort(sortDirection, sortField);
-        Page<BookEntity> page = bookRepo.findAll(pageable);
-        var entities = page.toList();
-        return entities.stream().map(mapper::toModel).toList();
+    @Transactional(readOnly = true)  // read-only transactions are served by the replica
+    public CursorPage<Book> findAll(Integer size, Integer pageNumber, String sortField, String sortDirectionStr,
+                                    BookFilter filter) {
+        long offset = (long) Math.max(0, pageNumber) * size;  // long, as a large page number overflows an int
+        if (offset > Integer.MAX_VALUE)
+            return new CursorPage<>(List.of(), null);  // beyond any offset the database can skip to, nothing is read
+        Sort sort = sortOf(sortField, sortDirectionStr);
+        var entities = bookRepo.findAll(BookSpecifications.matching(filter), sort, (int) offset, size + 1);  // extra row tells if there is a next page
+        return toPage(entities, size, sortField, sortDirectionStr);
     }
 
+    @Transactional(readOnly = true)
+    public CursorPage<Book> findAll(Integer size, BookCursor after, String sortField, String sortDirectionStr,
+                                    BookFilter filter) {
+        Sort sort = sortOf(sortField, sortDirectionStr);
+        Specification<BookEntity> matching = Specification.where(BookSpecifications.matching(filter));
+        var entities = bookRepo.findAll(matching.and(BookSpecifications.after(after)), sort, 0, size + 1);
+        var following = BookSpecifications.following(after);
+        if (entities.size() <= size && following != null) {  // page continues with the books with(out) a sort value
+            entities = new ArrayList<>(entities);
+            entities.addAll(bookRepo.findAll(matching.and(following), sort, 0, size + 1 - entities.size()));
+        }
+        return toPage(entities, size, sortField, sortDirectionStr);
+    }
+
+    public long count() {
+        if (countBase == null)  // loaded on startup, afterwards it is maintained by the committed saves and deletes
+            loadCount();
+        return countBase + committedDelta.get();
+    }
+
+    /**
+     * Counts the books on the primary, the replica may lag behind. The delta read before the count query is already
+     * in it and is subtracted, the writes committed afterwards are added to it. A write committing while they are
+     * counted may or may not be in the count, so it is repeated until no write commits meanwhile. Writes are compared
+     * rather than the delta, as a save and a delete committing meanwhile leave the delta as it was
+     */
+    @Transactional
+    public void loadCount() {
+        long writes, delta, counted;
+        do {
+            writes = committedWrites.get();
+            delta = committedDelta.get();
+            counted = bookRepo.count();
+        } while (committedWrites.get() != writes);
+        countBase = counted - delta;
+    }
+
+    /**
+     * Number of books matching the filter, counted by the database unless the filter is empty
+     */
+    @Transactional(readOnly = true)
+    public long count(BookFilter filter) {
+        if (filter.isEmpty())
+            return count();
+        return bookRepo.count(BookSpecifications.matching(filter));
+    }
+
+    @Transactional(readOnly = true)
     public Optional<Book> find(Integer id) {
         Optional<BookEntity> entityOpt = bookRepo.findById(id);
         if (entityOpt.isEmpty())
@@ -39,10 +118,29 @@ public class BookGatewayRepository {
 
     public Book save(Book book) {
         BookEntity entity = mapper.toEntity(book);
-        entity = bookRepo.save(entity);
+        entity = bookRepo.saveAndFlush(entity);  // constraint violations are raised here, not at commit
+        adjustCount(1);
         return mapper.toModel(entity);
     }
 
+    public List<Book> saveAll(List<Book> books) {
+        var entities = bookRepo.insertAll(books.stream().map(mapper::toEntity).toList());
+        adjustCount(entities.size());
+        return entities.stream().map(mapper::toModel).toList();
+    }
+
+    public Map<String, Integer> findIdsByTitles(Collection<String> titles) {
+        if (titles.isEmpty())
+            return Map.of();
+        return bookRepo.findByTitleIn(titles).stream()
+                .collect(Collectors.toMap(BookRepository.BookTitle::getTitle, BookRepository.BookTitle::getId, (a, b) -> a));
+    }
+
+    /**
+     * Book registered with the title, read from the primary: it tells the book that made a write fail on its title,
+     * which the replica may not have received yet
+     */
+    @Transactional
     public Optional<Book> findBookByTitle(String title) {
         Optional<BookEntity> entityOpt = bookRepo.findByTitle(title);
         if (entityOpt.isEmpty())
@@ -50,34 +148,173 @@ public class BookGatewayRepository {
         return Optional.of(mapper.toModel(entityOpt.get()));
     }
 
-    public Book update(Book book) {
-        BookEntity entityForUpdate = bookRepo.findById(book.getId()).get();
-        BookEntity entityFromUpdatedModel = mapper.toEntity(book);
-        mapper.copyValues(entityFromUpdatedModel, entityForUpdate);
-        entityForUpdate = bookRepo.save(entityForUpdate);
-        return mapper.toModel(entityForUpdate);
+    /**
+     * Updates the book, if it was not modified since the version it carries (when it carries one)
+     */
+    @Transactional
+    public Optional<Book> update(Book book) {
+        Optional<BookEntity> entityOpt = bookRepo.findById(book.getId());
+        if (entityOpt.isEmpty())
+            return Optional.empty();
+        BookEntity entityForUpdate = entityOpt.get();
+        checkVersion(entityForUpdate, book.getVersion());
+        BookEntity values = mapper.toEntity(book);
+        values.setVersion(null);  // version and timestamp are managed by hibernate, null values are not copied
+        values.setLastModified(null);
+        mapper.copyValues(values, entityForUpdate);  // updated by dirty checking, concurrent updates fail on the version
+        bookRepo.flush();  // constraint violations are raised here, not at commit
+        return Optional.of(mapper.toModel(entityForUpdate));
+    }
+
+    /**
+     * Deletes the book, if it was not modified since the expected version (when there is one)
+     */
+    @Transactional
+    public boolean delete(Integer id, Integer expectedVersion) {
+        // removing the loaded (usually cached) entity evicts only its cache entry, unlike a bulk delete query
+        Optional<BookEntity> entityOpt = bookRepo.findById(id);
+        if (entityOpt.isEmpty())
+            return false;
+        checkVersion(entityOpt.get(), expectedVersion);
+        bookRepo.delete(entityOpt.get());  // its reviews are deleted by the database (on delete cascade)
+        adjustCount(-1);
+        return true;
+    }
+
+    @Transactional(readOnly = true)
+    public Optional<CursorPage<Review>> findReviewsOfBook(Integer bookId, Integer size, Integer pageNumber) {
+        int page = Math.max(0, pageNumber);
+        if ((long) page * size > Integer.MAX_VALUE)  // long, as a large page number overflows an int
+            return toReviewsPage(bookId, new SliceImpl<>(List.of()));  // beyond any offset the database can skip to
+        var reviews = reviewRepo.findByBookId(bookId, PageRequest.of(page, size, REVIEWS_ORDER));
+        return toReviewsPage(bookId, reviews);
     }
 
-    public void delete(Integer id) {
-        BookEntity entity = bookRepo.findById(id).get();
-        bookRepo.delete(entity);
+    @Transactional(readOnly = true)
+    public Optional<CursorPage<Review>> findReviewsOfBook(Integer bookId, Integer size, Long afterId) {
+        var reviews = reviewRepo.findByBookIdAfter(bookId, afterId, PageRequest.of(0, size, REVIEWS_ORDER));
+        return toReviewsPage(bookId, reviews);
     }
 
-    public List<String> findReviewsOfBook(Integer bookId) {
-        BookEntity bookEntity = bookRepo.findById(bookId).get();
-        List<String> reviews = bookEntity.getReviews();
-        if (reviews == null)
-            return new ArrayList<>();
-        return reviews;
+    @Transactional(readOnly = true)
+    public Map<Integer, List<Review>> findReviewsOfBooks(Collection<Integer> bookIds, int limitPerBook) {
+        if (bookIds.isEmpty())
+            return Map.of();
+        return reviewRepo.findFirstByBookIds(bookIds, limitPerBook).stream()
+                .collect(Collectors.groupingBy(ReviewRepository.BookReview::getBookId,
+                        Collectors.mapping(r -> new Review(r.getId(), r.getText(), r.getCreatedAt()), Collectors.toList())));
+    }
+
+    @Transactional(readOnly = true)  // keeps the connection open while the stream is consumed
+    public void forEachBook(Consumer<Book> action) {
+        try (Stream<Book> books = bookRepo.streamAll()) {
+            books.forEach(action);
+        }
+    }
+
+    /**
+     * Passes each book along with all its reviews (ordered by id), holding in memory only the reviews of one book at a time
+     */
+    @Transactional(readOnly = true)
+    public void forEachBookWithReviews(BiConsumer<Book, List<Review>> action) {
+        try (Stream<Object[]> rows = bookRepo.streamAllWithReviews()) {
+            Book book = null;
+            List<Review> reviews = new ArrayList<>();
+            for (Iterator<Object[]> it = rows.iterator(); it.hasNext(); ) {
+                Object[] row = it.next();
+                Book rowBook = (Book) row[0];
+                Review review = (Review) row[1];
+                if (book != null && !book.getId().equals(rowBook.getId())) {  // rows of the previous book are over
+                    reviews.sort(Comparator.comparing(Review::getId));
+                    action.accept(book, reviews);
+                    reviews = new ArrayList<>();
+                }
+                book = rowBook;
+                if (review != null && review.getId() != null)  // books without reviews are joined with no review
+                    reviews.add(review);
+            }
+            if (book != null) {
+                reviews.sort(Comparator.comparing(Review::getId));
+                action.accept(book, reviews);
+            }
+        }
+    }
+
+    @Transactional(readOnly = true)  // keeps the connection open while the stream is consumed
+    public boolean forEachReviewOfBook(Integer bookId, Consumer<Review> action) {
+        if (!exists(bookId))
+            return false;
+        try (Stream<Review> reviews = reviewRepo.streamByBookId(bookId)) {
+            reviews.forEach(action);
+        }
+        return true;
+    }
+
+    public Optional<String> addReview(Integer bookId, String review) {
+        if (reviewRepo.insertReview(bookId, review) == 0)
+            return Optional.empty();
+        return Optional.of(review);
+    }
+
+    /**
+     * Adds reviews to books known to exist, without loading the books
+     */
+    public void addReviews(Map<Integer, List<String>> reviewsByBookId) {
+        var createdAt = LocalDateTime.now();
+        var entities = new ArrayList<ReviewEntity>();
+        reviewsByBookId.forEach((bookId, reviews) -> reviews.forEach(review ->
+                entities.add(new ReviewEntity(null, bookRepo.getReferenceById(bookId), review, createdAt)) ));
+        reviewRepo.insertAll(entities);
+    }
+
+    /**
+     * Whether the violation is of the unique title constraint, as named by the database when it tells the constraint
+     */
+    public static boolean violatesUniqueTitle(DataIntegrityViolationException e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause())
+            if (cause instanceof ConstraintViolationException violation && violation.getConstraintName() != null)
+                return violation.getConstraintName().toUpperCase().contains(BookEntity.UNIQUE_TITLE);
+        return e.getMessage() != null && e.getMessage().toUpperCase().contains(BookEntity.UNIQUE_TITLE);
+    }
+
+    private void adjustCount(long delta) {
+        // a rolled back write leaves the count as it was
+        afterCommit(() -> {
+            committedDelta.addAndGet(delta);
+            committedWrites.incrementAndGet();  // after the delta, so a count reading the delta without it repeats
+        });
+    }
+
+    private Sort sortOf(String sortField, String sortDirectionStr) {
+        Sort.Direction sortDirection = Sort.Direction.valueOf(sortDirectionStr);
+        if (sortField.equals("id") || sortField.equals("title"))  // unique: read in the order of its own index
+            return Sort.by(sortDirection, sortField);
+        return Sort.by(sortDirection, sortField, "id");  // id breaks ties between equal sort values
+    }
+
+    private void checkVersion(BookEntity entity, Integer expectedVersion) {
+        if (expectedVersion != null && !expectedVersion.equals(entity.getVersion()))
+            throw new OptimisticLockingFailureException(String.format("Book %d is at version %d, not %d",
+                    entity.getId(), entity.getVersion(), expectedVersion));
+    }
+
+    private boolean exists(Integer bookId) {
+        return bookRepo.findById(bookId).isPresent();  // served by the second-level cache, unlike existsById
+    }
+
+    private Optional<CursorPage<Review>> toReviewsPage(Integer bookId, Slice<Review> reviews) {
+        if (!reviews.hasContent() && !exists(bookId))  // only an empty page needs to tell a missing book
+            return Optional.empty();
+        String nextCursor = reviews.hasNext() ? ReviewCursor.encode(reviews.getContent().get(reviews.getNumberOfElements() - 1)) : null;
+        return Optional.of(new CursorPage<>(reviews.getContent(), nextCursor));
     }
 
-    public String addReview(Integer bookId, String review) {
-        BookEntity bookEntity = bookRepo.findById(bookId).get();
-        if (bookEntity.getReviews() == null)
-            bookEntity.setReviews(new ArrayList<>());
-        bookEntity.getReviews().add(review);
-        bookRepo.save(bookEntity);
-        return review;
+    private CursorPage<Book> toPage(List<BookEntity> entities, Integer size, String sortField, String sortDirectionStr) {
+        var books = entities.stream().limit(size).map(mapper::toModel).toList();
+        String nextCursor = null;
+        if (entities.size() > size && !books.isEmpty())
+            nextCursor = BookCursor.of(books.get(books.size() - 1), sortField, sortDirectionStr).encode();
+        return new CursorPage<>(books, nextCursor);
     }
 
 }
@@ -2,10 +2,19 @@ package com.tiagoamp.booksapi.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
-public interface BookRepository extends JpaRepository<BookEntity, Integer> {
+public interface BookRepository extends JpaRepository<BookEntity, Integer>, BookRepositoryCustom {
+
+    interface BookTitle {
+        Integer getId();
+        String getTitle();
+    }
 
     Optional<BookEntity> findByTitle(String title);
 
+    List<BookTitle> findByTitleIn(Collection<String> titles);
+
 }
@@ -0,0 +1,39 @@
+package com.tiagoamp.booksapi.repository;
+
+import com.tiagoamp.booksapi.model.Book;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+public interface BookRepositoryCustom {
+
+    /**
+     * Fetches a window of sorted books without the count query issued by paged finders
+     */
+    List<BookEntity> findAll(Specification<BookEntity> spec, Sort sort, int offset, int limit);
+
+    /**
+     * Counts the books matching the specification, all books when it is null
+     */
+    long count(Specification<BookEntity> spec);
+
+    /**
+     * Inserts new books in JDBC batches, flushing and detaching them batch by batch
+     * so the persistence context does not grow with the number of books
+     */
+    List<BookEntity> insertAll(List<BookEntity> books);
+
+    /**
+     * Streams all books ordered by id, as unmanaged values read through a forward-only cursor
+     */
+    Stream<Book> streamAll();
+
+    /**
+     * Streams all books ordered by id along with their reviews, in one row per review (in no particular order)
+     * holding the unmanaged book and review values. A book without reviews comes in one row, with no review or a review without id
+     */
+    Stream<Object[]> streamAllWithReviews();
+
+}
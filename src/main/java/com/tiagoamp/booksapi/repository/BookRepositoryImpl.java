@@ -0,0 +1,93 @@
+package com.tiagoamp.booksapi.repository;
+
+import com.tiagoamp.booksapi.model.Book;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+public class BookRepositoryImpl implements BookRepositoryCustom {
+
+    // books are read as unmanaged values, so they are not kept by the persistence context
+    private static final String NEW_BOOK = "new com.tiagoamp.booksapi.model.Book(" +
+            "b.id, b.title, b.language, b.yearOfPublication, b.authors, b.version, b.lastModified)";
+    private static final String NEW_REVIEW = "new com.tiagoamp.booksapi.model.Review(r.id, r.text, r.createdAt)";
+
+    @PersistenceContext
+    private EntityManager em;
+
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}")
+    private int batchSize;
+
+    @Value("${export.fetch-size:500}")
+    private int fetchSize;
+
+
+    @Override
+    public List<BookEntity> findAll(Specification<BookEntity> spec, Sort sort, int offset, int limit) {
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<BookEntity> query = cb.createQuery(BookEntity.class);
+        Root<BookEntity> root = query.from(BookEntity.class);
+        Predicate predicate = spec == null ? null : spec.toPredicate(root, query, cb);
+        if (predicate != null)
+            query.where(predicate);
+        query.orderBy(QueryUtils.toOrders(sort, root, cb));
+        return em.createQuery(query)
+                .setFirstResult(offset)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    @Override
+    public long count(Specification<BookEntity> spec) {
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<BookEntity> root = query.from(BookEntity.class);
+        Predicate predicate = spec == null ? null : spec.toPredicate(root, query, cb);
+        if (predicate != null)
+            query.where(predicate);
+        return em.createQuery(query.select(cb.count(root))).getSingleResult();
+    }
+
+    @Override
+    @Transactional
+    public List<BookEntity> insertAll(List<BookEntity> books) {
+        for (int i = 0; i < books.size(); i++) {
+            em.persist(books.get(i));
+            if ((i + 1) % batchSize == 0) {
+                em.flush();
+                em.clear();
+            }
+        }
+        em.flush();
+        em.clear();
+        return books;
+    }
+
+    @Override
+    public Stream<Book> streamAll() {
+        return em.createQuery("select " + NEW_BOOK + " from BookEntity b order by b.id", Book.class)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize)
+                .getResultStream();  // scrolls forward only, rows are fetched as the stream is consumed
+    }
+
+    @Override
+    public Stream<Object[]> streamAllWithReviews() {
+        return em.createQuery("select " + NEW_BOOK + ", " + NEW_REVIEW + " from BookEntity b " +
+                        "left join ReviewEntity r on r.book = b order by b.id", Object[].class)  // in the order of the books index, never sorted as a whole
+                .setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize)
+                .getResultStream();
+    }
+
+}
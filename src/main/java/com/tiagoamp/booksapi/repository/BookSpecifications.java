@@ -0,0 +1,98 @@
+package com.tiagoamp.booksapi.repository;
+
+import com.tiagoamp.booksapi.model.BookCursor;
+import com.tiagoamp.booksapi.model.BookFilter;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.ArrayList;
+
+/**
+ * Query predicates over books
+ */
+public class BookSpecifications {
+
+    private static final char LIKE_ESCAPE = '\\';
+
+    private BookSpecifications() { }
+
+
+    /**
+     * Books matching all criteria of the filter, in a single predicate, or null when the filter is empty.
+     * Language and years are equality and range comparisons, served by the BOOKS indexes. Each word of the author
+     * matches the beginning of a word of the authors (surnames, co-authors), case insensitive: a prefix comparison
+     * on the lower-cased author words, served by their index
+     */
+    public static Specification<BookEntity> matching(BookFilter filter) {
+        if (filter == null || filter.isEmpty())
+            return null;
+        return (root, query, cb) -> {
+            var predicates = new ArrayList<Predicate>();
+            if (filter.getLanguage() != null)
+                predicates.add(cb.equal(root.get("language"), filter.getLanguage()));
+            if (filter.getYearFrom() != null)
+                predicates.add(cb.greaterThanOrEqualTo(root.get("yearOfPublication"), filter.getYearFrom()));
+            if (filter.getYearTo() != null)
+                predicates.add(cb.lessThanOrEqualTo(root.get("yearOfPublication"), filter.getYearTo()));
+            if (filter.getAuthor() != null)
+                for (String word : BookEntity.wordsOf(filter.getAuthor())) {
+                    Subquery<Integer> books = query.subquery(Integer.class);  // ids of the words index entries, no join
+                    Root<BookAuthorWordEntity> authorWord = books.from(BookAuthorWordEntity.class);
+                    books.select(authorWord.get("book").get("id"))
+                            .where(cb.like(authorWord.get("word"), escapeLike(word) + "%", LIKE_ESCAPE));
+                    predicates.add(root.get("id").in(books));
+                }
+            return cb.and(predicates.toArray(Predicate[]::new));
+        };
+    }
+
+    /**
+     * Books positioned after the given cursor in the cursor's sort order (keyset pagination), among the books having
+     * a value for the sort field when the cursor has one, among the books without it otherwise.
+     * The sort field is bounded on its own, so its index is read from the cursor position, not from its start
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static Specification<BookEntity> after(BookCursor cursor) {
+        return (root, query, cb) -> {
+            if (cursor == null)
+                return null;
+            boolean asc = Sort.Direction.valueOf(cursor.getSortDirection()).isAscending();
+            Path<Integer> id = root.get("id");
+            Predicate idAfter = asc ? cb.greaterThan(id, cursor.getId()) : cb.lessThan(id, cursor.getId());
+            if (cursor.getSortField().equals("id"))
+                return idAfter;
+            Path<Comparable> field = root.get(cursor.getSortField());
+            Comparable value = cursor.getValue();
+            if (value == null)
+                return cb.and(cb.isNull(field), idAfter);
+            Predicate bound = asc ? cb.greaterThanOrEqualTo(field, value) : cb.lessThanOrEqualTo(field, value);
+            Predicate fieldAfter = asc ? cb.greaterThan(field, value) : cb.lessThan(field, value);
+            return cb.and(bound, cb.or(fieldAfter, idAfter));
+        };
+    }
+
+    /**
+     * Books following all those after the cursor: H2 orders NULLs lowest, so the books without a value for the sort
+     * field come before the others when ascending, and after them when descending. Null when no books follow
+     */
+    public static Specification<BookEntity> following(BookCursor cursor) {
+        if (cursor == null || cursor.getSortField().equals("id"))
+            return null;
+        boolean asc = Sort.Direction.valueOf(cursor.getSortDirection()).isAscending();
+        if (asc && cursor.getValue() == null)
+            return (root, query, cb) -> cb.isNotNull(root.get(cursor.getSortField()));
+        if (!asc && cursor.getValue() != null)
+            return (root, query, cb) -> cb.isNull(root.get(cursor.getSortField()));
+        return null;
+    }
+
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+}
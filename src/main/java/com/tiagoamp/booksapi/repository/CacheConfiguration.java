@@ -0,0 +1,52 @@
+package com.tiagoamp.booksapi.repository;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.time.Duration;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+/**
+ * Hibernate second-level cache, kept in a bounded in-process Caffeine cache
+ */
+@Configuration
+public class CacheConfiguration {
+
+    static final String BOOKS_REGION = "books";
+
+
+    @Bean(destroyMethod = "close")
+    public CacheManager hibernateCacheManager(@Value("${cache.books.maximum-size:10000}") long maximumSize,
+                                              @Value("${cache.books.time-to-live:10m}") Duration timeToLive) {
+        var provider = Caching.getCachingProvider(CaffeineCachingProvider.class.getName());
+        // a manager of its own, so application contexts sharing the JVM (as in tests) do not share cached entities
+        var cacheManager = provider.getCacheManager(URI.create("booksapi:" + UUID.randomUUID()), getClass().getClassLoader());
+        var booksConfig = new CaffeineConfiguration<Object, Object>();
+        booksConfig.setMaximumSize(OptionalLong.of(maximumSize));
+        booksConfig.setExpireAfterWrite(OptionalLong.of(timeToLive.toNanos()));
+        cacheManager.createCache(BOOKS_REGION, booksConfig);
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheCustomizer(CacheManager hibernateCacheManager) {
+        return properties -> {
+            properties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, true);
+            properties.put(AvailableSettings.CACHE_REGION_FACTORY, "jcache");
+            properties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+            properties.put(ConfigSettings.MISSING_CACHE_STRATEGY, "fail");  // every cached region is configured above
+            properties.put(AvailableSettings.GENERATE_STATISTICS, true);  // hit/miss counts, published as metrics
+        };
+    }
+
+}
@@ -0,0 +1,36 @@
+package com.tiagoamp.booksapi.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Primary pool for writes plus a replica pool for read-only transactions
+ */
+@Configuration
+public class DataSourceConfiguration {
+
+    @Bean
+    @Primary
+    public DataSource dataSource(DataSourceProperties properties,
+                                 @Value("${replica.datasource.url}") String replicaUrl,
+                                 @Value("${replica.datasource.username}") String replicaUsername,
+                                 @Value("${replica.datasource.password}") String replicaPassword,
+                                 @Value("${replica.read-your-writes-window}") Duration readYourWritesWindow) {
+        DataSource primary = properties.initializeDataSourceBuilder().build();
+        DataSource replica = properties.initializeDataSourceBuilder()
+                .url(replicaUrl).username(replicaUsername).password(replicaPassword)
+                .build();
+        var routingDataSource = new ReadWriteRoutingDataSource(primary, replica, readYourWritesWindow);
+        routingDataSource.afterPropertiesSet();
+        // connections are fetched on the first statement, once the transaction is known to be read-only or not
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+
+}
@@ -0,0 +1,56 @@
+package com.tiagoamp.booksapi.repository;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Routes connections of read-only transactions to the replica and all others to the primary.
+ * Clients that wrote recently keep reading from the primary for a while, so they see their own writes
+ * even if the replica lags behind. Only read-write transactions count as writes: connections fetched
+ * outside of any transaction go to the primary, without pinning the client to it
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    enum Route { PRIMARY, REPLICA }
+
+    private final Cache<String, Boolean> recentWriters;
+
+
+    public ReadWriteRoutingDataSource(DataSource primary, DataSource replica, Duration readYourWritesWindow) {
+        setTargetDataSources(Map.of(Route.PRIMARY, primary, Route.REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+        recentWriters = Caffeine.newBuilder()
+                .expireAfterWrite(readYourWritesWindow)
+                .maximumSize(100_000)
+                .build();
+    }
+
+    @Override
+    protected Route determineCurrentLookupKey() {
+        String client = currentClient();
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            if (client != null && TransactionSynchronizationManager.isActualTransactionActive())
+                recentWriters.put(client, Boolean.TRUE);
+            return Route.PRIMARY;
+        }
+        if (client != null && recentWriters.getIfPresent(client) != null)
+            return Route.PRIMARY;
+        return Route.REPLICA;
+    }
+
+    private String currentClient() {
+        var authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || authentication instanceof AnonymousAuthenticationToken)
+            return null;
+        return authentication.getName();
+    }
+
+}
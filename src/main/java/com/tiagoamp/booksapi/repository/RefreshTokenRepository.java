@@ -0,0 +1,43 @@
+package com.tiagoamp.booksapi.repository;
+
+import com.tiagoamp.booksapi.model.AppUser;
+import com.tiagoamp.booksapi.model.RefreshToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Optional;
+
+@Repository
+public interface RefreshTokenRepository extends JpaRepository<RefreshToken, Integer> {
+
+    Optional<RefreshToken> findByTokenHash(String tokenHash);
+
+    /**
+     * Marks the token as used unless it already was, in the same statement: 0 when it was used concurrently
+     */
+    @Transactional
+    @Modifying
+    @Query("update RefreshToken t set t.used = true where t.id = :id and t.used = false")
+    int markUsed(@Param("id") Integer id);
+
+    @Transactional
+    @Modifying
+    @Query("delete from RefreshToken t where t.familyId = :familyId")
+    int deleteByFamily(@Param("familyId") String familyId);
+
+    @Transactional
+    @Modifying
+    @Query("delete from RefreshToken t where t.user = :user")
+    int deleteByUser(@Param("user") AppUser user);
+
+    @Transactional
+    @Modifying
+    @Query("delete from RefreshToken t where t.user = :user and t.expiresAt < :now")
+    int deleteExpired(@Param("user") AppUser user, @Param("now") Instant now);
+
+}
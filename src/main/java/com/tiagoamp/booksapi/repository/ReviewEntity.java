@@ -0,0 +1,37 @@
+package com.tiagoamp.booksapi.repository;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "REVIEWS", indexes = {
+        @Index(name = "IDX_REVIEWS_BOOK_ID_ID", columnList = "BOOK_ID, id") })
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReviewEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "BOOK_ID", nullable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)  // reviews go away with their book, without loading them
+    @ToString.Exclude
+    private BookEntity book;
+
+    @Column(name = "TEXT")
+    private String text;
+
+    @Column(name = "CREATED_AT", nullable = false)
+    private LocalDateTime createdAt;
+
+}
@@ -0,0 +1,57 @@
+package com.tiagoamp.booksapi.repository;
+
+import com.tiagoamp.booksapi.model.Review;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+public interface ReviewRepository extends JpaRepository<ReviewEntity, Long>, ReviewRepositoryCustom {
+
+    interface BookReview {
+        Long getId();
+        Integer getBookId();
+        String getText();
+        LocalDateTime getCreatedAt();
+    }
+
+    // reviews are read as unmanaged values, so they are not kept by the persistence context
+    String SELECT_REVIEWS = "select new com.tiagoamp.booksapi.model.Review(r.id, r.text, r.createdAt) " +
+                            "from ReviewEntity r where r.book.id = :bookId";
+
+    @Query(SELECT_REVIEWS)
+    Slice<Review> findByBookId(@Param("bookId") Integer bookId, Pageable pageable);
+
+    @Query(SELECT_REVIEWS + " and r.id > :afterId")
+    Slice<Review> findByBookIdAfter(@Param("bookId") Integer bookId, @Param("afterId") Long afterId, Pageable pageable);
+
+    // bounded and ordered as the (book, id) index, so the reviews are read in its order instead of sorted as a whole
+    @Query(SELECT_REVIEWS + " and r.id > 0 order by r.book.id, r.id")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "100"))
+    Stream<Review> streamByBookId(@Param("bookId") Integer bookId);
+
+    // first reviews of each book, ranked inside the database so popular books do not load all their reviews
+    @Query(value = "SELECT ID AS id, BOOK_ID AS bookId, TEXT AS text, CREATED_AT AS createdAt FROM (" +
+                   "SELECT r.*, ROW_NUMBER() OVER (PARTITION BY r.BOOK_ID ORDER BY r.ID) AS RN " +
+                   "FROM REVIEWS r WHERE r.BOOK_ID IN (:bookIds)) WHERE RN <= :limit ORDER BY BOOK_ID, ID",
+           nativeQuery = true)
+    List<BookReview> findFirstByBookIds(@Param("bookIds") Collection<Integer> bookIds, @Param("limit") int limitPerBook);
+
+    @Transactional
+    @Modifying
+    @Query("insert into ReviewEntity (book, text, createdAt) " +
+           "select b, :text, local datetime from BookEntity b where b.id = :bookId")  // inserts nothing if there is no book
+    int insertReview(@Param("bookId") Integer bookId, @Param("text") String text);
+
+}
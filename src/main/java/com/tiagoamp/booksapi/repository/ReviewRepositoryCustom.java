@@ -0,0 +1,13 @@
+package com.tiagoamp.booksapi.repository;
+
+import java.util.List;
+
+public interface ReviewRepositoryCustom {
+
+    /**
+     * Inserts new reviews, flushing and detaching them batch by batch
+     * so the persistence context does not grow with the number of reviews
+     */
+    List<ReviewEntity> insertAll(List<ReviewEntity> reviews);
+
+}
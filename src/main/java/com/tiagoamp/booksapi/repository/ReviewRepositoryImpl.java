@@ -0,0 +1,34 @@
+package com.tiagoamp.booksapi.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+public class ReviewRepositoryImpl implements ReviewRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager em;
+
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}")
+    private int batchSize;
+
+
+    @Override
+    @Transactional
+    public List<ReviewEntity> insertAll(List<ReviewEntity> reviews) {
+        for (int i = 0; i < reviews.size(); i++) {
+            em.persist(reviews.get(i));  // identity ids are generated row by row, detaching still bounds memory
+            if ((i + 1) % batchSize == 0) {
+                em.flush();
+                em.clear();
+            }
+        }
+        em.flush();
+        em.clear();
+        return reviews;
+    }
+
+}
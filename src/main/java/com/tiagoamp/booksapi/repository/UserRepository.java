@@ -2,7 +2,11 @@ package com.tiagoamp.booksapi.repository;
 
 import com.tiagoamp.booksapi.model.AppUser;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import java.util.*;
 
 @Repository
@@ -12,4 +16,12 @@ public interface UserRepository extends JpaRepository<AppUser, Integer> {
 
     boolean existsByEmail(String email);
 
+    /**
+     * Replaces only the password hash, without overwriting other columns changed meanwhile (as the token version)
+     */
+    @Transactional
+    @Modifying
+    @Query("update AppUser u set u.password = :password where u.id = :id")
+    int updatePassword(@Param("id") Integer id, @Param("password") String password);
+
 }
\ No newline at end of file
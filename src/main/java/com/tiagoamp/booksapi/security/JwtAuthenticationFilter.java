@@ -1,34 +1,45 @@
 package com.tiagoamp.booksapi.security;
 
 import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.interfaces.DecodedJWT;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tiagoamp.booksapi.model.AppUser;
 import com.tiagoamp.booksapi.service.TokenService;
+import com.tiagoamp.booksapi.service.UserService;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 @Component
 @RequiredArgsConstructor
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final TokenService tokenService;
-    private final UserDetailsService userService;
+    private final UserService userService;
+
+    @Value("${security.token.stateless:true}")
+    private boolean stateless;  // authorities from the token claims, instead of loading the user on every request
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
@@ -39,9 +50,10 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         }
         try {
             String token = tokenService.getTokenFrom(authorizationHeader);
-            String userEmail = tokenService.getSubjectFrom(token);
-            UserDetails user = userService.loadUserByUsername(userEmail);
-            var authenticationToken = new UsernamePasswordAuthenticationToken(userEmail, null, user.getAuthorities());
+            DecodedJWT decodedToken = tokenService.getDecodedTokenFrom(token);
+            String userEmail = decodedToken.getSubject();
+            var authorities = stateless ? authoritiesFromClaims(decodedToken) : authoritiesOfUser(decodedToken);
+            var authenticationToken = new UsernamePasswordAuthenticationToken(userEmail, null, authorities);
             authenticationToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
             SecurityContextHolder.getContext().setAuthentication(authenticationToken);
             filterChain.doFilter(request, response);
@@ -58,4 +70,33 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     }
 
+
+    private Collection<? extends GrantedAuthority> authoritiesFromClaims(DecodedJWT token) {
+        // the only lookup is the token version of the user, kept in memory
+        Integer version = token.getClaim(TokenService.VERSION_CLAIM).asInt();
+        Integer currentVersion = userService.findTokenVersion(token.getSubject(), version)
+                .orElseThrow(() -> new JWTVerificationException("Unknown user"));
+        checkVersion(token, currentVersion);
+        String role = token.getClaim(TokenService.ROLES_CLAIM).asString();
+        if (role == null)
+            throw new JWTVerificationException("Token without roles");
+        return List.of(new SimpleGrantedAuthority("ROLE_" + role));  // as AppUser authorities
+    }
+
+    private Collection<? extends GrantedAuthority> authoritiesOfUser(DecodedJWT token) {
+        try {
+            var user = (AppUser) userService.loadUserByUsername(token.getSubject());
+            checkVersion(token, user.getTokenVersion());
+            return user.getAuthorities();
+        } catch (UsernameNotFoundException e) {
+            throw new JWTVerificationException("Unknown user");
+        }
+    }
+
+    private void checkVersion(DecodedJWT token, int currentVersion) {
+        Integer version = token.getClaim(TokenService.VERSION_CLAIM).asInt();  // null for tokens issued without it
+        if (!Objects.equals(version, currentVersion))
+            throw new JWTVerificationException("Token revoked");
+    }
+
 }
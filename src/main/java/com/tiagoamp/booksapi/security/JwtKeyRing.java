@@ -0,0 +1,68 @@
+package com.tiagoamp.booksapi.security;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keys of the tokens, identified by the 'kid' header: the current key signs new tokens,
+ * retired keys only verify the tokens signed before a rotation, until they expire.
+ * Signer and verifiers are built once, they are thread-safe
+ */
+@Component
+public class JwtKeyRing {
+
+    private final String signingKeyId;
+    private final Algorithm signingAlgorithm;
+    private final Map<String, JWTVerifier> verifiers = new HashMap<>();  // by key id, read only once built
+
+
+    /**
+     * @param retiredKeys 'id=secret' pairs separated by commas, empty when there are none
+     */
+    public JwtKeyRing(@Value("${secret.key}") String signingKey,
+                      @Value("${secret.key-id:default}") String signingKeyId,
+                      @Value("${secret.retired-keys:}") String retiredKeys) {
+        this.signingKeyId = signingKeyId;
+        this.signingAlgorithm = Algorithm.HMAC256(signingKey.getBytes());
+        verifiers.put(signingKeyId, JWT.require(signingAlgorithm).build());
+        for (String retired : retiredKeys.split(",")) {
+            if (retired.isBlank())
+                continue;
+            String[] idAndSecret = retired.trim().split("=", 2);
+            if (idAndSecret.length < 2 || idAndSecret[0].isBlank() || idAndSecret[1].isEmpty())
+                throw new IllegalArgumentException("Retired keys must be 'id=secret' pairs");
+            verifiers.putIfAbsent(idAndSecret[0], JWT.require(Algorithm.HMAC256(idAndSecret[1].getBytes())).build());
+        }
+    }
+
+
+    public String getSigningKeyId() {
+        return signingKeyId;
+    }
+
+    public Algorithm getSigningAlgorithm() {
+        return signingAlgorithm;
+    }
+
+    /**
+     * Verifies the token with the key of its 'kid', the current key for tokens without it (issued before key ids).
+     * Throws JWTVerificationException if not valid
+     */
+    public DecodedJWT verify(String token) {
+        DecodedJWT decoded = JWT.decode(token);  // parsed once, for both the key id and the verification
+        String keyId = decoded.getKeyId() == null ? signingKeyId : decoded.getKeyId();
+        JWTVerifier verifier = verifiers.get(keyId);
+        if (verifier == null)
+            throw new JWTVerificationException("Unknown signing key");
+        return verifier.verify(decoded);
+    }
+
+}
@@ -0,0 +1,91 @@
+package com.tiagoamp.booksapi.security;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.crypto.password.Pbkdf2PasswordEncoder;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Passwords are hashed with BCrypt, at the baseline strength unless configured. Calibration is opted into with a
+ * strength of 0: the strength is then the one taking about the target time on this host, measured at startup.
+ * Hashes are stored with the id of their encoding ('{bcrypt}$2a$10$...'): hashes of other encodings, and the older ones
+ * stored without id, are still checked, and replaced by a hash with the current encoding once their user logs in
+ */
+@Configuration
+public class PasswordEncoderConfiguration {
+
+    static final String BCRYPT = "bcrypt";
+    static final String PBKDF2 = "pbkdf2";
+    static final int MIN_STRENGTH = 10;  // default of BCryptPasswordEncoder, never lowered on a fast host
+    static final int CALIBRATED = 0;
+    static final int MAX_STRENGTH = 16;  // about 4 seconds on a laptop, logins would be too slow beyond
+    private static final int MEASURED_STRENGTH = 8;  // a few milliseconds, each extra strength doubles the time
+    private static final int MEASUREMENTS = 5;
+    private static final Duration WARM_UP = Duration.ofMillis(300);  // interpreted, hashing is several times slower
+
+
+    @Bean
+    public PasswordEncoder passwordEncoder(@Value("${security.password.encoding.strength:10}") int strength,
+                                           @Value("${security.password.encoding.target-time:250ms}") Duration targetTime,
+                                           MeterRegistry registry) {
+        int bcryptStrength = strength != CALIBRATED ? strength : strengthFor(measureBCrypt(), targetTime);  // measuring adds to the startup
+        Gauge.builder("login.password.strength", () -> bcryptStrength)
+                .description("BCrypt strength of the new password hashes")
+                .register(registry);
+        return delegatingEncoder(bcryptStrength);
+    }
+
+    /**
+     * Encodes with BCrypt at the strength, checks BCrypt (with or without id) and PBKDF2 hashes.
+     * Hashes with another encoding or a lower BCrypt strength need an upgrade
+     */
+    static DelegatingPasswordEncoder delegatingEncoder(int bcryptStrength) {
+        var bcrypt = new BCryptPasswordEncoder(bcryptStrength);
+        var encoder = new DelegatingPasswordEncoder(BCRYPT, Map.of(
+                BCRYPT, bcrypt,
+                PBKDF2, Pbkdf2PasswordEncoder.defaultsForSpringSecurity_v5_8()));
+        encoder.setDefaultPasswordEncoderForMatches(bcrypt);  // hashes stored before ids were added were all BCrypt
+        return encoder;
+    }
+
+    /**
+     * Highest strength whose hashing time, estimated from the time at the measured strength, is within the target
+     */
+    static int strengthFor(long measuredNanos, Duration targetTime) {
+        int strength = MEASURED_STRENGTH;
+        long estimatedNanos = Math.max(1, measuredNanos);
+        while (strength < MAX_STRENGTH && estimatedNanos * 2 <= targetTime.toNanos()) {
+            strength++;
+            estimatedNanos *= 2;
+        }
+        return Math.max(MIN_STRENGTH, strength);
+    }
+
+    /**
+     * Fastest of a few hashes at the measured strength, after hashing for a while to have it compiled by the JIT.
+     * The rest of the startup competes for the CPU, so on few cores the strength can be lower than it could be,
+     * never higher
+     */
+    private static long measureBCrypt() {
+        var measured = new BCryptPasswordEncoder(MEASURED_STRENGTH);
+        long warmUpEnd = System.nanoTime() + WARM_UP.toNanos();
+        while (System.nanoTime() < warmUpEnd)
+            measured.encode("calibration");
+        long fastest = Long.MAX_VALUE;
+        for (int i = 0; i < MEASUREMENTS; i++) {
+            long start = System.nanoTime();
+            measured.encode("calibration");
+            fastest = Math.min(fastest, System.nanoTime() - start);
+        }
+        return fastest;
+    }
+
+}
@@ -0,0 +1,98 @@
+package com.tiagoamp.booksapi.security;
+
+import com.tiagoamp.booksapi.exception.ServiceOverloadedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs password verifications (BCrypt, slow on purpose) on a few dedicated threads, with a bounded queue.
+ * A burst of logins waits in the queue instead of taking every request thread, and once the queue is full
+ * logins are rejected at once, so other requests are still served
+ */
+@Component
+public class PasswordVerificationExecutor {
+
+    private final ThreadPoolExecutor executor;
+    private final Duration retryAfter;
+    private final Timer waitTimer;
+    private final Timer verificationTimer;
+    private final Counter rejectedCounter;
+
+
+    public PasswordVerificationExecutor(@Value("${security.password.verification.threads:4}") int threads,
+                                        @Value("${security.password.verification.queue-capacity:64}") int queueCapacity,
+                                        @Value("${security.password.verification.retry-after:1s}") Duration retryAfter,
+                                        MeterRegistry registry) {
+        var threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    var thread = new Thread(runnable, "password-verification-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        this.retryAfter = retryAfter;
+        Gauge.builder("login.password.queue", executor, e -> e.getQueue().size())
+                .description("Password verifications waiting for a thread")
+                .register(registry);
+        this.waitTimer = Timer.builder("login.password.wait")
+                .description("Time a password verification waited in the queue")
+                .register(registry);
+        this.verificationTimer = Timer.builder("login.password.hash")
+                .description("Time verifying a password, mostly spent hashing it")
+                .register(registry);
+        this.rejectedCounter = Counter.builder("login.password.rejected")
+                .description("Password verifications rejected because the queue was full")
+                .register(registry);
+    }
+
+
+    /**
+     * Runs the verification on one of the threads and waits for its result. Exceptions it throws are rethrown as they are.
+     * Throws ServiceOverloadedException without waiting when the queue is full
+     */
+    public <T> T verify(Supplier<T> verification) {
+        long queuedAt = System.nanoTime();
+        Future<T> result;
+        try {
+            result = executor.submit(() -> {
+                waitTimer.record(System.nanoTime() - queuedAt, TimeUnit.NANOSECONDS);
+                return verificationTimer.record(verification);
+            });
+        } catch (RejectedExecutionException e) {
+            rejectedCounter.increment();
+            throw new ServiceOverloadedException("Too many logins in progress, try again later", retryAfter);
+        }
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause)
+                throw cause;
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while verifying the password", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+}
@@ -12,6 +12,7 @@ import org.springframework.security.config.annotation.method.configuration.Enabl
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
@@ -25,6 +26,7 @@ public class SecurityConfiguration {
 
     private final JwtAuthenticationFilter jwtAuthFilter;
     private final UserDetailsService userService;
+    private final UserDetailsPasswordService userPasswordService;
     private final PasswordEncoder passwordEncoder;
 
     @Bean
@@ -35,6 +37,8 @@ public class SecurityConfiguration {
                     .requestMatchers("/", "/swagger-ui/**", "/api-docs", "/api-docs/**").permitAll() // white list (swagger and root entry point)
                     .requestMatchers(HttpMethod.GET, "/users").permitAll()  // white list: fetch users list
                     .requestMatchers(HttpMethod.POST, "/users/login").permitAll() // white list: login endpoint
+                    .requestMatchers(HttpMethod.POST, "/users/token/refresh").permitAll() // white list: authenticated by the refresh token
+                    .requestMatchers("/actuator/**").hasRole("ADMIN")  // metrics are for administrators only
 //                      .requestMatchers(HttpMethod.POST, "/books").hasRole("ADMIN") // it pre-prends with "ROLE_" when validating role allowed
                     .anyRequest().authenticated()  // all others endpoints should be authenticated
                 )
@@ -48,6 +52,7 @@ public class SecurityConfiguration {
         DaoAuthenticationProvider authenticationProvider = new DaoAuthenticationProvider();
         authenticationProvider.setUserDetailsService(userService);
         authenticationProvider.setPasswordEncoder(passwordEncoder);
+        authenticationProvider.setUserDetailsPasswordService(userPasswordService);  // re-hashes outdated hashes at login
         return authenticationProvider;
     }
 
@@ -2,14 +2,22 @@ package com.tiagoamp.booksapi.service;
 
 import com.tiagoamp.booksapi.exception.AuthenticationFailedException;
 import com.tiagoamp.booksapi.model.AppUser;
-import com.tiagoamp.booksapi.repository.UserRepository;
+import com.tiagoamp.booksapi.model.AuthTokens;
+import com.tiagoamp.booksapi.model.RefreshToken;
+import com.tiagoamp.booksapi.repository.RefreshTokenRepository;
+import com.tiagoamp.booksapi.security.PasswordVerificationExecutor;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.AuthenticationManager;
-import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
 
 @Service
 @RequiredArgsConstructor
@@ -17,18 +25,56 @@ public class AuthenticationService {
 
     private final AuthenticationManager authenticationManager;
     private final TokenService tokenService;
+    private final RefreshTokenRepository refreshTokenRepo;
+    private final PasswordVerificationExecutor passwordVerifier;
+
+    @Value("${security.token.refresh.time-to-live:7d}")
+    private Duration refreshTokenTimeToLive;
 
-    public String authenticate(String email, String password) {
+    public AuthTokens authenticate(String email, String password) {
+        AppUser user;
         try {
             // The authentication manager provides secure authentication and throws exception if it fails
             var authToken = new UsernamePasswordAuthenticationToken(email, password);
-            Authentication authenticate = authenticationManager.authenticate(authToken);
-            var user  = (AppUser) authenticate.getPrincipal();
-            String token = tokenService.generateToken(user);
-            return token;
+            // hashing the password is slow on purpose: done apart from the request threads, rejected when too many wait.
+            // When the stored hash has outdated parameters, the password is also hashed again and stored
+            Authentication authenticate = passwordVerifier.verify(() -> authenticationManager.authenticate(authToken));
+            user = (AppUser) authenticate.getPrincipal();
         } catch (AuthenticationException e) {
             throw new AuthenticationFailedException("Invalid User or Password");
         }
+        refreshTokenRepo.deleteExpired(user, Instant.now());  // the used tokens of a family are kept until they expire
+        String refreshToken = issueRefreshToken(user, UUID.randomUUID().toString());
+        return new AuthTokens(tokenService.generateToken(user), refreshToken);
+    }
+
+    /**
+     * Exchanges the refresh token for new tokens, without checking the password again. Each refresh token is used once:
+     * a used one presented again was stolen (or leaked), so every token of its family is revoked
+     */
+    @Transactional(noRollbackFor = AuthenticationFailedException.class)  // a revoked family stays revoked
+    public AuthTokens refresh(String refreshToken) {
+        RefreshToken stored = refreshTokenRepo.findByTokenHash(tokenService.hashOf(refreshToken))
+                .orElseThrow(() -> new AuthenticationFailedException("Invalid refresh token"));
+        AppUser user = stored.getUser();
+        Instant now = Instant.now();
+        refreshTokenRepo.deleteExpired(user, now);  // as at login, for sessions kept by refreshing alone
+        if (stored.getExpiresAt().isBefore(now))  // before marking it used, as the transaction commits on failures
+            throw new AuthenticationFailedException("Invalid refresh token");
+        if (stored.isUsed() || refreshTokenRepo.markUsed(stored.getId()) == 0) {
+            refreshTokenRepo.deleteByFamily(stored.getFamilyId());
+            throw new AuthenticationFailedException("Refresh token reused, tokens of the session were revoked");
+        }
+        String newRefreshToken = issueRefreshToken(user, stored.getFamilyId());
+        return new AuthTokens(tokenService.generateToken(user), newRefreshToken);
+    }
+
+
+    private String issueRefreshToken(AppUser user, String familyId) {
+        String refreshToken = tokenService.generateRefreshToken();
+        refreshTokenRepo.save(new RefreshToken(tokenService.hashOf(refreshToken), familyId, user,
+                Instant.now().plus(refreshTokenTimeToLive)));
+        return refreshToken;
     }
 
 }
@@ -1,62 +1,316 @@
 package com.tiagoamp.booksapi.service;
 
+import com.tiagoamp.booksapi.exception.ConcurrentUpdateException;
+import com.tiagoamp.booksapi.exception.InvalidCursorException;
+import com.tiagoamp.booksapi.exception.PreconditionFailedException;
 import com.tiagoamp.booksapi.exception.ResourceAlreadyExistsException;
 import com.tiagoamp.booksapi.exception.ResourceNotFoundException;
 import com.tiagoamp.booksapi.model.Book;
+import com.tiagoamp.booksapi.model.BookCursor;
+import com.tiagoamp.booksapi.model.BookFilter;
+import com.tiagoamp.booksapi.model.CursorPage;
+import com.tiagoamp.booksapi.model.ItemResult;
+import com.tiagoamp.booksapi.model.Review;
+import com.tiagoamp.booksapi.model.ReviewCursor;
 import com.tiagoamp.booksapi.repository.BookGatewayRepository;
+import com.tiagoamp.booksapi.util.BookResponseCache;
+import com.tiagoamp.booksapi.util.BookSearchIndex;
+import com.tiagoamp.booksapi.util.BookTitleTrie;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static com.tiagoamp.booksapi.util.Transactions.afterCommit;
 
 @Service
 @RequiredArgsConstructor
-public class BooksService {
+public class BooksService implements SmartInitializingSingleton {
+
+    static final int MAX_BOOKS_PAGE_SIZE = 100;  // also bounds the books whose reviews are embedded at once
+    static final int MAX_REVIEWS_PAGE_SIZE = 100;
+    static final int MAX_EMBEDDED_REVIEWS = 10;  // per book, the rest is reachable through its reviews link
+    static final int MAX_SEARCH_PAGE_SIZE = 100;
+    static final int MAX_SEARCH_RESULTS = 10_000;  // ranked results reachable through the pages
+    static final int MAX_SUGGESTIONS = 20;
 
     private final BookGatewayRepository booksRepo;
+    private final BookResponseCache responseCache;  // serialized responses, dropped by writes
+    private final BookSearchIndex searchIndex;  // kept up to date by writes, once committed
+    private final BookTitleTrie titleTrie;  // idem
+
 
+    @Transactional(readOnly = true)  // read-only transactions are served by the replica
+    public CursorPage<Book> findBooks(Integer size, Integer pageNumber, String sortField, String sortDirection,
+                                      BookFilter filter) {
+        return booksRepo.findAll(booksPageSize(size), pageNumber, sortField, sortDirection, filter);
+    }
+
+    @Transactional(readOnly = true)
+    public CursorPage<Book> findBooks(Integer size, String after, String sortField, String sortDirection,
+                                      BookFilter filter) {
+        if (!BookCursor.isSortable(sortField))
+            throw new InvalidCursorException(String.format("Sort field '%s' not supported", sortField));
+        BookCursor cursor = after.isEmpty() ? null : BookCursor.decode(after);  // empty token starts from the first page
+        if (cursor != null && !cursor.matches(sortField, sortDirection))
+            throw new InvalidCursorException("Cursor does not match requested sort");
+        return booksRepo.findAll(booksPageSize(size), cursor, sortField, sortDirection, filter);  // filters are resent with the cursor
+    }
 
-    public List<Book> findBooks(Integer size, Integer pageNumber, String sortField, String sortDirection) {
-        return booksRepo.findAll(size, pageNumber, sortField, sortDirection);
+    @Transactional(readOnly = true)
+    public long countBooks(BookFilter filter) {
+        return booksRepo.count(filter);
     }
 
+    @Transactional(readOnly = true)
     public Book findBookById(Integer id) {
-        return booksRepo.find(id)
-                .orElseThrow(() -> new ResourceNotFoundException(Book.class.getSimpleName(), id));
+        return booksRepo.find(id).orElseThrow(() -> bookNotFound(id));
+    }
+
+    /**
+     * Books matching any word of the query in their title, authors or reviews, best matches first.
+     * Only the first results are ranked into pages, deeper pages are empty
+     */
+    public BookSearchIndex.Hits searchBooks(String query, Integer size, Integer pageNumber) {
+        int pageSize = Math.max(1, Math.min(size, MAX_SEARCH_PAGE_SIZE));
+        long offset = (long) Math.max(0, pageNumber) * pageSize;  // long, as a large page number overflows an int
+        if (offset >= MAX_SEARCH_RESULTS)
+            return searchIndex.search(query, 0, 0);  // deeper pages are empty, the matches are only counted
+        return searchIndex.search(query, (int) offset, (int) Math.min(pageSize, MAX_SEARCH_RESULTS - offset));
+    }
+
+    /**
+     * Titles starting with the prefix, in alphabetical order
+     */
+    public List<String> suggestTitles(String prefix, Integer size) {
+        return titleTrie.suggest(prefix, Math.max(1, Math.min(size, MAX_SUGGESTIONS)));
     }
 
     public Book createBook(Book book) {
-        Optional<Book> registeredBook = booksRepo.findBookByTitle(book.getTitle());
-        if (registeredBook.isPresent())
-            throw new ResourceAlreadyExistsException(Book.class.getSimpleName(), registeredBook.get().getId());
-        return booksRepo.save(book);
+        try {
+            Book created = booksRepo.save(book);  // duplicated titles are rejected by the unique index, no pre-check query
+            afterCommit(() -> {
+                searchIndex.put(created);
+                titleTrie.put(created);
+            });
+            return created;
+        } catch (DataIntegrityViolationException e) {
+            throw titleConflict(book, e);
+        }
     }
 
+    /**
+     * Registers many books at once, checking title uniqueness with a single query.
+     * Results follow the order of the given books
+     */
+    public List<ItemResult<Book>> createBooks(List<Book> books) {
+        try {
+            return insertBooks(books);
+        } catch (DataIntegrityViolationException e) {  // a title registered concurrently, once checked
+            if (TransactionSynchronizationManager.isActualTransactionActive())
+                throw e;  // the caller's transaction is rolled back as a whole, it is up to the caller to retry
+            return createBooksOneByOne(books);  // nothing was inserted, the batch insert is rolled back
+        }
+    }
+
+    /**
+     * Registers many books as createBooks, along with the reviews at the same position, in one transaction.
+     * Reviews are only added to the books registered here
+     */
+    @Transactional  // a chunk of an import is committed as a whole
+    public List<ItemResult<Book>> importBooks(List<Book> books, List<List<String>> reviews) {
+        var results = createBooks(books);
+        Map<Integer, List<String>> reviewsByBookId = new HashMap<>();
+        for (int i = 0; i < results.size(); i++)
+            if (results.get(i).isOk() && !reviews.get(i).isEmpty())
+                reviewsByBookId.put(results.get(i).getItem().getId(), reviews.get(i));
+        if (!reviewsByBookId.isEmpty()) {
+            booksRepo.addReviews(reviewsByBookId);
+            afterCommit(() -> reviewsByBookId.forEach(searchIndex::addReviews));
+        }
+        return results;
+    }
+
+    private List<ItemResult<Book>> insertBooks(List<Book> books) {
+        var titles = books.stream().map(Book::getTitle).collect(Collectors.toSet());
+        Map<String, Integer> registeredIds = booksRepo.findIdsByTitles(titles);
+        Map<String, Book> newBooks = new LinkedHashMap<>();  // first book of each unregistered title
+        books.stream().filter(b -> !registeredIds.containsKey(b.getTitle())).forEach(b -> newBooks.putIfAbsent(b.getTitle(), b));
+        Map<String, Book> savedBooks = booksRepo.saveAll(new ArrayList<>(newBooks.values())).stream()
+                .collect(Collectors.toMap(Book::getTitle, b -> b));
+        afterCommit(() -> savedBooks.values().forEach(b -> {
+            searchIndex.put(b);
+            titleTrie.put(b);
+        }));
+        return books.stream().map(book -> {
+            if (newBooks.get(book.getTitle()) == book)
+                return ItemResult.ok(savedBooks.get(book.getTitle()));
+            Integer id = registeredIds.containsKey(book.getTitle()) ? registeredIds.get(book.getTitle())
+                    : savedBooks.get(book.getTitle()).getId();  // title repeated in the batch
+            return ItemResult.<Book>failed(book, new ResourceAlreadyExistsException(Book.class.getSimpleName(), id));
+        }).toList();
+    }
+
+    /**
+     * Inserts the books one at a time, each conflicting title found by its own insert (repeated titles included)
+     */
+    private List<ItemResult<Book>> createBooksOneByOne(List<Book> books) {
+        return books.stream().map(book -> {
+            try {
+                return ItemResult.ok(createBook(book));
+            } catch (ResourceAlreadyExistsException e) {
+                return ItemResult.<Book>failed(book, e);
+            }
+        }).toList();
+    }
+
+    /**
+     * Updates the book. When it carries a version, the update only happens if the book is still at that version.
+     * Otherwise it is applied over an update committed concurrently, retried once
+     */
     public Book updateBook(Book book) {
-        abortIfBookDoesNotExist(book.getId());
-        Book updated = booksRepo.update(book);
-        return updated;
+        try {
+            Book updated = withRetry(book.getVersion(), book.getId(),
+                    () -> booksRepo.update(book).orElseThrow(() -> bookNotFound(book.getId())));
+            responseCache.evict(updated.getId(), updated.getVersion());
+            afterCommit(() -> {
+                searchIndex.put(updated);
+                titleTrie.put(updated);
+            });
+            return updated;
+        } catch (DataIntegrityViolationException e) {
+            throw titleConflict(book, e);
+        }
     }
 
-    public void deleteBook(Integer id) {
-        abortIfBookDoesNotExist(id);
-        booksRepo.delete(id);
+    /**
+     * Deletes the book, only if it is still at the expected version (any version when null, retried once then)
+     */
+    public void deleteBook(Integer id, Integer expectedVersion) {
+        boolean deleted = withRetry(expectedVersion, id, () -> booksRepo.delete(id, expectedVersion));
+        if (!deleted)
+            throw bookNotFound(id);
+        responseCache.evictDeleted(id);
+        afterCommit(() -> {
+            searchIndex.remove(id);
+            titleTrie.remove(id);
+        });
     }
 
-    public List<String> findReviews(Integer bookId) {
-        abortIfBookDoesNotExist(bookId);
-        return booksRepo.findReviewsOfBook(bookId);
+    @Transactional(readOnly = true)
+    public CursorPage<Review> findReviews(Integer bookId, Integer size, Integer pageNumber) {
+        return booksRepo.findReviewsOfBook(bookId, reviewsPageSize(size), pageNumber)
+                .orElseThrow(() -> bookNotFound(bookId));
+    }
+
+    @Transactional(readOnly = true)
+    public CursorPage<Review> findReviews(Integer bookId, Integer size, String after) {
+        Long afterId = after.isEmpty() ? 0L : ReviewCursor.decode(after);  // empty token starts from the first page
+        return booksRepo.findReviewsOfBook(bookId, reviewsPageSize(size), afterId)
+                .orElseThrow(() -> bookNotFound(bookId));
+    }
+
+    @Transactional(readOnly = true)
+    public Map<Integer, List<Review>> findFirstReviews(Collection<Integer> bookIds) {
+        return booksRepo.findReviewsOfBooks(bookIds, MAX_EMBEDDED_REVIEWS);
+    }
+
+    public void forEachBook(Consumer<Book> action) {
+        booksRepo.forEachBook(action);
+    }
+
+    public void forEachBookWithReviews(BiConsumer<Book, List<Review>> action) {
+        booksRepo.forEachBookWithReviews(action);
+    }
+
+    public void forEachReview(Integer bookId, Consumer<Review> action) {
+        if (!booksRepo.forEachReviewOfBook(bookId, action))
+            throw bookNotFound(bookId);
     }
 
     public String addReview(Integer bookId, String review) {
-        abortIfBookDoesNotExist(bookId);
-        return booksRepo.addReview(bookId, review);
+        String added = booksRepo.addReview(bookId, review).orElseThrow(() -> bookNotFound(bookId));
+        responseCache.evictReviews(bookId);
+        afterCommit(() -> searchIndex.addReviews(bookId, List.of(added)));
+        return added;
+    }
+
+
+    /**
+     * Counts the registered books before requests are served, so no write can commit while they are counted
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        booksRepo.loadCount();
     }
 
+    /**
+     * Indexes the registered books for searches and title suggestions, once the application is up
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void indexBooks() {
+        booksRepo.forEachBookWithReviews((book, reviews) -> {
+            searchIndex.put(book, reviews.stream().map(Review::getText).toList());
+            titleTrie.put(book);
+        });
+    }
+
+
+    /**
+     * Runs the write of the book, in its own transaction. A version conflict fails the precondition when a version
+     * was expected. Without one there was no precondition: the write is retried once, on the book as now committed,
+     * and reported as a conflict if it collides again
+     */
+    private <T> T withRetry(Integer expectedVersion, Integer id, Supplier<T> write) {
+        try {
+            return write.get();
+        } catch (OptimisticLockingFailureException e) {
+            if (expectedVersion != null)
+                throw new PreconditionFailedException(Book.class.getSimpleName(), id);
+        }
+        try {
+            return write.get();
+        } catch (OptimisticLockingFailureException e) {
+            throw new ConcurrentUpdateException(Book.class.getSimpleName(), id);
+        }
+    }
+
+    private int booksPageSize(Integer size) {
+        return Math.max(1, Math.min(size, MAX_BOOKS_PAGE_SIZE));
+    }
+
+    private int reviewsPageSize(Integer size) {
+        return Math.max(1, Math.min(size, MAX_REVIEWS_PAGE_SIZE));
+    }
+
+    private RuntimeException titleConflict(Book book, DataIntegrityViolationException e) {
+        var registered = booksRepo.findBookByTitle(book.getTitle())  // only looked up once the insert or update failed
+                .filter(b -> !b.getId().equals(book.getId()));
+        if (registered.isPresent())
+            return new ResourceAlreadyExistsException(Book.class.getSimpleName(), registered.get().getId());
+        if (BookGatewayRepository.violatesUniqueTitle(e))  // title of a book deleted since, or not readable yet
+            return new ResourceAlreadyExistsException(Book.class.getSimpleName(), (String) null);
+        return e;  // violation of another constraint
+    }
 
-    private void abortIfBookDoesNotExist(Integer id) {
-        booksRepo.find(id).orElseThrow(() -> new ResourceNotFoundException(Book.class.getSimpleName(), id));
+    private ResourceNotFoundException bookNotFound(Integer id) {
+        return new ResourceNotFoundException(Book.class.getSimpleName(), id);
     }
 
 }
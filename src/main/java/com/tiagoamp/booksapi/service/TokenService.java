@@ -1,25 +1,64 @@
 package com.tiagoamp.booksapi.service;
 
 import com.auth0.jwt.JWT;
-import com.auth0.jwt.JWTVerifier;
-import com.auth0.jwt.algorithms.Algorithm;
 import com.auth0.jwt.exceptions.JWTVerificationException;
 import com.auth0.jwt.interfaces.DecodedJWT;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import com.tiagoamp.booksapi.model.AppUser;
-import lombok.RequiredArgsConstructor;
+import com.tiagoamp.booksapi.security.JwtKeyRing;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.concurrent.TimeUnit;
 
 @Service
-@RequiredArgsConstructor
 public class TokenService {
 
-    @Value("${secret.key}")
-    private String secret;
+    public static final String ROLES_CLAIM = "roles";
+    public static final String VERSION_CLAIM = "ver";  // token version of the user when the token was issued
+    private static final int REFRESH_TOKEN_BYTES = 32;
+
+    private final SecureRandom random = new SecureRandom();
+
+    private final JwtKeyRing keyRing;
+    private final Cache<String, DecodedJWT> verifiedTokens;  // until they expire, null when disabled
+
+
+    public TokenService(JwtKeyRing keyRing,
+                        @Value("${security.token.cache.maximum-size:10000}") long cacheMaximumSize) {
+        this.keyRing = keyRing;
+        this.verifiedTokens = cacheMaximumSize == 0 ? null : Caffeine.newBuilder()
+                .maximumSize(cacheMaximumSize)
+                .expireAfter(new Expiry<String, DecodedJWT>() {
+                    @Override
+                    public long expireAfterCreate(String token, DecodedJWT decoded, long currentTime) {
+                        return untilExpiration(decoded);
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String token, DecodedJWT decoded, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String token, DecodedJWT decoded, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
 
     public String getTokenFrom(String bearerToken) {
         final String bearer = "Bearer ";
@@ -30,54 +69,59 @@ public class TokenService {
     }
 
     public String getSubjectFrom(String token) {
-      Algorithm algorithm = Algorithm.HMAC256(secret.getBytes());
-      JWTVerifier verifier = JWT.require(algorithm).build();
-      DecodedJWT decodedJWT = verifier.verify(token);  // throws JWTVerificationException if not valid
-      return decodedJWT.getSubject();
+      return getDecodedTokenFrom(token).getSubject();
+    }
+
+    /**
+     * Verified token, throws JWTVerificationException if not valid.
+     * Tokens already verified are taken from the cache, invalid ones are never cached
+     */
+    public DecodedJWT getDecodedTokenFrom(String token) {
+        if (verifiedTokens == null)
+            return keyRing.verify(token);
+        return verifiedTokens.get(token, keyRing::verify);
     }
 
     public String generateToken(AppUser user) {
-        Algorithm algorithm = Algorithm.HMAC256(secret.getBytes());
         Instant expiration = generateExpirationTimeIn(10);  // expires in 10 min
         String token = JWT.create()
+                .withKeyId(keyRing.getSigningKeyId())
                 .withSubject(user.getUsername())
                 .withExpiresAt(expiration)
                 .withIssuer("Books-API")
-                .withClaim("roles", user.getRole().name())
-                .sign(algorithm);
+                .withClaim(ROLES_CLAIM, user.getRole().name())
+                .withClaim(VERSION_CLAIM, user.getTokenVersion())
+                .sign(keyRing.getSigningAlgorithm());
         return token;
     }
 
+    /**
+     * Opaque random refresh token, only its hash is stored
+     */
+    public String generateRefreshToken() {
+        byte[] bytes = new byte[REFRESH_TOKEN_BYTES];
+        random.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    public String hashOf(String refreshToken) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(refreshToken.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);  // every JVM provides SHA-256
+        }
+    }
+
     private Instant generateExpirationTimeIn(int minutes) {
         return LocalDateTime.now().plusMinutes(minutes).atZone(ZoneId.systemDefault()).toInstant();
     }
 
-//    public DecodedJWT getDecodedTokenFrom(String token) {
-//        Algorithm algorithm = Algorithm.HMAC256(secret.getBytes());
-//        JWTVerifier verifier = JWT.require(algorithm).build();
-//        DecodedJWT decodedJWT = verifier.verify(token);
-//        return decodedJWT;
-//    }
-
-//    public String generateAccessToken(AppUser user) {
-//        Algorithm algorithm = Algorithm.HMAC256(secret.getBytes());
-//        String accessToken = JWT.create()
-//                .withSubject(user.getUsername())
-//                .withExpiresAt(new Date(System.currentTimeMillis() + 10 * 60 * 1000))  // expires in 10 min
-//                .withIssuer("Books-API")
-//                .withClaim("roles", user.getRole().name())
-//                .sign(algorithm);
-//        return accessToken;
-//    }
-//
-//    public String generateRefreshToken(AppUser user) {
-//        Algorithm algorithm = Algorithm.HMAC256(secret.getBytes());
-//        String refreshToken = JWT.create()
-//                .withSubject(user.getUsername())
-//                .withExpiresAt(new Date(System.currentTimeMillis() + 60 * 60 * 1000))  // expires in 60 min
-//                .withIssuer("Books-API")
-//                .sign(algorithm);
-//        return refreshToken;
-//    }
+    private static long untilExpiration(DecodedJWT token) {  // in nanoseconds, as cache expiries are
+        if (token.getExpiresAtAsInstant() == null)
+            return 0;  // not kept
+        long millis = token.getExpiresAtAsInstant().toEpochMilli() - System.currentTimeMillis();
+        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, millis));
+    }
 
 }
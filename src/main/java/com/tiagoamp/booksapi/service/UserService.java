@@ -1,31 +1,56 @@
 package com.tiagoamp.booksapi.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.tiagoamp.booksapi.exception.ResourceAlreadyExistsException;
+import com.tiagoamp.booksapi.exception.ResourceNotFoundException;
 import com.tiagoamp.booksapi.model.AppUser;
+import com.tiagoamp.booksapi.repository.RefreshTokenRepository;
 import com.tiagoamp.booksapi.repository.UserRepository;
-import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
 import java.util.List;
+import java.util.Optional;
 
 @Service
-@RequiredArgsConstructor
-public class UserService implements UserDetailsService {
+public class UserService implements UserDetailsService, UserDetailsPasswordService {
 
     private final UserRepository userRepo;
     private final PasswordEncoder passwordEncoder;
+    private final RefreshTokenRepository refreshTokenRepo;
+    // by email, loaded on first use: revocations made by other instances are seen once the entry expires
+    private final Cache<String, Integer> tokenVersions;
+
+
+    public UserService(UserRepository userRepo, PasswordEncoder passwordEncoder, RefreshTokenRepository refreshTokenRepo,
+                       @Value("${security.token.versions.time-to-live:1m}") Duration tokenVersionsTimeToLive) {
+        this.userRepo = userRepo;
+        this.passwordEncoder = passwordEncoder;
+        this.refreshTokenRepo = refreshTokenRepo;
+        this.tokenVersions = Caffeine.newBuilder()
+                .expireAfterWrite(tokenVersionsTimeToLive)  // also drops the users who no longer send requests
+                .build();
+    }
+
 
     public AppUser save(AppUser user) {
         if (userRepo.existsByEmail(user.getEmail()))
             throw new ResourceAlreadyExistsException("User", user.getEmail());
         user.setPassword(passwordEncoder.encode(user.getPassword()));
-        return userRepo.save(user);
+        AppUser saved = userRepo.save(user);
+        tokenVersions.put(saved.getEmail(), saved.getTokenVersion());
+        return saved;
     }
 
+    @Transactional(readOnly = true)  // read-only transactions are served by the replica
     public List<AppUser> find() {
         return userRepo.findAll();
     }
@@ -36,4 +61,41 @@ public class UserService implements UserDetailsService {
                 .orElseThrow(() -> new UsernameNotFoundException("User not found"));
     }
 
+    /**
+     * Stores the password hashed again with the current encoding, called at login when the stored hash is outdated
+     */
+    @Override
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        AppUser appUser = (AppUser) user;  // as loaded by loadUserByUsername
+        userRepo.updatePassword(appUser.getId(), newPassword);
+        appUser.setPassword(newPassword);
+        return appUser;
+    }
+
+    /**
+     * Current token version of the user, kept in memory for a while. Read again from the database when a token
+     * carries a newer version, issued after a revocation made by another instance. Empty for unknown users
+     */
+    public Optional<Integer> findTokenVersion(String email, Integer tokenVersion) {
+        Integer version = tokenVersions.getIfPresent(email);
+        if (version == null || (tokenVersion != null && tokenVersion > version)) {
+            version = userRepo.findByEmail(email).map(AppUser::getTokenVersion).orElse(null);
+            if (version != null)  // unknown users are not kept
+                version = tokenVersions.asMap().merge(email, version, Math::max);  // versions only increase
+        }
+        return Optional.ofNullable(version);
+    }
+
+    /**
+     * Revokes all tokens issued to the user so far, refresh tokens included
+     */
+    @Transactional
+    public void revokeTokens(Integer id) {
+        AppUser user = userRepo.findById(id).orElseThrow(() -> new ResourceNotFoundException("User", id));
+        user.setTokenVersion(user.getTokenVersion() + 1);
+        userRepo.save(user);
+        refreshTokenRepo.deleteByUser(user);
+        tokenVersions.put(user.getEmail(), user.getTokenVersion());
+    }
+
 }
\ No newline at end of file
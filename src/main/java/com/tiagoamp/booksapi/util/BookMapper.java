@@ -2,46 +2,65 @@ package com.tiagoamp.booksapi.util;
 
 import com.tiagoamp.booksapi.dto.BookRequest;
 import com.tiagoamp.booksapi.dto.BookResponse;
+import com.tiagoamp.booksapi.dto.PlainBookResponse;
 import com.tiagoamp.booksapi.model.Book;
 import com.tiagoamp.booksapi.repository.BookEntity;
-import lombok.RequiredArgsConstructor;
-import org.modelmapper.ModelMapper;
 import org.springframework.stereotype.Component;
 
 /**
  * Provides objects mapping,
- * acting as a abstraction layer of mapper provider
+ * with plain accessor calls (no reflection), as these conversions run on every request
  */
 @Component
-@RequiredArgsConstructor
 public class BookMapper {
 
-    private final ModelMapper mapper;
-
-
     public Book toModel(BookEntity entity) {
-        return mapper.map(entity, Book.class);
+        return new Book(entity.getId(), entity.getTitle(), entity.getLanguage(), entity.getYearOfPublication(),
+                entity.getAuthors(), entity.getVersion(), entity.getLastModified());
     }
 
     public BookEntity toEntity(Book book) {
-        return mapper.map(book, BookEntity.class);
+        return new BookEntity(book.getId(), book.getTitle(), book.getLanguage(), book.getYearOfPublication(),
+                book.getAuthors(), book.getVersion(), book.getLastModified());
     }
 
+    /**
+     * Copies the non-null values of source into destination
+     */
     public BookEntity copyValues(BookEntity source, BookEntity destination) {
-        mapper.map(source, destination);
+        if (source.getId() != null)
+            destination.setId(source.getId());
+        if (source.getTitle() != null)
+            destination.setTitle(source.getTitle());
+        if (source.getLanguage() != null)
+            destination.setLanguage(source.getLanguage());
+        if (source.getYearOfPublication() != null)
+            destination.setYearOfPublication(source.getYearOfPublication());
+        if (source.getAuthors() != null)
+            destination.setAuthors(source.getAuthors());
+        if (source.getVersion() != null)
+            destination.setVersion(source.getVersion());
+        if (source.getLastModified() != null)
+            destination.setLastModified(source.getLastModified());
         return destination;
     }
 
     public Book toModel(BookRequest request) {
-        return mapper.map(request, Book.class);
+        return new Book(null, request.getTitle(), request.getLanguage(), request.getYearOfPublication(), request.getAuthors());
     }
 
     public BookRequest toRequest(Book book) {
-        return mapper.map(book, BookRequest.class);
+        return new BookRequest(book.getTitle(), book.getLanguage(), book.getYearOfPublication(), book.getAuthors());
     }
 
     public BookResponse toResponse(Book book) {
-        return mapper.map(book, BookResponse.class);
+        return new BookResponse(book.getId(), book.getTitle(), book.getLanguage(), book.getYearOfPublication(),
+                book.getAuthors(), null);
+    }
+
+    public PlainBookResponse toPlainResponse(Book book) {
+        return new PlainBookResponse(book.getId(), book.getTitle(), book.getLanguage(), book.getYearOfPublication(),
+                book.getAuthors(), null);
     }
 
 }
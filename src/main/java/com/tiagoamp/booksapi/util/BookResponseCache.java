@@ -0,0 +1,118 @@
+package com.tiagoamp.booksapi.util;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serialized book responses (final JSON bytes), per book and representation,
+ * so that hot books are sent without loading, mapping nor serializing them again.
+ * Book writes replace the entry of the book, so responses of an older version are never cached over a newer one.
+ * Reviews are not versioned with the book: review writes are stamped on its entry instead,
+ * so responses embedding reviews read before them are not cached either
+ */
+@Component
+public class BookResponseCache {
+
+    private static final int DELETED = Integer.MAX_VALUE;  // version newer than any response of a deleted book
+    private static final int UNKNOWN = Integer.MIN_VALUE;  // version older than any response, when only reviews were written
+
+    private final Cache<Integer, Entry> cache;
+    private final AtomicLong reviewWrites = new AtomicLong();  // stamps of the review writes, increasing
+
+
+    public BookResponseCache(@Value("${cache.book-responses.maximum-size:32MB}") DataSize maximumSize,
+                             @Value("${cache.book-responses.time-to-live:10m}") Duration timeToLive) {
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maximumSize.toBytes())
+                .weigher((Integer id, Entry entry) -> entry.size())
+                .expireAfterWrite(timeToLive)  // bounds staleness when the book was changed by another instance
+                .build();
+    }
+
+
+    /**
+     * Cached responses of the book, null when there are none
+     */
+    public Entry get(Integer bookId) {
+        return cache.getIfPresent(bookId);
+    }
+
+    /**
+     * Stamp of the review writes so far, taken before reading the reviews a response embeds
+     */
+    public long reviewsStamp() {
+        return reviewWrites.get();
+    }
+
+    public void put(Integer bookId, Integer version, long reviewsStamp, long lastModified, Variant variant, byte[] body) {
+        cache.asMap().compute(bookId, (id, entry) -> {
+            if (entry != null && entry.version > version)  // serialized before a write of the book
+                return entry;
+            if (entry != null && variant.withReviews() && entry.reviewsWritten > reviewsStamp)  // reviews read before a review write
+                return entry;
+            var bodies = new HashMap<Variant, byte[]>();
+            if (entry != null && entry.version == version)
+                bodies.putAll(entry.bodies);
+            bodies.put(variant, body);
+            return new Entry(version, lastModified, reviewsWritten(entry), bodies);
+        });
+    }
+
+    /**
+     * Drops the responses of the book, which is now at the given version
+     */
+    public void evict(Integer bookId, Integer version) {
+        cache.asMap().compute(bookId, (id, entry) -> new Entry(version, -1, reviewsWritten(entry), Map.of()));
+    }
+
+    public void evictDeleted(Integer bookId) {
+        evict(bookId, DELETED);
+    }
+
+    /**
+     * Drops the responses that embed the reviews of the book, and stamps the review write on its entry
+     */
+    public void evictReviews(Integer bookId) {
+        long written = reviewWrites.incrementAndGet();
+        cache.asMap().compute(bookId, (id, entry) -> {
+            if (entry == null)
+                return new Entry(UNKNOWN, -1, written, Map.of());
+            var bodies = new HashMap<>(entry.bodies);
+            bodies.keySet().removeIf(Variant::withReviews);
+            return new Entry(entry.version, entry.lastModified, written, bodies);
+        });
+    }
+
+    private static long reviewsWritten(Entry entry) {
+        return entry == null ? 0 : entry.reviewsWritten;
+    }
+
+
+    /**
+     * Representation of a book response: negotiated media type, with or without embedded reviews,
+     * and the base URL its links were built with
+     */
+    public record Variant(MediaType mediaType, boolean withReviews, String baseUrl) { }
+
+    public record Entry(int version, long lastModified, long reviewsWritten, Map<Variant, byte[]> bodies) {
+
+        public byte[] body(Variant variant) {
+            return bodies.get(variant);
+        }
+
+        int size() {
+            return 1 + bodies.values().stream().mapToInt(b -> b.length).sum();
+        }
+
+    }
+
+}
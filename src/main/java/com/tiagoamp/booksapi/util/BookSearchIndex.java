@@ -0,0 +1,251 @@
+package com.tiagoamp.booksapi.util;
+
+import com.tiagoamp.booksapi.model.Book;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory inverted index of book titles, authors and review texts.
+ * Matches are ranked by BM25 (without length normalization), over term frequencies weighted by field
+ */
+@Component
+public class BookSearchIndex extends InMemoryIndex {
+
+    static final float TITLE_WEIGHT = 3f;
+    static final float AUTHORS_WEIGHT = 2f;
+    static final float REVIEW_WEIGHT = 1f;
+    private static final float SATURATION = 1.2f;  // BM25 k1: repeating a term adds less and less to the score
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final Map<String, Postings> postings = new HashMap<>();  // by term
+    private final Map<Integer, Document> documents = new HashMap<>();  // by book id
+
+
+    /**
+     * Indexes the book, or its new values when already indexed, keeping the terms of its reviews
+     */
+    public void put(Book book) {
+        write(() -> {
+            var document = documents.get(book.getId());
+            replace(document, document == null ? Document.of(book, Map.of()) : document.with(book));
+        });
+    }
+
+    /**
+     * Indexes the book along with all its reviews, replacing what was indexed for it
+     */
+    public void put(Book book, Collection<String> reviews) {
+        write(() -> replace(documents.get(book.getId()), Document.of(book, weightsOf(reviews, REVIEW_WEIGHT))));
+    }
+
+    /**
+     * Adds reviews to an indexed book, ignored for books not indexed
+     */
+    public void addReviews(Integer bookId, Collection<String> reviews) {
+        write(() -> {
+            var document = documents.get(bookId);
+            if (document == null)
+                return;
+            var reviewTerms = document.reviewTermWeights();
+            weightsOf(reviews, REVIEW_WEIGHT).forEach((term, weight) -> reviewTerms.merge(term, weight, Float::sum));
+            replace(document, Document.of(document.book(), reviewTerms));
+        });
+    }
+
+    public void remove(Integer bookId) {
+        write(() -> replace(documents.get(bookId), null));
+    }
+
+    /**
+     * Books matching any term of the query, best ranked first (ties by id), skipping the first 'offset' ones
+     */
+    public Hits search(String query, int offset, int limit) {
+        var queryTerms = tokens(query).stream().distinct().toList();
+        return read(() -> {
+            var matched = queryTerms.stream().map(postings::get).filter(p -> p != null).toList();
+            if (matched.isEmpty())
+                return new Hits(List.of(), 0);
+            int terms = matched.size();
+            int[][] ids = new int[terms][];
+            float[][] weights = new float[terms][];
+            int[] sizes = new int[terms];
+            float[] idfs = new float[terms];
+            long postingsSize = 0;  // no more books than that can match
+            for (int t = 0; t < terms; t++) {
+                ids[t] = matched.get(t).ids;
+                weights[t] = matched.get(t).weights;
+                sizes[t] = matched.get(t).size;
+                idfs[t] = idf(sizes[t]);
+                postingsSize += sizes[t];
+            }
+            // postings are sorted by book id: merged in one pass, keeping only the best offset + limit books
+            int capacity = (int) Math.min((long) offset + limit, postingsSize);
+            var best = new PriorityQueue<ScoredBook>(capacity + 1, ScoredBook.RANKING.reversed());
+            // score of the worst of the best books, once there are enough of them (none are kept for a limit of 0)
+            float worstBest = capacity == 0 ? Float.POSITIVE_INFINITY : -1;
+            int[] cursors = new int[terms];
+            long total = 0;
+            while (true) {
+                int id = Integer.MAX_VALUE;
+                for (int t = 0; t < terms; t++)
+                    if (cursors[t] < sizes[t] && ids[t][cursors[t]] < id)
+                        id = ids[t][cursors[t]];
+                if (id == Integer.MAX_VALUE)
+                    break;
+                float score = 0;
+                for (int t = 0; t < terms; t++) {
+                    if (cursors[t] < sizes[t] && ids[t][cursors[t]] == id)
+                        score += idfs[t] * weights[t][cursors[t]++];
+                }
+                total++;
+                if (score > worstBest) {  // ties go to the lowest id, read first
+                    best.offer(new ScoredBook(id, score));
+                    if (best.size() > capacity)
+                        best.poll();  // worst ranked
+                    if (best.size() == capacity)
+                        worstBest = best.peek().score();
+                }
+            }
+            var ranked = new ArrayList<>(best);
+            ranked.sort(ScoredBook.RANKING);
+            var books = ranked.stream().skip(offset).map(s -> documents.get(s.id()).book()).toList();
+            return new Hits(books, total);
+        });
+    }
+
+    public int size() {
+        return read(documents::size);
+    }
+
+    /**
+     * Normalized words of the text
+     */
+    static List<String> tokens(String text) {
+        if (text == null || text.isBlank())
+            return List.of();
+        return Arrays.stream(SEPARATORS.split(normalize(text))).filter(t -> !t.isEmpty()).toList();
+    }
+
+    private void replace(Document previous, Document next) {
+        if (previous != null) {
+            int id = previous.book().getId();
+            previous.termWeights().keySet().forEach(term -> {
+                var termPostings = postings.get(term);
+                termPostings.remove(id);
+                if (termPostings.size == 0)
+                    postings.remove(term);
+            });
+            documents.remove(id);
+        }
+        if (next != null) {
+            int id = next.book().getId();
+            next.termWeights().forEach((term, weight) -> postings.computeIfAbsent(term, t -> new Postings())
+                    .put(id, weight * (SATURATION + 1) / (weight + SATURATION)));  // the per book part of the score
+            documents.put(id, next);
+        }
+    }
+
+    private float idf(int booksWithTerm) {
+        return (float) Math.log(1 + (documents.size() - booksWithTerm + 0.5) / (booksWithTerm + 0.5));
+    }
+
+    private static Map<String, Float> weightsOf(Collection<String> texts, float weight) {
+        var weights = new HashMap<String, Float>();
+        texts.forEach(text -> tokens(text).forEach(term -> weights.merge(term, weight, Float::sum)));
+        return weights;
+    }
+
+
+    public record Hits(List<Book> books, long total) { }
+
+    private record ScoredBook(int id, float score) {
+        static final Comparator<ScoredBook> RANKING = Comparator.comparingDouble(ScoredBook::score).reversed()
+                .thenComparingInt(ScoredBook::id);
+    }
+
+    /**
+     * Indexed book with the weights of its review terms (parallel arrays, lighter than a map per book).
+     * The terms of its values are computed again when needed
+     */
+    private record Document(Book book, String[] reviewTerms, float[] reviewWeights) {
+
+        static Document of(Book book, Map<String, Float> reviewTermWeights) {
+            var terms = reviewTermWeights.keySet().toArray(String[]::new);
+            var weights = new float[terms.length];
+            for (int i = 0; i < terms.length; i++)
+                weights[i] = reviewTermWeights.get(terms[i]);
+            return new Document(book, terms, weights);
+        }
+
+        Document with(Book newBook) {
+            return new Document(newBook, reviewTerms, reviewWeights);
+        }
+
+        Map<String, Float> reviewTermWeights() {
+            var weights = new HashMap<String, Float>();
+            for (int i = 0; i < reviewTerms.length; i++)
+                weights.put(reviewTerms[i], reviewWeights[i]);
+            return weights;
+        }
+
+        Map<String, Float> termWeights() {
+            var weights = reviewTermWeights();
+            weightsOf(List.of(nullToEmpty(book.getTitle())), TITLE_WEIGHT).forEach((t, w) -> weights.merge(t, w, Float::sum));
+            weightsOf(List.of(nullToEmpty(book.getAuthors())), AUTHORS_WEIGHT).forEach((t, w) -> weights.merge(t, w, Float::sum));
+            return weights;
+        }
+
+        private static String nullToEmpty(String value) {
+            return value == null ? "" : value;
+        }
+
+    }
+
+    /**
+     * Books having a term, with the saturated weight of the term in each: parallel arrays sorted by book id
+     */
+    private static final class Postings {
+
+        int[] ids = new int[4];
+        float[] weights = new float[4];
+        int size;
+
+        void put(int id, float weight) {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            if (index >= 0) {
+                weights[index] = weight;
+                return;
+            }
+            index = -index - 1;  // new books usually have the highest id, so they are appended
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                weights = Arrays.copyOf(weights, size * 2);
+            }
+            System.arraycopy(ids, index, ids, index + 1, size - index);
+            System.arraycopy(weights, index, weights, index + 1, size - index);
+            ids[index] = id;
+            weights[index] = weight;
+            size++;
+        }
+
+        void remove(int id) {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            if (index < 0)
+                return;
+            System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+            System.arraycopy(weights, index + 1, weights, index, size - index - 1);
+            size--;
+        }
+
+    }
+
+}
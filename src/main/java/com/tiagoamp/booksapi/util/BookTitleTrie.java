@@ -0,0 +1,237 @@
+package com.tiagoamp.booksapi.util;
+
+import com.tiagoamp.booksapi.model.Book;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory radix tree of book titles, to suggest the titles starting with what was typed.
+ * Titles are matched ignoring case, accents and repeated spaces, and suggested in alphabetical order
+ */
+@Component
+public class BookTitleTrie extends InMemoryIndex {
+
+    private static final Pattern SPACES = Pattern.compile("\\s+");
+
+    private final Node root = new Node("");
+    private final Map<Integer, String> titles = new HashMap<>();  // by book id, to find the key of updated or removed books
+
+
+    /**
+     * Adds the book title, or replaces its previous title when the book was already added
+     */
+    public void put(Book book) {
+        write(() -> {
+            String title = book.getTitle();
+            String previous = title == null ? titles.remove(book.getId()) : titles.put(book.getId(), title);
+            if (previous != null)
+                root.remove(key(previous), book.getId());
+            if (title != null)
+                root.insert(key(title), book.getId(), title);
+        });
+    }
+
+    public void remove(Integer bookId) {
+        write(() -> {
+            String previous = titles.remove(bookId);
+            if (previous != null)
+                root.remove(key(previous), bookId);
+        });
+    }
+
+    /**
+     * Titles starting with the prefix in alphabetical order (ties by book id), at most 'limit' of them.
+     * A blank prefix suggests nothing
+     */
+    public List<String> suggest(String prefix, int limit) {
+        if (prefix == null || prefix.isBlank() || limit <= 0)
+            return List.of();
+        String key = key(prefix);
+        return read(() -> {
+            Node node = root.find(key);
+            if (node == null)
+                return List.<String>of();
+            var suggestions = new ArrayList<String>(limit);
+            node.collect(suggestions, limit);
+            return suggestions;
+        });
+    }
+
+    public int size() {
+        return read(titles::size);
+    }
+
+    /**
+     * Normalized text, with runs of spaces replaced by one space and without leading spaces.
+     * A trailing space is kept, so a typed prefix can end on a word boundary
+     */
+    static String key(String text) {
+        return SPACES.matcher(normalize(text)).replaceAll(" ").stripLeading();
+    }
+
+
+    /**
+     * Node reached through the label of its edge (a non-empty part of a key, except for the root).
+     * Children are sorted by the first char of their labels, which are all different
+     */
+    private static final class Node {
+
+        private static final Node[] NO_CHILDREN = new Node[0];
+
+        String label;
+        Node[] children = NO_CHILDREN;
+        TreeMap<Integer, String> books;  // titles by book id, of the books whose key ends here; null when none
+
+        Node(String label) {
+            this.label = label;
+        }
+
+        void insert(String key, int id, String title) {
+            Node node = this;
+            int depth = 0;
+            while (depth < key.length()) {
+                int index = node.childIndex(key.charAt(depth));
+                if (index < 0) {  // no key shares the next char: the rest of the key becomes a leaf
+                    Node leaf = new Node(key.substring(depth));
+                    leaf.add(id, title);
+                    node.insertChild(-index - 1, leaf);
+                    return;
+                }
+                Node child = node.children[index];
+                int common = commonPrefixLength(child.label, key, depth);
+                if (common < child.label.length()) {  // the key diverges inside the label: split the edge
+                    Node middle = new Node(child.label.substring(0, common));
+                    child.label = child.label.substring(common);
+                    middle.children = new Node[] { child };
+                    node.children[index] = middle;
+                    child = middle;
+                }
+                node = child;
+                depth += common;
+            }
+            node.add(id, title);
+        }
+
+        /**
+         * Removes the book from the node of the key, merging nodes left with a single child and no books
+         */
+        void remove(String key, int id) {
+            remove(key, 0, id);
+        }
+
+        private boolean remove(String key, int depth, int id) {  // true when this node is left empty
+            if (depth == key.length()) {
+                if (books != null && books.remove(id) != null && books.isEmpty())
+                    books = null;
+            } else {
+                int index = childIndex(key.charAt(depth));
+                if (index < 0)
+                    return false;
+                Node child = children[index];
+                if (!key.startsWith(child.label, depth))
+                    return false;
+                if (child.remove(key, depth + child.label.length(), id))
+                    removeChild(index);
+                else if (child.books == null && child.children.length == 1)
+                    children[index] = child.mergedWithChild();
+            }
+            return books == null && children.length == 0 && !label.isEmpty();
+        }
+
+        /**
+         * Node where the keys starting with the prefix are, null when no key starts with it
+         */
+        Node find(String prefix) {
+            Node node = this;
+            int depth = 0;
+            while (depth < prefix.length()) {
+                int index = node.childIndex(prefix.charAt(depth));
+                if (index < 0)
+                    return null;
+                Node child = node.children[index];
+                int common = commonPrefixLength(child.label, prefix, depth);
+                if (common < child.label.length() && depth + common < prefix.length())
+                    return null;  // diverges inside the label
+                node = child;
+                depth += common;
+            }
+            return node;
+        }
+
+        /**
+         * Adds titles of this subtree in key order until there are 'limit' of them, a key sorts before its extensions
+         */
+        void collect(List<String> suggestions, int limit) {
+            if (books != null)
+                for (String title : books.values()) {
+                    if (suggestions.size() == limit)
+                        return;
+                    suggestions.add(title);
+                }
+            for (Node child : children) {
+                if (suggestions.size() == limit)
+                    return;
+                child.collect(suggestions, limit);
+            }
+        }
+
+        private void add(int id, String title) {
+            if (books == null)
+                books = new TreeMap<>();
+            books.put(id, title);
+        }
+
+        private Node mergedWithChild() {
+            Node child = children[0];
+            child.label = label + child.label;
+            return child;
+        }
+
+        private int childIndex(char first) {  // binary search, as Arrays.binarySearch does: -(insertion point) - 1 if absent
+            int low = 0;
+            int high = children.length - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                char c = children[middle].label.charAt(0);
+                if (c < first)
+                    low = middle + 1;
+                else if (c > first)
+                    high = middle - 1;
+                else
+                    return middle;
+            }
+            return -(low + 1);
+        }
+
+        private void insertChild(int index, Node child) {
+            Node[] grown = Arrays.copyOf(children, children.length + 1);
+            System.arraycopy(children, index, grown, index + 1, children.length - index);
+            grown[index] = child;
+            children = grown;
+        }
+
+        private void removeChild(int index) {
+            Node[] shrunk = new Node[children.length - 1];
+            System.arraycopy(children, 0, shrunk, 0, index);
+            System.arraycopy(children, index + 1, shrunk, index, children.length - index - 1);
+            children = shrunk.length == 0 ? NO_CHILDREN : shrunk;
+        }
+
+        private static int commonPrefixLength(String label, String key, int from) {
+            int max = Math.min(label.length(), key.length() - from);
+            int i = 0;
+            while (i < max && label.charAt(i) == key.charAt(from + i))
+                i++;
+            return i;
+        }
+
+    }
+
+}
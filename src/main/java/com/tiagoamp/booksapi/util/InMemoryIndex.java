@@ -0,0 +1,48 @@
+package com.tiagoamp.booksapi.util;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Index of books held in memory, read without querying the database and kept up to date by the committed writes.
+ * Each instance only sees the writes it makes, books written by other instances are indexed once it restarts.
+ * Reads run concurrently, a write runs alone
+ */
+abstract class InMemoryIndex {
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+
+    /**
+     * Lower-cased text without accents, so texts are matched ignoring case and accents
+     */
+    static String normalize(String text) {
+        return MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+
+    protected <T> T read(Supplier<T> query) {
+        lock.readLock().lock();
+        try {
+            return query.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    protected void write(Runnable change) {
+        lock.writeLock().lock();
+        try {
+            change.run();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+}
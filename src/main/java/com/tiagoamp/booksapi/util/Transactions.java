@@ -0,0 +1,30 @@
+package com.tiagoamp.booksapi.util;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Keeps state held in memory (indexes, counters) in step with the database
+ */
+public final class Transactions {
+
+    private Transactions() { }
+
+
+    /**
+     * Runs the action once the current transaction commits, so a rolled back write is never applied.
+     * Outside transactions the write is already committed, and the action runs at once
+     */
+    public static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive())
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        else
+            action.run();
+    }
+
+}
@@ -2,36 +2,40 @@ package com.tiagoamp.booksapi.util;
 
 import com.tiagoamp.booksapi.dto.AppUserRequest;
 import com.tiagoamp.booksapi.dto.AppUserResponse;
-import com.tiagoamp.booksapi.dto.BookRequest;
-import com.tiagoamp.booksapi.dto.BookResponse;
 import com.tiagoamp.booksapi.model.AppUser;
-import com.tiagoamp.booksapi.model.Book;
-import com.tiagoamp.booksapi.repository.BookEntity;
-import lombok.RequiredArgsConstructor;
-import org.modelmapper.ModelMapper;
+import com.tiagoamp.booksapi.model.Role;
 import org.springframework.stereotype.Component;
 
 /**
  * Provides objects mapping,
- * acting as a abstraction layer of mapper provider
+ * with plain accessor calls (no reflection)
  */
 @Component
-@RequiredArgsConstructor
 public class UserMapper {
 
-    private final ModelMapper mapper;
-
-
     public AppUser toModel(AppUserRequest request) {
-        return mapper.map(request, AppUser.class);
+        var user = new AppUser(request.getName(), request.getEmail(), request.getPassword(), null);
+        if (request.getRole() != null)
+            user.setRole(Role.valueOf(request.getRole()));  // unknown roles are rejected, as by name
+        return user;
     }
 
     public AppUserRequest toRequest(AppUser user) {
-        return mapper.map(user, AppUserRequest.class);
+        var request = new AppUserRequest();
+        request.setName(user.getName());
+        request.setEmail(user.getEmail());
+        request.setPassword(user.getPassword());
+        request.setRole(user.getRole() == null ? null : user.getRole().name());
+        return request;
     }
 
     public AppUserResponse toResponse(AppUser user) {
-        return mapper.map(user, AppUserResponse.class);
+        var response = new AppUserResponse();
+        response.setId(user.getId());
+        response.setName(user.getName());
+        response.setEmail(user.getEmail());
+        response.setRole(user.getRole() == null ? null : user.getRole().name());
+        return response;
     }
 
 }
@@ -1,9 +1,12 @@
-INSERT INTO BOOKS (TITLE, LANGUAGE, YEAR_OF_PUBLICATION, AUTHORS) VALUES ('Frankenstein', 'English', 1818, 'Mary Shelley');
-INSERT INTO BOOKS (TITLE, LANGUAGE, YEAR_OF_PUBLICATION, AUTHORS) VALUES ('Philosophiae Naturalis Principia Mathematica', 'Latim', 1687, 'Isaac Newton');
-INSERT INTO BOOKS (TITLE, LANGUAGE, YEAR_OF_PUBLICATION, AUTHORS) VALUES ('Dom Casmurro', 'Portuguese', 1889, 'Machado de Assis');
+INSERT INTO BOOKS (ID, TITLE, LANGUAGE, YEAR_OF_PUBLICATION, AUTHORS, VERSION, LAST_MODIFIED) VALUES (1, 'Frankenstein', 'English', 1818, 'Mary Shelley', 0, CURRENT_TIMESTAMP);
+INSERT INTO BOOKS (ID, TITLE, LANGUAGE, YEAR_OF_PUBLICATION, AUTHORS, VERSION, LAST_MODIFIED) VALUES (2, 'Philosophiae Naturalis Principia Mathematica', 'Latim', 1687, 'Isaac Newton', 0, CURRENT_TIMESTAMP);
+INSERT INTO BOOKS (ID, TITLE, LANGUAGE, YEAR_OF_PUBLICATION, AUTHORS, VERSION, LAST_MODIFIED) VALUES (3, 'Dom Casmurro', 'Portuguese', 1889, 'Machado de Assis', 0, CURRENT_TIMESTAMP);
+ALTER SEQUENCE BOOKS_SEQ RESTART WITH 4;
+INSERT INTO BOOK_AUTHOR_WORDS (ID, BOOK_ID, WORD) VALUES (1, 1, 'mary'), (2, 1, 'shelley'), (3, 2, 'isaac'), (4, 2, 'newton'), (5, 3, 'machado'), (6, 3, 'de'), (7, 3, 'assis');
+ALTER SEQUENCE BOOK_AUTHOR_WORDS_SEQ RESTART WITH 8;
 
-INSERT INTO REVIEWS (BOOK_ID, TEXT) VALUES ( (SELECT ID FROM BOOKS WHERE TITLE = 'Frankenstein'), 'Test review of the book Frankstein');
-INSERT INTO REVIEWS (BOOK_ID, TEXT) VALUES ( (SELECT ID FROM BOOKS WHERE TITLE = 'Frankenstein'), 'Another test review of the book Frankstein');
-INSERT INTO REVIEWS (BOOK_ID, TEXT) VALUES ( (SELECT ID FROM BOOKS WHERE TITLE = 'Philosophiae Naturalis Principia Mathematica'), 'Test review of the book of Sir Isaac Newton');
-INSERT INTO REVIEWS (BOOK_ID, TEXT) VALUES ( (SELECT ID FROM BOOKS WHERE TITLE = 'Philosophiae Naturalis Principia Mathematica'), 'Another test example of review');
-INSERT INTO REVIEWS (BOOK_ID, TEXT) VALUES ( (SELECT ID FROM BOOKS WHERE TITLE = 'Dom Casmurro'), 'Test review of the book');
+INSERT INTO REVIEWS (BOOK_ID, TEXT, CREATED_AT) VALUES ( (SELECT ID FROM BOOKS WHERE TITLE = 'Frankenstein'), 'Test review of the book Frankstein', CURRENT_TIMESTAMP);
+INSERT INTO REVIEWS (BOOK_ID, TEXT, CREATED_AT) VALUES ( (SELECT ID FROM BOOKS WHERE TITLE = 'Frankenstein'), 'Another test review of the book Frankstein', CURRENT_TIMESTAMP);
+INSERT INTO REVIEWS (BOOK_ID, TEXT, CREATED_AT) VALUES ( (SELECT ID FROM BOOKS WHERE TITLE = 'Philosophiae Naturalis Principia Mathematica'), 'Test review of the book of Sir Isaac Newton', CURRENT_TIMESTAMP);
+INSERT INTO REVIEWS (BOOK_ID, TEXT, CREATED_AT) VALUES ( (SELECT ID FROM BOOKS WHERE TITLE = 'Philosophiae Naturalis Principia Mathematica'), 'Another test example of review', CURRENT_TIMESTAMP);
+INSERT INTO REVIEWS (BOOK_ID, TEXT, CREATED_AT) VALUES ( (SELECT ID FROM BOOKS WHERE TITLE = 'Dom Casmurro'), 'Test review of the book', CURRENT_TIMESTAMP);
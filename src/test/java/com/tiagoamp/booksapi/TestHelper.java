@@ -2,19 +2,23 @@ package com.tiagoamp.booksapi;
 
 import com.tiagoamp.booksapi.dto.BookRequest;
 import com.tiagoamp.booksapi.model.Book;
+import com.tiagoamp.booksapi.model.Review;
 import com.tiagoamp.booksapi.repository.BookEntity;
-import org.modelmapper.ModelMapper;
+import com.tiagoamp.booksapi.util.BookMapper;
 
+import java.time.Instant;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
 public class TestHelper {
 
     public static List<Book> getBooksMock() {
+        var lastModified = Instant.parse("2023-10-01T10:15:30Z");
         var books = List.of(
-                new Book(1, "title 1", "lang 1", 2001, "author 1"),
-                new Book(2, "title 2", "lang 2", 2002, "author 2"),
-                new Book(3, "title 3", "lang 3", 2003, "author 3"));
+                new Book(1, "title 1", "lang 1", 2001, "author 1", 0, lastModified),
+                new Book(2, "title 2", "lang 2", 2002, "author 2", 0, lastModified),
+                new Book(3, "title 3", "lang 3", 2003, "author 3", 0, lastModified));
         return new ArrayList<>(books); // return a copy
     }
 
@@ -24,13 +28,17 @@ public class TestHelper {
 
     public static List<BookEntity> getBooksEntityWithNoIdMock() {
         var entities = getBooksEntityMock();
-        entities.forEach(e -> e.setId(null));
+        entities.forEach(e -> {  // as not yet saved
+            e.setId(null);
+            e.setVersion(null);
+            e.setLastModified(null);
+        });
         return entities;
     }
 
     public static List<BookEntity> getBooksEntityMock() {
         var entities = getBooksMock().stream()
-                .map(b -> new ModelMapper().map(b, BookEntity.class)).toList();
+                .map(new BookMapper()::toEntity).toList();
         return entities;
     }
 
@@ -43,6 +51,14 @@ public class TestHelper {
         return new ArrayList<>(reviews);
     }
 
+    public static List<Review> getReviewModelsMock() {
+        var reviews = getReviewsMock();
+        var models = new ArrayList<Review>();
+        for (int i = 0; i < reviews.size(); i++)
+            models.add(new Review((long) i + 1, reviews.get(i), LocalDateTime.now()));
+        return models;
+    }
+
     public static String getReviewMock() {
         return getReviewsMock().stream().findAny().get();
     }
@@ -0,0 +1,120 @@
+package com.tiagoamp.booksapi.benchmark;
+
+import com.tiagoamp.booksapi.BooksApiApplication;
+import com.tiagoamp.booksapi.model.Book;
+import com.tiagoamp.booksapi.repository.BookGatewayRepository;
+import com.tiagoamp.booksapi.service.BooksService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of the streaming reads of the export, with and without lazy query execution in the database:
+ * up to the first book, up to the first review of a book with many reviews, and through all the books.
+ * Without it, the database produces every row of the result before the first one is read
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class BookExportBenchmark {
+
+    private static final int BOOKS = 200_000;
+    private static final int REVIEWS = 200_000;  // all of the first book
+    private static final int SEED_CHUNK = 10_000;
+
+    @Param({"false", "true"})
+    private boolean lazyQueryExecution;
+
+    private ConfigurableApplicationContext context;
+    private BookGatewayRepository gateway;
+    private Integer reviewedBookId;
+
+
+    @Setup(Level.Trial)
+    public void startApplication() {
+        // the result of a repeated query is not reused, as it would not be once books are written in between
+        String url = "jdbc:h2:mem:benchmark;QUERY_CACHE_SIZE=0" + (lazyQueryExecution ? ";LAZY_QUERY_EXECUTION=1" : "");
+        context = new SpringApplicationBuilder(BooksApiApplication.class)
+                .web(WebApplicationType.SERVLET)  // controllers serialize through the MVC message converters
+                .properties("server.port=0", "spring.jpa.show-sql=false", "logging.level.root=WARN")
+                // arguments, as the urls of application.yml would take precedence over default properties
+                .run("--spring.datasource.url=" + url, "--replica.datasource.url=" + url);  // exports read from the replica
+        gateway = context.getBean(BookGatewayRepository.class);
+        reviewedBookId = seed(context.getBean(BooksService.class));
+    }
+
+    @TearDown(Level.Trial)
+    public void stopApplication() {
+        context.close();
+    }
+
+    @Benchmark
+    public Book firstBook() {
+        var first = new Book[1];
+        try {
+            gateway.forEachBook(book -> {
+                first[0] = book;
+                throw StopStreaming.INSTANCE;
+            });
+        } catch (StopStreaming e) {
+            // the rest of the books is never read
+        }
+        return first[0];
+    }
+
+    @Benchmark
+    public String firstReview() {
+        var first = new String[1];
+        try {
+            gateway.forEachReviewOfBook(reviewedBookId, review -> {
+                first[0] = review.getText();
+                throw StopStreaming.INSTANCE;
+            });
+        } catch (StopStreaming e) {
+            // the rest of the reviews is never read
+        }
+        return first[0];
+    }
+
+    @Benchmark
+    public void allBooks(Blackhole blackhole) {
+        gateway.forEachBook(blackhole::consume);
+    }
+
+
+    private Integer seed(BooksService service) {
+        Integer bookId = null;
+        for (int chunk = 0; chunk < BOOKS / SEED_CHUNK; chunk++) {  // titles of a chunk are checked in a single query
+            var books = new ArrayList<Book>(SEED_CHUNK);
+            for (int i = chunk * SEED_CHUNK + 1; i <= (chunk + 1) * SEED_CHUNK; i++)
+                books.add(new Book(null, String.format("Title %06d", i), i % 2 == 0 ? "English" : "Portuguese",
+                        1900 + i % 120, "Author " + i % 500));
+            var created = service.createBooks(books);
+            if (bookId == null)
+                bookId = created.get(0).getItem().getId();
+        }
+        List<String> reviews = Collections.nCopies(REVIEWS, "A review long enough to take some room in the results");
+        gateway.addReviews(Map.of(bookId, reviews));
+        return bookId;
+    }
+
+    private static class StopStreaming extends RuntimeException {
+        static final StopStreaming INSTANCE = new StopStreaming();
+
+        StopStreaming() {
+            super(null, null, false, false);  // thrown on every invocation, without a stack trace
+        }
+    }
+
+}
@@ -0,0 +1,87 @@
+package com.tiagoamp.booksapi.benchmark;
+
+import com.tiagoamp.booksapi.BooksApiApplication;
+import com.tiagoamp.booksapi.model.Book;
+import com.tiagoamp.booksapi.model.BookCursor;
+import com.tiagoamp.booksapi.model.BookFilter;
+import com.tiagoamp.booksapi.model.CursorPage;
+import com.tiagoamp.booksapi.repository.BookGatewayRepository;
+import com.tiagoamp.booksapi.service.BooksService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of listing a page of books from an in-memory database seeded with the same books on every run:
+ * the first page, a deep page by offset, the same deep page after a cursor and a first page filtered by language and years
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class BookFindAllBenchmark {
+
+    private static final int BOOKS = 10_000;
+    private static final int PAGE_SIZE = 20;
+    private static final int DEEP_PAGE = 400;
+    private static final BookFilter FILTER = BookFilter.of("English", 1950, 1960, null);
+
+    private ConfigurableApplicationContext context;
+    private BookGatewayRepository gateway;
+    private BookCursor deepPageCursor;
+
+
+    @Setup(Level.Trial)
+    public void startApplication() {
+        context = new SpringApplicationBuilder(BooksApiApplication.class)
+                .web(WebApplicationType.SERVLET)  // controllers serialize through the MVC message converters
+                .properties("server.port=0", "spring.datasource.url=jdbc:h2:mem:benchmark", "spring.jpa.show-sql=false",
+                        "logging.level.root=WARN")
+                .run();
+        gateway = context.getBean(BookGatewayRepository.class);
+        seed(context.getBean(BooksService.class));
+        var previousPage = gateway.findAll(PAGE_SIZE, DEEP_PAGE - 1, "title", "ASC", BookFilter.NONE).getItems();
+        deepPageCursor = BookCursor.of(previousPage.get(PAGE_SIZE - 1), "title", "ASC");
+    }
+
+    @TearDown(Level.Trial)
+    public void stopApplication() {
+        context.close();
+    }
+
+    @Benchmark
+    public CursorPage<Book> firstPage() {
+        return gateway.findAll(PAGE_SIZE, 0, "title", "ASC", BookFilter.NONE);
+    }
+
+    @Benchmark
+    public CursorPage<Book> deepPageByOffset() {
+        return gateway.findAll(PAGE_SIZE, DEEP_PAGE, "title", "ASC", BookFilter.NONE);
+    }
+
+    @Benchmark
+    public CursorPage<Book> deepPageByCursor() {
+        return gateway.findAll(PAGE_SIZE, deepPageCursor, "title", "ASC", BookFilter.NONE);
+    }
+
+    @Benchmark
+    public CursorPage<Book> filteredPage() {
+        return gateway.findAll(PAGE_SIZE, 0, "title", "ASC", FILTER);
+    }
+
+
+    private void seed(BooksService service) {
+        var books = new ArrayList<Book>(BOOKS);
+        for (int i = 1; i <= BOOKS; i++)
+            books.add(new Book(null, String.format("Title %05d", i), i % 2 == 0 ? "English" : "Portuguese",
+                    1900 + i % 120, "Author " + i % 500));
+        service.createBooks(books);
+    }
+
+}
@@ -0,0 +1,73 @@
+package com.tiagoamp.booksapi.benchmark;
+
+import com.tiagoamp.booksapi.BooksApiApplication;
+import com.tiagoamp.booksapi.model.Book;
+import com.tiagoamp.booksapi.model.ItemResult;
+import com.tiagoamp.booksapi.service.BooksService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Books registered per second by the bulk import, compared with registering them one at a time
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class BookImportBenchmark {
+
+    private static final int BOOKS_PER_INVOCATION = 1000;
+
+    private final AtomicInteger titleSequence = new AtomicInteger();
+    private ConfigurableApplicationContext context;
+    private BooksService service;
+
+
+    @Setup(Level.Trial)
+    public void startApplication() {
+        context = new SpringApplicationBuilder(BooksApiApplication.class)
+                .web(WebApplicationType.SERVLET)  // controllers serialize through the MVC message converters
+                .properties("server.port=0", "spring.datasource.url=jdbc:h2:mem:benchmark", "spring.jpa.show-sql=false",
+                        "logging.level.root=WARN")
+                .run();
+        service = context.getBean(BooksService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopApplication() {
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BOOKS_PER_INVOCATION)
+    public List<Book> oneAtATime() {
+        var created = new ArrayList<Book>(BOOKS_PER_INVOCATION);
+        for (Book book : newBooks())
+            created.add(service.createBook(book));
+        return created;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BOOKS_PER_INVOCATION)
+    public List<ItemResult<Book>> bulk() {
+        return service.createBooks(newBooks());
+    }
+
+
+    private List<Book> newBooks() {
+        var books = new ArrayList<Book>(BOOKS_PER_INVOCATION);
+        for (int i = 0; i < BOOKS_PER_INVOCATION; i++)
+            books.add(new Book(null, "Title " + titleSequence.incrementAndGet(), "English", 2000, "Author"));
+        return books;
+    }
+
+}
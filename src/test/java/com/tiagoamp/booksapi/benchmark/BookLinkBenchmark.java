@@ -0,0 +1,63 @@
+package com.tiagoamp.booksapi.benchmark;
+
+import com.tiagoamp.booksapi.controller.BooksController;
+import com.tiagoamp.booksapi.controller.LinkTemplate;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.hateoas.Link;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.linkTo;
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
+
+/**
+ * Latency of building the links of BooksController responses, without mapping nor serializing:
+ * the links of a single book, and a book self link built through a controller method proxy
+ * compared with one expanded from a link template
+ */
+@State(Scope.Thread)  // links are built from the request bound to the benchmark thread
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class BookLinkBenchmark {
+
+    private LinkTemplate selfLink;
+
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        var request = new MockHttpServletRequest("GET", "/api/v1/books/1");
+        request.setContextPath("/api/v1");
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+        selfLink = LinkTemplate.of(linkTo(methodOn(BooksController.class).getBook(null, null, null)).withSelfRel(), "id");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Benchmark
+    public List<Link> bookLinks() {
+        return List.of(
+                linkTo(methodOn(BooksController.class).getReviews(1, null, null, null)).withRel("reviews"),
+                linkTo(methodOn(BooksController.class).getBooks(null, null)).withRel("books") );
+    }
+
+    @Benchmark
+    public Link selfLinkByProxy() {
+        return linkTo(methodOn(BooksController.class).getBook(1, null, null)).withSelfRel();
+    }
+
+    @Benchmark
+    public Link selfLinkFromTemplate() {
+        return selfLink.expand(1);
+    }
+
+}
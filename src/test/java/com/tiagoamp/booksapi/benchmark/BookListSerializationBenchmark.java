@@ -0,0 +1,95 @@
+package com.tiagoamp.booksapi.benchmark;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tiagoamp.booksapi.controller.BooksController;
+import com.tiagoamp.booksapi.controller.LinkTemplate;
+import com.tiagoamp.booksapi.dto.BookResponse;
+import com.tiagoamp.booksapi.model.Book;
+import com.tiagoamp.booksapi.util.BookMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.linkTo;
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
+
+/**
+ * Cost per listed book of mapping, linking and serializing a page of books:
+ * self links built through a controller method proxy for every book, expanded from a link template,
+ * and the plain representation without links; plus serializing alone a page already mapped and linked.
+ * Run with '-prof gc' to compare allocations too
+ */
+@State(Scope.Thread)  // links are built from the request bound to the benchmark thread
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class BookListSerializationBenchmark {
+
+    private static final int BOOKS_PER_PAGE = 100;
+    private static final Instant LAST_MODIFIED = Instant.parse("2023-10-01T10:15:30Z");
+
+    private final BookMapper mapper = new BookMapper();
+    private final ObjectMapper json = Jackson2ObjectMapperBuilder.json()
+            .serializationInclusion(JsonInclude.Include.NON_NULL).build();  // as configured for the application
+    private List<Book> page;
+    private List<BookResponse> linkedPage;
+
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        var request = new MockHttpServletRequest("GET", "/api/v1/books");
+        request.setContextPath("/api/v1");
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+        page = new ArrayList<>(BOOKS_PER_PAGE);
+        for (int i = 1; i <= BOOKS_PER_PAGE; i++)
+            page.add(new Book(i, "Title " + i, "English", 2000, "Author " + i, 0, LAST_MODIFIED));
+        var selfLink = LinkTemplate.of(linkTo(methodOn(BooksController.class).getBook(null, null, null)).withSelfRel(), "id");
+        linkedPage = page.stream().map(b -> mapper.toResponse(b).add(selfLink.expand(b.getId()))).toList();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BOOKS_PER_PAGE)
+    public byte[] proxyLinks() throws Exception {
+        var booksResp = page.stream().map(mapper::toResponse)
+                .map(b -> b.add( linkTo(methodOn(BooksController.class).getBook(b.getId(), null, null)).withSelfRel() ))
+                .toList();
+        return json.writeValueAsBytes(booksResp);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BOOKS_PER_PAGE)
+    public byte[] templateLinks() throws Exception {
+        var selfLink = LinkTemplate.of(linkTo(methodOn(BooksController.class).getBook(null, null, null)).withSelfRel(), "id");
+        var booksResp = page.stream().map(b -> mapper.toResponse(b).add(selfLink.expand(b.getId()))).toList();
+        return json.writeValueAsBytes(booksResp);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BOOKS_PER_PAGE)
+    public byte[] plain() throws Exception {
+        var booksResp = page.stream().map(mapper::toPlainResponse).toList();
+        return json.writeValueAsBytes(booksResp);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BOOKS_PER_PAGE)
+    public byte[] serializationOnly() throws Exception {
+        return json.writeValueAsBytes(linkedPage);
+    }
+
+}
@@ -0,0 +1,70 @@
+package com.tiagoamp.booksapi.benchmark;
+
+import com.tiagoamp.booksapi.model.Book;
+import com.tiagoamp.booksapi.util.BookSearchIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of searching a first page of ten books in an index of a million books, with the same words every run:
+ * words drawn from a vocabulary where few words are very common, as in natural text
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class BookSearchBenchmark {
+
+    private static final int BOOKS = 1_000_000;
+    private static final int VOCABULARY = 50_000;
+    private static final int PAGE_SIZE = 10;
+
+    private final BookSearchIndex index = new BookSearchIndex();
+
+
+    @Setup(Level.Trial)
+    public void buildIndex() {
+        var random = new Random(42);
+        for (int id = 1; id <= BOOKS; id++) {
+            var reviews = new ArrayList<String>();
+            for (int r = random.nextInt(4); r > 0; r--)
+                reviews.add(words(random, 12));
+            index.put(new Book(id, words(random, 4), "English", 2000, words(random, 2)), reviews);
+        }
+    }
+
+    @Benchmark
+    public BookSearchIndex.Hits rareWord() {
+        return index.search("w40000", 0, PAGE_SIZE);  // in a few dozen books
+    }
+
+    @Benchmark
+    public BookSearchIndex.Hits commonWord() {
+        return index.search("w1", 0, PAGE_SIZE);  // in most books
+    }
+
+    @Benchmark
+    public BookSearchIndex.Hits threeWords() {
+        return index.search("w10 w500 w20000", 0, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public BookSearchIndex.Hits deepPage() {
+        return index.search("w10 w500 w20000", 1000, PAGE_SIZE);
+    }
+
+
+    private static String words(Random random, int count) {
+        List<String> words = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+            words.add("w" + (int) Math.pow(VOCABULARY, random.nextDouble()));  // word n drawn with probability ~ 1/n
+        return String.join(" ", words);
+    }
+
+}
@@ -0,0 +1,65 @@
+package com.tiagoamp.booksapi.benchmark;
+
+import com.tiagoamp.booksapi.model.Book;
+import com.tiagoamp.booksapi.util.BookTitleTrie;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency distribution (sampled, with percentiles) of suggesting ten titles among a million books,
+ * for prefixes as typed: a single letter, a word and most of a title
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class BookSuggestBenchmark {
+
+    private static final int BOOKS = 1_000_000;
+    private static final int SUGGESTIONS = 10;
+
+    private final BookTitleTrie trie = new BookTitleTrie();
+
+
+    @Setup(Level.Trial)
+    public void buildTrie() {
+        var random = new Random(42);
+        for (int id = 1; id <= BOOKS; id++) {
+            var title = new StringBuilder();
+            for (int w = 1 + random.nextInt(5); w > 0; w--)
+                title.append(word(random)).append(' ');
+            trie.put(new Book(id, title.toString().trim() + " " + id, "English", 2000, "Author"));  // titles are unique
+        }
+    }
+
+    @Benchmark
+    public List<String> letter() {
+        return trie.suggest("m", SUGGESTIONS);
+    }
+
+    @Benchmark
+    public List<String> word() {
+        return trie.suggest("kelo ", SUGGESTIONS);
+    }
+
+    @Benchmark
+    public List<String> mostOfTitle() {
+        return trie.suggest("kelo mira ta", SUGGESTIONS);
+    }
+
+
+    private static String word(Random random) {
+        String syllables = "ka ke ki ko ku la le li lo lu ma me mi mo mu ra re ri ro ru ta te ti to tu";
+        String[] each = syllables.split(" ");
+        var word = new StringBuilder();
+        for (int s = 1 + random.nextInt(3); s > 0; s--)
+            word.append(each[random.nextInt(each.length)]);
+        return word.toString();
+    }
+
+}
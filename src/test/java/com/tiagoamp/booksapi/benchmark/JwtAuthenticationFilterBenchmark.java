@@ -0,0 +1,61 @@
+package com.tiagoamp.booksapi.benchmark;
+
+import com.tiagoamp.booksapi.model.AppUser;
+import com.tiagoamp.booksapi.model.Role;
+import com.tiagoamp.booksapi.repository.UserRepository;
+import com.tiagoamp.booksapi.security.JwtAuthenticationFilter;
+import com.tiagoamp.booksapi.security.JwtKeyRing;
+import com.tiagoamp.booksapi.service.TokenService;
+import com.tiagoamp.booksapi.service.UserService;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency the authentication filter adds to a request with a valid token,
+ * verifying the token on every request (cache size 0) or once (default cache size)
+ */
+@State(Scope.Thread)  // the security context is bound to the benchmark thread
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class JwtAuthenticationFilterBenchmark {
+
+    @Param({"0", "10000"})
+    private long tokenCacheSize;
+
+    private JwtAuthenticationFilter filter;
+    private MockHttpServletRequest request;
+
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        var user = new AppUser(1, "Admin", "admin@email.com", "password", Role.ADMIN);
+        var userRepo = Mockito.mock(UserRepository.class);  // only asked once a minute, token versions are kept in memory
+        Mockito.when(userRepo.findByEmail(user.getEmail())).thenReturn(Optional.of(user));
+        var tokenService = new TokenService(new JwtKeyRing("1234567890qwertyuiop", "default", ""), tokenCacheSize);
+        filter = new JwtAuthenticationFilter(tokenService, new UserService(userRepo, null, null, Duration.ofMinutes(1)));
+        ReflectionTestUtils.setField(filter, "stateless", true);
+        request = new MockHttpServletRequest("GET", "/books");
+        request.addHeader(HttpHeaders.AUTHORIZATION, "Bearer " + tokenService.generateToken(user));
+    }
+
+    @Benchmark
+    public Object authenticate() throws Exception {
+        request.removeAttribute(JwtAuthenticationFilter.class.getName() + ".FILTERED");  // filtered once per request
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        return SecurityContextHolder.getContext().getAuthentication();
+    }
+
+}
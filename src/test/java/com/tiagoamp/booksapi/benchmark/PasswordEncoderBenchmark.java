@@ -0,0 +1,40 @@
+package com.tiagoamp.booksapi.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of checking a password on this host per BCrypt strength, each one doubling it: what a login costs,
+ * to choose the target time of the calibrated strength (security.password.encoding.target-time)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class PasswordEncoderBenchmark {
+
+    private static final String PASSWORD = "123456";
+
+    @Param({"10", "11", "12", "13", "14"})
+    public int strength;
+
+    private BCryptPasswordEncoder bcrypt;
+    private String bcryptHash;
+
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        bcrypt = new BCryptPasswordEncoder(strength);
+        bcryptHash = bcrypt.encode(PASSWORD);
+    }
+
+    @Benchmark
+    public boolean bcryptMatches() {
+        return bcrypt.matches(PASSWORD, bcryptHash);  // what a login does, as long as encoding
+    }
+
+}
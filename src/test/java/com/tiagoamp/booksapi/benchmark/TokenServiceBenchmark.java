@@ -0,0 +1,60 @@
+package com.tiagoamp.booksapi.benchmark;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.tiagoamp.booksapi.model.AppUser;
+import com.tiagoamp.booksapi.model.Role;
+import com.tiagoamp.booksapi.security.JwtKeyRing;
+import com.tiagoamp.booksapi.service.TokenService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of issuing a token on login and of verifying it, which is done on every authenticated request:
+ * with a verifier built for each call (as tokens were verified before the key ring), with the key ring verifier,
+ * and through the cache of verified tokens
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class TokenServiceBenchmark {
+
+    private static final String SECRET = "1234567890qwertyuiop";  // default key of application.yml
+
+    private final JwtKeyRing keyRing = new JwtKeyRing(SECRET, "default", "");
+    private final TokenService tokenService = new TokenService(keyRing, 10_000);
+    private final AppUser user = new AppUser("Admin", "admin@email.com", "password", Role.ADMIN);
+    private String token;
+
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        token = tokenService.generateToken(user);
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return tokenService.generateToken(user);
+    }
+
+    @Benchmark
+    public DecodedJWT verifyWithNewVerifier() {
+        return JWT.require(Algorithm.HMAC256(SECRET.getBytes())).build().verify(token);
+    }
+
+    @Benchmark
+    public DecodedJWT verifyWithKeyRing() {
+        return keyRing.verify(token);
+    }
+
+    @Benchmark
+    public String getSubjectFrom() {
+        return tokenService.getSubjectFrom(token);
+    }
+
+}
@@ -1,18 +1,28 @@
 package com.tiagoamp.booksapi.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.tiagoamp.booksapi.BooksApiApplication;
 import com.tiagoamp.booksapi.TestHelper;
 import com.tiagoamp.booksapi.dto.BookRequest;
 import com.tiagoamp.booksapi.dto.ReviewRequest;
+import com.tiagoamp.booksapi.exception.ConcurrentUpdateException;
+import com.tiagoamp.booksapi.exception.PreconditionFailedException;
 import com.tiagoamp.booksapi.exception.ResourceAlreadyExistsException;
 import com.tiagoamp.booksapi.exception.ResourceNotFoundException;
 import com.tiagoamp.booksapi.model.Book;
+import com.tiagoamp.booksapi.model.BookFilter;
+import com.tiagoamp.booksapi.model.CursorPage;
+import com.tiagoamp.booksapi.model.ItemResult;
+import com.tiagoamp.booksapi.model.Review;
+import com.tiagoamp.booksapi.security.JwtAuthenticationFilter;
 import com.tiagoamp.booksapi.service.BooksService;
+import com.tiagoamp.booksapi.service.UserService;
 import com.tiagoamp.booksapi.util.BookMapper;
+import com.tiagoamp.booksapi.util.BookResponseCache;
+import com.tiagoamp.booksapi.util.BookSearchIndex;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
@@ -20,19 +30,37 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Bean;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.hateoas.MediaTypes;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @ExtendWith(SpringExtension.class)
-@WebMvcTest
+@WebMvcTest(controllers = BooksController.class,
+        excludeFilters = @ComponentScan.Filter(type = FilterType.ASSIGNABLE_TYPE, classes = JwtAuthenticationFilter.class))
 @AutoConfigureMockMvc(addFilters = false)  // disable security filters
 class BooksControllerTest {
 
@@ -40,13 +68,19 @@ class BooksControllerTest {
     static class TestConfig {
         @Bean
         public BookMapper getBookMapper() {
-            return new BookMapper(new BooksApiApplication().getModelMapper());
+            return new BookMapper();
         }
     }
 
     @MockBean
     private BooksService booksService;
 
+    @MockBean
+    private UserService userService;  // required by application runner
+
+    @MockBean
+    private BookResponseCache responseCache;
+
     @Autowired
     private BookMapper bookMapper;
 
@@ -62,8 +96,8 @@ class BooksControllerTest {
     @Test
     @DisplayName("When Get All Books request and there are no results Should return empty list")
     public void whenGetAllRequest_emptyListResponse() throws Exception {
-        Mockito.when(booksService.findBooks(Mockito.anyInt(), Mockito.anyInt(), Mockito.anyString(), Mockito.anyString()))
-                .thenReturn(new ArrayList<>());
+        Mockito.when(booksService.findBooks(Mockito.anyInt(), Mockito.anyInt(), Mockito.anyString(), Mockito.anyString(), Mockito.any()))
+                .thenReturn(new CursorPage<>(new ArrayList<>(), null));
         mockMvc.perform(MockMvcRequestBuilders
                         .get("/books")
                         .contentType(MediaType.APPLICATION_JSON))
@@ -77,17 +111,164 @@ class BooksControllerTest {
     @DisplayName("When Get All Books request and there are registered books Should return list")
     public void whenGetAllRequest_resultListResponse() throws Exception {
         var books = TestHelper.getBooksMock();
-        Mockito.when(booksService.findBooks(Mockito.anyInt(), Mockito.anyInt(), Mockito.anyString(), Mockito.anyString()))
-                .thenReturn(books);
+        Mockito.when(booksService.findBooks(Mockito.anyInt(), Mockito.anyInt(), Mockito.anyString(), Mockito.anyString(), Mockito.any()))
+                .thenReturn(new CursorPage<>(books, null));
+        Mockito.when(booksService.countBooks(Mockito.any())).thenReturn(10L);
         mockMvc.perform(MockMvcRequestBuilders
                         .get("/books")
                         .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
+                .andExpect(header().string(BooksController.TOTAL_COUNT_HEADER, "10"))
                 .andExpect(jsonPath("$").isArray())
                 .andExpect(jsonPath("$", is(not(emptyArray()))))
                 .andExpect(jsonPath("$", hasSize(books.size())));
     }
 
+    @Test
+    @DisplayName("When Get All Books request Should link each book to itself")
+    public void whenGetAllRequest_selfLinks() throws Exception {
+        var books = TestHelper.getBooksMock();
+        Mockito.when(booksService.findBooks(Mockito.anyInt(), Mockito.anyInt(), Mockito.anyString(), Mockito.anyString(), Mockito.any()))
+                .thenReturn(new CursorPage<>(books, null));
+        mockMvc.perform(MockMvcRequestBuilders.get("/books"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaTypes.HAL_JSON))
+                .andExpect(header().string(HttpHeaders.VARY, containsString(HttpHeaders.ACCEPT)))
+                .andExpect(jsonPath("$[0].links[0].rel", is("self")))
+                .andExpect(jsonPath("$[0].links[0].href", is("http://localhost/books/1")))
+                .andExpect(jsonPath("$[2].links[0].href", is("http://localhost/books/3")));
+    }
+
+    @Test
+    @DisplayName("When Get All Books request accepting plain JSON Should return books without links")
+    public void whenGetAllPlainRequest_noLinks() throws Exception {
+        var books = TestHelper.getBooksMock();
+        Mockito.when(booksService.findBooks(Mockito.anyInt(), Mockito.anyInt(), Mockito.anyString(), Mockito.anyString(), Mockito.any()))
+                .thenReturn(new CursorPage<>(books, "next"));
+        Mockito.when(booksService.countBooks(Mockito.any())).thenReturn(10L);
+        Mockito.when(booksService.findFirstReviews(List.of(1, 2, 3)))
+                .thenReturn(Map.of(1, TestHelper.getReviewModelsMock()));
+        mockMvc.perform(MockMvcRequestBuilders.get("/books").param("include", "reviews")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(header().string(BooksController.TOTAL_COUNT_HEADER, "10"))
+                .andExpect(header().string(BooksController.NEXT_CURSOR_HEADER, "next"))
+                .andExpect(jsonPath("$", hasSize(books.size())))
+                .andExpect(jsonPath("$[0].title", is(books.get(0).getTitle())))
+                .andExpect(jsonPath("$[0].reviews[0].review", is(TestHelper.getReviewsMock().get(0))))
+                .andExpect(jsonPath("$[0].reviews[0].links").doesNotExist())
+                .andExpect(jsonPath("$[1].reviews", hasSize(0)))
+                .andExpect(jsonPath("$[0].links").doesNotExist());
+    }
+
+    @Test
+    @DisplayName("When Get All Books request with the ETag of the same page Should result not modified")
+    public void whenGetAllConditionalRequest_notModified() throws Exception {
+        var books = TestHelper.getBooksMock();
+        Mockito.when(booksService.findBooks(Mockito.anyInt(), Mockito.anyInt(), Mockito.anyString(), Mockito.anyString(), Mockito.any()))
+                .thenReturn(new CursorPage<>(books, null));
+        Mockito.when(booksService.countBooks(Mockito.any())).thenReturn(10L);
+        String eTag = mockMvc.perform(MockMvcRequestBuilders.get("/books"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        mockMvc.perform(MockMvcRequestBuilders.get("/books").header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+        books.set(0, new Book(1, "title 1", "lang 1", 2001, "author 1", 1, books.get(0).getLastModified()));  // updated
+        mockMvc.perform(MockMvcRequestBuilders.get("/books").header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, not(eTag)));
+    }
+
+    @Test
+    @DisplayName("When Get All Books request including reviews Should embed reviews fetched once for the page")
+    public void whenGetAllIncludingReviewsRequest_embeddedReviews() throws Exception {
+        var books = TestHelper.getBooksMock();
+        var reviews = TestHelper.getReviewModelsMock();
+        Mockito.when(booksService.findBooks(Mockito.anyInt(), Mockito.anyInt(), Mockito.anyString(), Mockito.anyString(), Mockito.any()))
+                .thenReturn(new CursorPage<>(books, null));
+        Mockito.when(booksService.findFirstReviews(List.of(1, 2, 3))).thenReturn(Map.of(1, reviews));
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get("/books").param("include", "reviews")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].reviews", hasSize(reviews.size())))
+                .andExpect(jsonPath("$[0].reviews[0].review", is(reviews.get(0).getText())))
+                .andExpect(jsonPath("$[1].reviews", hasSize(0)));
+        Mockito.verify(booksService, Mockito.times(1)).findFirstReviews(Mockito.any());
+    }
+
+    @Test
+    @DisplayName("When Get All Books request without include Should not fetch nor show reviews")
+    public void whenGetAllRequest_noReviews() throws Exception {
+        Mockito.when(booksService.findBooks(Mockito.anyInt(), Mockito.anyInt(), Mockito.anyString(), Mockito.anyString(), Mockito.any()))
+                .thenReturn(new CursorPage<>(TestHelper.getBooksMock(), null));
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get("/books")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].reviews").doesNotExist());
+        Mockito.verify(booksService, Mockito.never()).findFirstReviews(Mockito.any());
+    }
+
+    @Test
+    @DisplayName("When Get All Books request with cursor Should return list and next cursor header")
+    public void whenGetAllAfterRequest_resultListAndNextCursor() throws Exception {
+        var books = TestHelper.getBooksMock();
+        Mockito.when(booksService.findBooks(Mockito.anyInt(), Mockito.anyString(), Mockito.anyString(), Mockito.anyString(), Mockito.any()))
+                .thenReturn(new CursorPage<>(books, "next-token"));
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get("/books").param("after", "")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string(BooksController.NEXT_CURSOR_HEADER, "next-token"))
+                .andExpect(jsonPath("$", hasSize(books.size())));
+    }
+
+    @Test
+    @DisplayName("When Get All Books request with filters Should find and count the matching books")
+    public void whenGetAllFilteredRequest_filteredListAndCount() throws Exception {
+        var books = TestHelper.getBooksMock();
+        var filter = ArgumentCaptor.forClass(BookFilter.class);
+        Mockito.when(booksService.findBooks(Mockito.anyInt(), Mockito.anyInt(), Mockito.anyString(), Mockito.anyString(), filter.capture()))
+                .thenReturn(new CursorPage<>(books, null));
+        Mockito.when(booksService.countBooks(Mockito.any())).thenReturn(3L);
+        mockMvc.perform(MockMvcRequestBuilders.get("/books")
+                        .param("language", "English").param("yearFrom", "1990").param("author", " Tolkien ")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string(BooksController.TOTAL_COUNT_HEADER, "3"))
+                .andExpect(jsonPath("$", hasSize(books.size())));
+        assertEquals("English", filter.getValue().getLanguage());
+        assertEquals(1990, filter.getValue().getYearFrom());
+        assertNull(filter.getValue().getYearTo());
+        assertEquals("Tolkien", filter.getValue().getAuthor());
+        Mockito.verify(booksService).countBooks(filter.getValue());
+    }
+
+    @Test
+    @DisplayName("When Get All Books request with filters past the first page Should not count the matching books")
+    public void whenGetAllFilteredNextPageRequest_listWithoutCount() throws Exception {
+        var books = TestHelper.getBooksMock();
+        Mockito.when(booksService.findBooks(Mockito.anyInt(), Mockito.anyInt(), Mockito.anyString(), Mockito.anyString(), Mockito.any()))
+                .thenReturn(new CursorPage<>(books, null));
+        Mockito.when(booksService.findBooks(Mockito.anyInt(), Mockito.eq("cursor"), Mockito.anyString(), Mockito.anyString(), Mockito.any()))
+                .thenReturn(new CursorPage<>(books, null));
+        mockMvc.perform(MockMvcRequestBuilders.get("/books")
+                        .param("language", "English").param("page", "1")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(BooksController.TOTAL_COUNT_HEADER))
+                .andExpect(jsonPath("$", hasSize(books.size())));
+        mockMvc.perform(MockMvcRequestBuilders.get("/books")
+                        .param("language", "English").param("after", "cursor")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(BooksController.TOTAL_COUNT_HEADER));
+        Mockito.verify(booksService, Mockito.never()).countBooks(Mockito.any());
+    }
+
 
     @Test
     @DisplayName("When Get Book by non-existing id Should return error")
@@ -119,9 +300,203 @@ class BooksControllerTest {
                 .andExpect(jsonPath("$.id").exists())
                 .andExpect(jsonPath("$.id", is( book.getId() )))
                 .andExpect(jsonPath("$.title").exists())
-                .andExpect(jsonPath("$._links").exists());  // HATEOAS
+                .andExpect(jsonPath("$._links").exists())  // HATEOAS
+                .andExpect(jsonPath("$._links.reviews.href", is("http://localhost/books/" + book.getId() + "/reviews")))
+                .andExpect(jsonPath("$._links.books.href", is("http://localhost/books")))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"0-hal\""))
+                .andExpect(header().exists(HttpHeaders.LAST_MODIFIED));
+    }
+
+    @Test
+    @DisplayName("When Get Book by id request Should cache the same bytes that are sent")
+    public void whenGetByIdRequest_responseCached() throws Exception {
+        var book = TestHelper.getBookMock();
+        Mockito.when(booksService.findBookById(Mockito.anyInt())).thenReturn(book);
+        String negotiated = mockMvc.perform(MockMvcRequestBuilders.get("/books/{id}", book.getId())
+                        .header(HttpHeaders.ACCEPT, "application/hal+json, application/json;q=0.5"))  // negotiated, not cached
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        Mockito.verify(responseCache, Mockito.never()).put(Mockito.any(), Mockito.any(), Mockito.anyLong(), Mockito.anyLong(), Mockito.any(), Mockito.any());
+        String sent = mockMvc.perform(MockMvcRequestBuilders.get("/books/{id}", book.getId()))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaTypes.HAL_JSON))
+                .andReturn().getResponse().getContentAsString();
+        var body = ArgumentCaptor.forClass(byte[].class);
+        var variant = new BookResponseCache.Variant(MediaTypes.HAL_JSON, false, "http://localhost:80");
+        Mockito.verify(responseCache).put(Mockito.eq(book.getId()), Mockito.eq(book.getVersion()), Mockito.anyLong(),
+                Mockito.eq(book.getLastModified().toEpochMilli()), Mockito.eq(variant), body.capture());
+        assertEquals(negotiated, sent);
+        assertEquals(sent, new String(body.getValue()));
     }
 
+    @Test
+    @DisplayName("When Get Book by id request of a cached book Should send the cached bytes without finding the book")
+    public void whenGetByIdCachedRequest_cachedResponse() throws Exception {
+        var variant = new BookResponseCache.Variant(MediaTypes.HAL_JSON, false, "http://localhost:80");
+        var cached = new BookResponseCache.Entry(2, 0, 0, Map.of(variant, "{\"id\":1}".getBytes()));
+        Mockito.when(responseCache.get(1)).thenReturn(cached);
+        mockMvc.perform(MockMvcRequestBuilders.get("/books/{id}", 1))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaTypes.HAL_JSON))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"2-hal\""))
+                .andExpect(content().string("{\"id\":1}"));
+        mockMvc.perform(MockMvcRequestBuilders.get("/books/{id}", 1).header(HttpHeaders.IF_NONE_MATCH, "\"2-hal\""))
+                .andExpect(status().isNotModified());
+        Mockito.verify(booksService, Mockito.never()).findBookById(Mockito.anyInt());
+    }
+
+    @Test
+    @DisplayName("When Get All Books request with the ETag of the other representation Should result the page")
+    public void whenGetAllConditionalRequestOtherRepresentation_modified() throws Exception {
+        var books = TestHelper.getBooksMock();
+        Mockito.when(booksService.findBooks(Mockito.anyInt(), Mockito.anyInt(), Mockito.anyString(), Mockito.anyString(), Mockito.any()))
+                .thenReturn(new CursorPage<>(books, null));
+        Mockito.when(booksService.countBooks(Mockito.any())).thenReturn(10L);
+        String plainETag = mockMvc.perform(MockMvcRequestBuilders.get("/books").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        mockMvc.perform(MockMvcRequestBuilders.get("/books").header(HttpHeaders.IF_NONE_MATCH, plainETag))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaTypes.HAL_JSON))
+                .andExpect(header().string(HttpHeaders.ETAG, not(plainETag)));
+    }
+
+    @Test
+    @DisplayName("When Get Book by id request accepting plain JSON Should result book without links")
+    public void whenGetByIdPlainRequest_noLinks() throws Exception {
+        var book = TestHelper.getBookMock();
+        Mockito.when(booksService.findBookById(Mockito.anyInt())).thenReturn(book);
+        mockMvc.perform(MockMvcRequestBuilders.get("/books/{id}", book.getId()).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"0\""))
+                .andExpect(jsonPath("$.id", is( book.getId() )))
+                .andExpect(jsonPath("$._links").doesNotExist());
+        var variant = new BookResponseCache.Variant(MediaType.APPLICATION_JSON, false, "http://localhost:80");
+        Mockito.verify(responseCache).put(Mockito.eq(book.getId()), Mockito.eq(book.getVersion()),
+                Mockito.anyLong(), Mockito.anyLong(), Mockito.eq(variant), Mockito.any());
+    }
+
+    @Test
+    @DisplayName("When Get Book by id request with its current ETag Should result not modified")
+    public void whenGetByIdConditionalRequest_notModified() throws Exception {
+        var book = TestHelper.getBookMock();
+        Mockito.when(booksService.findBookById(Mockito.anyInt())).thenReturn(book);
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get("/books/{id}", book.getId())
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"0-hal\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"0-hal\""))
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    @DisplayName("When Get Book by id request with a previous ETag Should result book response")
+    public void whenGetByIdConditionalRequest_modified() throws Exception {
+        var book = TestHelper.getBookMock();
+        book.setVersion(1);
+        Mockito.when(booksService.findBookById(Mockito.anyInt())).thenReturn(book);
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get("/books/{id}", book.getId())
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"0-hal\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"1-hal\""))
+                .andExpect(jsonPath("$.id", is( book.getId() )));
+    }
+
+    @Test
+    @DisplayName("When Get Book by id request modified since a date after its last modification Should result not modified")
+    public void whenGetByIdIfModifiedSinceRequest_notModified() throws Exception {
+        var book = TestHelper.getBookMock();
+        Mockito.when(booksService.findBookById(Mockito.anyInt())).thenReturn(book);
+        var headers = new HttpHeaders();
+        headers.setIfModifiedSince(book.getLastModified().plusSeconds(60));
+        mockMvc.perform(MockMvcRequestBuilders.get("/books/{id}", book.getId()).headers(headers))
+                .andExpect(status().isNotModified());
+    }
+
+
+    @Test
+    @DisplayName("When Search Books Should return the page of matching books with their total")
+    public void whenSearchBooksRequest_resultListResponse() throws Exception {
+        var books = TestHelper.getBooksMock();
+        Mockito.when(booksService.searchBooks("machine", 2, 1)).thenReturn(new BookSearchIndex.Hits(books.subList(0, 2), 5));
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get("/books/search").param("q", "machine").param("size", "2").param("page", "1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(BooksController.TOTAL_COUNT_HEADER, "5"))
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].id", is(books.get(0).getId())))
+                .andExpect(jsonPath("$[0].links[0].href", is("http://localhost/books/" + books.get(0).getId())));
+    }
+
+    @Test
+    @DisplayName("When Search Books without query Should result bad request")
+    public void whenSearchBooksWithoutQuery_badRequest() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/books/search"))
+                .andExpect(status().isBadRequest());
+        Mockito.verifyNoInteractions(booksService);
+    }
+
+    @Test
+    @DisplayName("When Suggest Titles Should return the suggested titles")
+    public void whenSuggestTitlesRequest_resultList() throws Exception {
+        Mockito.when(booksService.suggestTitles("dom", 5)).thenReturn(List.of("Dom Casmurro", "Dom Quixote"));
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get("/books/suggest").param("prefix", "dom").param("size", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0]", is("Dom Casmurro")));
+    }
+
+    @Test
+    @DisplayName("When Export Books Should stream one plain book per line")
+    public void whenExportBooksRequest_streamedResponse() throws Exception {
+        var books = TestHelper.getBooksMock();
+        Mockito.doAnswer(invocation -> {
+            Consumer<Book> action = invocation.getArgument(0);
+            books.forEach(action);
+            return null;
+        }).when(booksService).forEachBook(Mockito.any());
+        var result = mockMvc.perform(MockMvcRequestBuilders
+                        .get("/books/export")
+                        .accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andReturn();
+        var lines = result.getResponse().getContentAsString().split("\n");
+        assertEquals(books.size(), lines.length);
+        var first = jsonMapper.readTree(lines[0]);
+        assertEquals(books.get(0).getTitle(), first.get("title").asText());
+        assertFalse(first.has("links"));
+        assertFalse(first.has("reviews"));
+        Mockito.verify(booksService, Mockito.never()).forEachBookWithReviews(Mockito.any());
+    }
+
+    @Test
+    @DisplayName("When Export Books including reviews Should stream each book with all its reviews")
+    public void whenExportBooksWithReviewsRequest_streamedResponse() throws Exception {
+        var books = TestHelper.getBooksMock();
+        var reviews = TestHelper.getReviewModelsMock();
+        Mockito.doAnswer(invocation -> {
+            BiConsumer<Book, List<Review>> action = invocation.getArgument(0);
+            action.accept(books.get(0), reviews);
+            action.accept(books.get(1), List.of());
+            return null;
+        }).when(booksService).forEachBookWithReviews(Mockito.any());
+        var result = mockMvc.perform(MockMvcRequestBuilders
+                        .get("/books/export").param("include", "reviews")
+                        .accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(status().isOk())
+                .andReturn();
+        var lines = result.getResponse().getContentAsString().split("\n");
+        assertEquals(2, lines.length);
+        var first = jsonMapper.readTree(lines[0]);
+        assertEquals(reviews.size(), first.get("reviews").size());
+        assertEquals(reviews.get(0).getText(), first.get("reviews").get(0).get("review").asText());
+        assertEquals(0, jsonMapper.readTree(lines[1]).get("reviews").size());
+        assertTrue(lines[1].startsWith("{"));
+    }
 
     @Test
     @DisplayName("When Post with invalid values request Should result validation error")
@@ -158,6 +533,156 @@ class BooksControllerTest {
                 .andExpect(jsonPath("$.message", containsString( book.getId().toString())) );
     }
 
+    @Test
+    @DisplayName("When Post batch Should result one response per item in request order")
+    public void whenPostBatchRequest_resultItemResponses() throws Exception {
+        var books = TestHelper.getBooksMock();
+        var requests = List.of(bookMapper.toRequest(books.get(0)), new BookRequest(), bookMapper.toRequest(books.get(1)));
+        Mockito.when(booksService.createBooks(Mockito.anyList())).thenReturn(List.of(
+                ItemResult.ok(books.get(0)),
+                ItemResult.failed(books.get(1), new ResourceAlreadyExistsException(Book.class.getSimpleName(), 2))));
+        mockMvc.perform(MockMvcRequestBuilders
+                        .post("/books/batch")
+                        .content(jsonMapper.writeValueAsString(requests)).contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(3)))
+                .andExpect(jsonPath("$[0].status", is(201)))
+                .andExpect(jsonPath("$[0].book.id", is(books.get(0).getId())))
+                .andExpect(jsonPath("$[1].status", is(400)))
+                .andExpect(jsonPath("$[1].error.details.title").exists())
+                .andExpect(jsonPath("$[2].index", is(2)))
+                .andExpect(jsonPath("$[2].status", is(400)))
+                .andExpect(jsonPath("$[2].error.title", is("ResourceAlreadyExistsException")));
+    }
+
+    @Test
+    @DisplayName("When Post batch with null items Should reject them as items, registering the others")
+    public void whenPostBatchRequestWithNullItems_rejectedItems() throws Exception {
+        var books = TestHelper.getBooksMock();
+        String json = "[" + jsonMapper.writeValueAsString(bookMapper.toRequest(books.get(0))) + ",null]";
+        Mockito.when(booksService.createBooks(Mockito.anyList())).thenReturn(List.of(ItemResult.ok(books.get(0))));
+        mockMvc.perform(MockMvcRequestBuilders
+                        .post("/books/batch")
+                        .content(json).contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].status", is(201)))
+                .andExpect(jsonPath("$[1].index", is(1)))
+                .andExpect(jsonPath("$[1].status", is(400)))
+                .andExpect(jsonPath("$[1].error.title", is("ValidationException")));
+        Mockito.verify(booksService).createBooks(List.of(bookMapper.toModel(bookMapper.toRequest(books.get(0)))));
+    }
+
+    @Test
+    @DisplayName("When Post batch with more items than allowed Should return Bad Request")
+    public void whenPostBatchRequestTooLarge_badRequestResponse() throws Exception {
+        var requests = TestHelper.getBooksMock().stream().map(bookMapper::toRequest).toList();
+        ReflectionTestUtils.setField(controller, "batchMaxSize", requests.size() - 1);
+        try {
+            mockMvc.perform(MockMvcRequestBuilders
+                            .post("/books/batch")
+                            .content(jsonMapper.writeValueAsString(requests)).contentType(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isBadRequest())
+                    .andExpect(jsonPath("$.title", is("BatchTooLargeException")));
+            Mockito.verify(booksService, Mockito.never()).createBooks(Mockito.anyList());
+        } finally {
+            ReflectionTestUtils.setField(controller, "batchMaxSize", 1000);
+        }
+    }
+
+    @Test
+    @DisplayName("When Import Books Should stream one result per line in line order")
+    public void whenImportBooksRequest_streamedResults() throws Exception {
+        var books = TestHelper.getBooksMock();
+        String body = String.join("\n",
+                "{\"title\":\"title 1\",\"language\":\"lang 1\",\"reviews\":[{\"review\":\"a\"},{\"review\":\"b\"}]}",
+                "{not json",
+                "",
+                "{\"title\":\"\"}",
+                "{\"title\":\"title 2\",\"language\":\"lang 2\"}");
+        Mockito.when(booksService.importBooks(Mockito.anyList(), Mockito.anyList())).thenReturn(List.of(
+                ItemResult.ok(books.get(0)),
+                ItemResult.failed(books.get(1), new ResourceAlreadyExistsException(Book.class.getSimpleName(), 2))));
+        var result = mockMvc.perform(MockMvcRequestBuilders
+                        .post("/books/import")
+                        .content(body).contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andReturn();
+        var lines = result.getResponse().getContentAsString().split("\n");
+        assertEquals(4, lines.length);
+        assertEquals(201, jsonMapper.readTree(lines[0]).get("status").asInt());
+        assertEquals("JsonParseException", jsonMapper.readTree(lines[1]).get("error").get("title").asText());
+        assertEquals(3, jsonMapper.readTree(lines[2]).get("index").asInt());
+        assertTrue(jsonMapper.readTree(lines[2]).get("error").get("details").has("title"));
+        assertEquals("ResourceAlreadyExistsException", jsonMapper.readTree(lines[3]).get("error").get("title").asText());
+        Mockito.verify(booksService).importBooks(
+                List.of(bookMapper.toModel(new BookRequest("title 1", "lang 1", null, null)),
+                        bookMapper.toModel(new BookRequest("title 2", "lang 2", null, null))),
+                List.of(List.of("a", "b"), List.of()));
+    }
+
+    @Test
+    @DisplayName("When Import Books with more lines than the commit size Should commit them in chunks")
+    public void whenImportBooksRequest_committedInChunks() throws Exception {
+        var books = TestHelper.getBooksMock();
+        String body = books.stream().map(b -> {
+            try {
+                return jsonMapper.writeValueAsString(bookMapper.toRequest(b));
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }).collect(Collectors.joining("\n"));
+        Mockito.when(booksService.importBooks(Mockito.anyList(), Mockito.anyList())).thenAnswer(invocation -> {
+            List<Book> chunk = invocation.getArgument(0);
+            return chunk.stream().map(ItemResult::ok).toList();
+        });
+        ReflectionTestUtils.setField(controller, "importCommitSize", 2);
+        try {
+            var result = mockMvc.perform(MockMvcRequestBuilders
+                            .post("/books/import")
+                            .content(body).contentType(MediaType.APPLICATION_NDJSON))
+                    .andExpect(status().isOk())
+                    .andReturn();
+            assertEquals(books.size(), result.getResponse().getContentAsString().split("\n").length);
+            Mockito.verify(booksService, Mockito.times(2)).importBooks(Mockito.anyList(), Mockito.anyList());
+        } finally {
+            ReflectionTestUtils.setField(controller, "importCommitSize", 500);
+        }
+    }
+
+    @Test
+    @DisplayName("When Import Books chunk conflicts with concurrent writes Should import it again, then reject its lines")
+    public void whenImportBooksConcurrentTitleRequest_chunkRetried() throws Exception {
+        var books = TestHelper.getBooksMock();
+        String body = "{\"title\":\"title 1\",\"language\":\"lang 1\"}\n{\"title\":\"title 2\",\"language\":\"lang 2\"}";
+        Mockito.when(booksService.importBooks(Mockito.anyList(), Mockito.anyList()))
+                .thenThrow(new DataIntegrityViolationException("title registered meanwhile"))
+                .thenReturn(List.of(ItemResult.ok(books.get(0)),
+                        ItemResult.failed(books.get(1), new ResourceAlreadyExistsException(Book.class.getSimpleName(), 2))));
+        var result = mockMvc.perform(MockMvcRequestBuilders
+                        .post("/books/import")
+                        .content(body).contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(status().isOk())
+                .andReturn();
+        var lines = result.getResponse().getContentAsString().split("\n");
+        assertEquals(201, jsonMapper.readTree(lines[0]).get("status").asInt());
+        assertEquals("ResourceAlreadyExistsException", jsonMapper.readTree(lines[1]).get("error").get("title").asText());
+        Mockito.reset(booksService);
+        Mockito.when(booksService.importBooks(Mockito.anyList(), Mockito.anyList()))
+                .thenThrow(new DataIntegrityViolationException("title registered meanwhile"));
+        result = mockMvc.perform(MockMvcRequestBuilders
+                        .post("/books/import")
+                        .content(body).contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(status().isOk())
+                .andReturn();
+        lines = result.getResponse().getContentAsString().split("\n");
+        assertEquals(2, lines.length);  // the stream is complete, every line answered
+        assertEquals(409, jsonMapper.readTree(lines[0]).get("status").asInt());
+        assertEquals(409, jsonMapper.readTree(lines[1]).get("status").asInt());
+        Mockito.verify(booksService, Mockito.times(2)).importBooks(Mockito.anyList(), Mockito.anyList());
+    }
+
     @Test
     @DisplayName("When Post with valid request Should result book response")
     public void whenPostValidRequest_resultResponse() throws Exception {
@@ -232,13 +757,74 @@ class BooksControllerTest {
                 .andExpect(jsonPath("$.authors").exists());
     }
 
+    @Test
+    @DisplayName("When Put request with If-Match Should update the matching version and result its new ETag")
+    public void whenPutIfMatchRequest_versionChecked() throws Exception {
+        var book = TestHelper.getBookMock();
+        String json = jsonMapper.writeValueAsString(bookMapper.toRequest(book));
+        var updated = TestHelper.getBookMock();
+        updated.setVersion(1);
+        Mockito.when(booksService.updateBook(Mockito.argThat(b -> Integer.valueOf(0).equals(b.getVersion()))))
+                .thenReturn(updated);
+        mockMvc.perform(MockMvcRequestBuilders
+                        .put("/books/{id}", book.getId())
+                        .header(HttpHeaders.IF_MATCH, "\"0-hal\"")
+                        .content(json).contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"1-hal\""));
+    }
+
+    @Test
+    @DisplayName("When Put with valid request Should result the book with its links, as its ETag tells")
+    public void whenPutValidRequest_linkedResponse() throws Exception {
+        var book = TestHelper.getBookMock();
+        String json = jsonMapper.writeValueAsString(bookMapper.toRequest(book));
+        Mockito.when(booksService.updateBook(Mockito.any(Book.class))).thenReturn(book);
+        mockMvc.perform(MockMvcRequestBuilders
+                        .put("/books/{id}", book.getId())
+                        .content(json).contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, endsWith("-hal\"")))
+                .andExpect(jsonPath("$._links.reviews.href", is("http://localhost/books/" + book.getId() + "/reviews")))
+                .andExpect(jsonPath("$._links.books.href", is("http://localhost/books")));
+    }
+
+    @Test
+    @DisplayName("When Put request with If-Match of a modified book Should result precondition failed")
+    public void whenPutIfMatchStaleRequest_resultError() throws Exception {
+        var book = TestHelper.getBookMock();
+        String json = jsonMapper.writeValueAsString(bookMapper.toRequest(book));
+        Mockito.when(booksService.updateBook(Mockito.any(Book.class)))
+                .thenThrow(new PreconditionFailedException(Book.class.getSimpleName(), book.getId()));
+        mockMvc.perform(MockMvcRequestBuilders
+                        .put("/books/{id}", book.getId())
+                        .header(HttpHeaders.IF_MATCH, "\"0\"")
+                        .content(json).contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isPreconditionFailed())
+                .andExpect(jsonPath("$.title", is( PreconditionFailedException.class.getSimpleName() )));
+    }
+
+    @Test
+    @DisplayName("When Put request without If-Match of a book modified concurrently Should result conflict")
+    public void whenPutConcurrentUpdateRequest_resultError() throws Exception {
+        var book = TestHelper.getBookMock();
+        String json = jsonMapper.writeValueAsString(bookMapper.toRequest(book));
+        Mockito.when(booksService.updateBook(Mockito.any(Book.class)))
+                .thenThrow(new ConcurrentUpdateException(Book.class.getSimpleName(), book.getId()));
+        mockMvc.perform(MockMvcRequestBuilders
+                        .put("/books/{id}", book.getId())
+                        .content(json).contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.title", is( ConcurrentUpdateException.class.getSimpleName() )));
+    }
+
 
     @Test
     @DisplayName("When Delete request of a non-existing id Should result error")
     public void whenDeleteNonExistingIdRequest_resultError() throws Exception {
         Integer reqId = 1;
         Mockito.doThrow(new ResourceNotFoundException(Book.class.getSimpleName(), reqId))
-                .when(booksService).deleteBook(Mockito.anyInt());
+                .when(booksService).deleteBook(Mockito.anyInt(), Mockito.any());
         mockMvc.perform(MockMvcRequestBuilders
                         .delete("/books/{id}", reqId)
                         .contentType(MediaType.APPLICATION_JSON))
@@ -258,13 +844,29 @@ class BooksControllerTest {
                         .delete("/books/{id}", 1L)
                         .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isNoContent());
+        Mockito.verify(booksService).deleteBook(1, null);
+    }
+
+    @Test
+    @DisplayName("When Delete request with If-Match Should delete only the matching version")
+    public void whenDeleteIfMatchRequest_versionChecked() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.delete("/books/{id}", 1).header(HttpHeaders.IF_MATCH, "\"3\""))
+                .andExpect(status().isNoContent());
+        Mockito.verify(booksService).deleteBook(1, 3);
+        mockMvc.perform(MockMvcRequestBuilders.delete("/books/{id}", 2).header(HttpHeaders.IF_MATCH, "W/\"3\""))
+                .andExpect(status().isNoContent());
+        Mockito.verify(booksService).deleteBook(2, -1);  // weak ETags never match
+        mockMvc.perform(MockMvcRequestBuilders.delete("/books/{id}", 3).header(HttpHeaders.IF_MATCH, "\"4-hal\""))
+                .andExpect(status().isNoContent());
+        Mockito.verify(booksService).deleteBook(3, 4);  // ETags of both representations carry the version
     }
 
 
     @Test
     @DisplayName("When Get All Reviews of a book request and there are no results Should return empty list")
     public void whenGetAllReviewsRequest_emptyListResponse() throws Exception {
-        Mockito.when(booksService.findReviews(Mockito.anyInt())).thenReturn(new ArrayList<>());
+        Mockito.when(booksService.findReviews(Mockito.anyInt(), Mockito.anyInt(), Mockito.anyInt()))
+                .thenReturn(new CursorPage<>(new ArrayList<>(), null));
         mockMvc.perform(MockMvcRequestBuilders
                         .get("/books/{bookId}/reviews", 1)
                         .contentType(MediaType.APPLICATION_JSON))
@@ -277,15 +879,66 @@ class BooksControllerTest {
     @Test
     @DisplayName("When Get All Reviews of a book request and there are registered books Should return list")
     public void whenGetAllReviewsRequest_resultListResponse() throws Exception {
-        var reviews = TestHelper.getReviewsMock();
-        Mockito.when(booksService.findReviews(Mockito.anyInt())).thenReturn(reviews);
+        var reviews = TestHelper.getReviewModelsMock();
+        Mockito.when(booksService.findReviews(Mockito.anyInt(), Mockito.anyInt(), Mockito.anyInt()))
+                .thenReturn(new CursorPage<>(reviews, null));
         mockMvc.perform(MockMvcRequestBuilders
                         .get("/books/{bookId}/reviews", 1)
                         .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$").isArray())
                 .andExpect(jsonPath("$", is(not(emptyArray()))))
-                .andExpect(jsonPath("$", hasSize(reviews.size())));
+                .andExpect(jsonPath("$", hasSize(reviews.size())))
+                .andExpect(jsonPath("$[0].links[0].href", is("http://localhost/books/1")));
+    }
+
+
+    @Test
+    @DisplayName("When Get Reviews with cursor and there are more reviews Should return next cursor header")
+    public void whenGetReviewsAfterCursorRequest_nextCursorHeader() throws Exception {
+        var reviews = TestHelper.getReviewModelsMock();
+        Mockito.when(booksService.findReviews(1, 3, "")).thenReturn(new CursorPage<>(reviews, "next"));
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get("/books/{bookId}/reviews", 1)
+                        .param("size", "3")
+                        .param("after", "")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string(BooksController.NEXT_CURSOR_HEADER, "next"))
+                .andExpect(jsonPath("$", hasSize(reviews.size())))
+                .andExpect(jsonPath("$[0].review", is(reviews.get(0).getText())));
+    }
+
+    @Test
+    @DisplayName("When Get Reviews accepting NDJSON Should stream one review per line")
+    public void whenGetReviewsNdjsonRequest_streamedResponse() throws Exception {
+        var reviews = TestHelper.getReviewModelsMock();
+        Mockito.doAnswer(invocation -> {
+            Consumer<Review> action = invocation.getArgument(1);
+            reviews.forEach(action);
+            return null;
+        }).when(booksService).forEachReview(Mockito.eq(1), Mockito.any());
+        var result = mockMvc.perform(MockMvcRequestBuilders
+                        .get("/books/{bookId}/reviews", 1)
+                        .accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andReturn();
+        var lines = result.getResponse().getContentAsString().split("\n");
+        assertEquals(reviews.size(), lines.length);
+        assertEquals(reviews.get(0).getText(), jsonMapper.readTree(lines[0]).get("review").asText());
+        assertTrue(lines[1].startsWith("{"));
+    }
+
+    @Test
+    @DisplayName("When Get Reviews accepting NDJSON of nonexistent book Should result not found")
+    public void whenGetReviewsNdjsonRequest_notFound() throws Exception {
+        Mockito.doThrow(new ResourceNotFoundException(Book.class.getSimpleName(), 1))
+                .when(booksService).forEachReview(Mockito.eq(1), Mockito.any());
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get("/books/{bookId}/reviews", 1)
+                        .accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(status().isNotFound());
     }
 
 
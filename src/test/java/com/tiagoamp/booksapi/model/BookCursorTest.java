@@ -0,0 +1,41 @@
+package com.tiagoamp.booksapi.model;
+
+import com.tiagoamp.booksapi.TestHelper;
+import com.tiagoamp.booksapi.exception.InvalidCursorException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BookCursorTest {
+
+    @Test
+    @DisplayName("When encoded cursor is decoded, should keep sort field value and id")
+    void encodeDecode() {
+        var book = TestHelper.getBookMock();
+        var cursor = BookCursor.of(book, "yearOfPublication", "DESC");
+        var decoded = BookCursor.decode(cursor.encode());
+        assertEquals("yearOfPublication", decoded.getSortField());
+        assertEquals("DESC", decoded.getSortDirection());
+        assertEquals(book.getYearOfPublication(), decoded.getValue());
+        assertEquals(book.getId(), decoded.getId());
+    }
+
+    @Test
+    @DisplayName("When sort field value is null, should decode null value")
+    void encodeDecode_nullValue() {
+        var book = TestHelper.getBookMock();
+        book.setAuthors(null);
+        var decoded = BookCursor.decode(BookCursor.of(book, "authors", "ASC").encode());
+        assertNull(decoded.getValue());
+        assertEquals(book.getId(), decoded.getId());
+    }
+
+    @Test
+    @DisplayName("When token is not a valid cursor, should throw exception")
+    void decode_invalid() {
+        assertThrows(InvalidCursorException.class, () -> BookCursor.decode("not a cursor"));
+        assertThrows(InvalidCursorException.class, () -> BookCursor.decode("dGl0bGU"));
+    }
+
+}
@@ -1,25 +1,36 @@
 package com.tiagoamp.booksapi.repository;
 
-import com.tiagoamp.booksapi.BooksApiApplication;
 import com.tiagoamp.booksapi.TestHelper;
 import com.tiagoamp.booksapi.model.Book;
+import com.tiagoamp.booksapi.model.BookCursor;
+import com.tiagoamp.booksapi.model.BookFilter;
+import com.tiagoamp.booksapi.model.Review;
+import com.tiagoamp.booksapi.model.ReviewCursor;
 import com.tiagoamp.booksapi.util.BookMapper;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.ArrayList;
 import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -29,8 +40,11 @@ class BookGatewayRepositoryTest {
     @Mock
     private BookRepository bookRepo;
 
+    @Mock
+    private ReviewRepository reviewRepo;
+
     @Spy  // injects this real object
-    private BookMapper mapper = new BookMapper(new BooksApiApplication().getModelMapper());
+    private BookMapper mapper = new BookMapper();
 
     @InjectMocks
     private BookGatewayRepository gatewayRepo;
@@ -42,12 +56,13 @@ class BookGatewayRepositoryTest {
         @DisplayName("When no books registered, should return empty list")
         void findAll_empty() {
             // given
-            Mockito.when(bookRepo.findAll(Mockito.any(PageRequest.class))).thenReturn(Page.empty());
+            Mockito.when(bookRepo.findAll(Mockito.any(), Mockito.any(Sort.class), Mockito.anyInt(), Mockito.anyInt())).thenReturn(List.of());
             // when
-            List<Book> result = gatewayRepo.findAll(10, 0, "title", "ASC");
+            var result = gatewayRepo.findAll(10, 0, "title", "ASC", BookFilter.NONE);
             // then
             assertNotNull(result);
-            assertTrue(result.isEmpty());
+            assertTrue(result.getItems().isEmpty());
+            assertFalse(result.hasNext());
         }
 
         @Test
@@ -55,13 +70,226 @@ class BookGatewayRepositoryTest {
         void findAll() {
             // given
             var mocks = TestHelper.getBooksEntityMock();
-            Mockito.when(bookRepo.findAll(Mockito.any(PageRequest.class))).thenReturn(new PageImpl<>(mocks));
+            Mockito.when(bookRepo.findAll(Mockito.any(), Mockito.any(Sort.class), Mockito.anyInt(), Mockito.anyInt())).thenReturn(mocks);
             // when
-            List<Book> result = gatewayRepo.findAll(10, 0, "title", "ASC");
+            var result = gatewayRepo.findAll(10, 0, "title", "ASC", BookFilter.NONE);
             // then
             assertNotNull(result);
-            assertFalse(result.isEmpty());
-            assertEquals(mocks.size(), result.size());
+            assertFalse(result.getItems().isEmpty());
+            assertEquals(mocks.size(), result.getItems().size());
+        }
+
+        @Test
+        @DisplayName("When fetching a page, should query one extra row from its offset instead of counting")
+        void findAll_limitPlusOne() {
+            // given
+            Mockito.when(bookRepo.findAll(Mockito.any(), Mockito.any(Sort.class), Mockito.anyInt(), Mockito.anyInt())).thenReturn(List.of());
+            // when
+            gatewayRepo.findAll(10, 2, "title", "ASC", BookFilter.NONE);
+            gatewayRepo.findAll(10, 2, "language", "ASC", BookFilter.NONE);
+            // then
+            Mockito.verify(bookRepo).findAll(null, Sort.by(Sort.Direction.ASC, "title"), 20, 11);  // unique, no tie to break
+            Mockito.verify(bookRepo).findAll(null, Sort.by(Sort.Direction.ASC, "language", "id"), 20, 11);
+            Mockito.verify(bookRepo, Mockito.never()).count();
+        }
+
+        @Test
+        @DisplayName("When fetching a page beyond the largest offset, should return an empty page without querying")
+        void findAll_offsetOverflow() {
+            // when
+            var result = gatewayRepo.findAll(100, Integer.MAX_VALUE / 10, "title", "ASC", BookFilter.NONE);
+            // then
+            assertTrue(result.getItems().isEmpty());
+            assertFalse(result.hasNext());
+            Mockito.verify(bookRepo, Mockito.never()).findAll(Mockito.any(), Mockito.any(Sort.class), Mockito.anyInt(), Mockito.anyInt());
+        }
+
+    }
+
+    @Nested
+    class CountTests {
+
+        @Test
+        @DisplayName("When counting books, should query database only once and keep count up to date")
+        void count() {
+            // given
+            var entity = TestHelper.getBookEntityMock();
+            Mockito.when(bookRepo.count()).thenReturn(3L);
+            Mockito.when(bookRepo.saveAndFlush(Mockito.any(BookEntity.class))).thenReturn(entity);
+            Mockito.when(bookRepo.findById(entity.getId())).thenReturn(Optional.of(entity));
+            // when
+            long initial = gatewayRepo.count();
+            gatewayRepo.save(new Book());
+            long afterSave = gatewayRepo.count();
+            gatewayRepo.delete(entity.getId(), null);
+            long afterDelete = gatewayRepo.count();
+            // then
+            assertEquals(3L, initial);
+            assertEquals(4L, afterSave);
+            assertEquals(3L, afterDelete);
+            Mockito.verify(bookRepo, Mockito.times(1)).count();
+        }
+
+        @Test
+        @DisplayName("When books are saved in a transaction, should count them only once it commits")
+        void count_transaction() {
+            // given
+            Mockito.when(bookRepo.count()).thenReturn(3L);
+            Mockito.when(bookRepo.insertAll(Mockito.anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+            gatewayRepo.count();
+            TransactionSynchronizationManager.initSynchronization();
+            try {
+                // when
+                gatewayRepo.saveAll(List.of(new Book(), new Book()));
+                long beforeCommit = gatewayRepo.count();
+                TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+                // then
+                assertEquals(3L, beforeCommit);  // a rollback would leave it as it is
+                assertEquals(5L, gatewayRepo.count());
+            } finally {
+                TransactionSynchronizationManager.clearSynchronization();
+            }
+        }
+
+        @Test
+        @DisplayName("When books are saved and deleted while they are counted, should count them again")
+        void count_concurrentWrites() throws Exception {
+            // given
+            var entity = TestHelper.getBookEntityMock();
+            var counting = new CountDownLatch(1);
+            var written = new CountDownLatch(1);
+            Mockito.when(bookRepo.count()).thenAnswer(invocation -> {
+                counting.countDown();
+                written.await();
+                return 3L;  // counted before the writes committed, or some of them
+            }).thenReturn(3L + 8 * 200 - 8);
+            Mockito.when(bookRepo.insertAll(Mockito.anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+            Mockito.when(bookRepo.findById(entity.getId())).thenReturn(Optional.of(entity));
+            gatewayRepo.saveAll(List.of(new Book()));  // committed before the count query
+            var executor = Executors.newSingleThreadExecutor();
+            try {
+                // when
+                Future<?> load = executor.submit(gatewayRepo::loadCount);
+                counting.await();
+                var writers = new ArrayList<Thread>();
+                for (int i = 0; i < 8; i++) {
+                    writers.add(new Thread(() -> {
+                        for (int j = 0; j < 100; j++)
+                            gatewayRepo.saveAll(List.of(new Book(), new Book()));
+                        gatewayRepo.delete(entity.getId(), null);
+                    }));
+                }
+                writers.forEach(Thread::start);
+                for (Thread writer : writers)
+                    writer.join();
+                written.countDown();
+                load.get();
+            } finally {
+                executor.shutdown();
+            }
+            // then
+            assertEquals(3L + 8 * 200 - 8, gatewayRepo.count());
+            Mockito.verify(bookRepo, Mockito.times(2)).count();
+        }
+
+        @Test
+        @DisplayName("When a book is saved after the delta is read but before it is counted, should count it only once")
+        void count_writeCommittedWhileCounting() {
+            // given
+            Mockito.when(bookRepo.insertAll(Mockito.anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+            Mockito.when(bookRepo.count()).thenAnswer(invocation -> {
+                gatewayRepo.saveAll(List.of(new Book()));  // committed as the count query starts
+                return 4L;  // and counted by it
+            }).thenReturn(4L);
+            // when
+            gatewayRepo.loadCount();
+            // then
+            assertEquals(4L, gatewayRepo.count());
+            Mockito.verify(bookRepo, Mockito.times(2)).count();
+        }
+
+        @Test
+        @DisplayName("When a book is saved and another deleted while they are counted, should count them again")
+        void count_offsettingWrites() {
+            // given
+            var entity = TestHelper.getBookEntityMock();
+            Mockito.when(bookRepo.insertAll(Mockito.anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+            Mockito.when(bookRepo.findById(entity.getId())).thenReturn(Optional.of(entity));
+            Mockito.when(bookRepo.count()).thenAnswer(invocation -> {
+                gatewayRepo.saveAll(List.of(new Book()));  // counted by the query
+                gatewayRepo.delete(entity.getId(), null);  // committed after it, the delta is as it was
+                return 4L;
+            }).thenReturn(3L);
+            // when
+            gatewayRepo.loadCount();
+            // then
+            assertEquals(3L, gatewayRepo.count());
+            Mockito.verify(bookRepo, Mockito.times(2)).count();
+        }
+
+        @Test
+        @DisplayName("When counting filtered books, should count them in the database instead of the kept count")
+        void count_filtered() {
+            // given
+            Mockito.when(bookRepo.count(Mockito.<Specification<BookEntity>>any())).thenReturn(2L);
+            // when
+            long count = gatewayRepo.count(BookFilter.of("English", null, null, null));
+            // then
+            assertEquals(2L, count);
+            Mockito.verify(bookRepo, Mockito.never()).count();
+        }
+
+    }
+
+    @Nested
+    class FindAllAfterTests {
+
+        @Test
+        @DisplayName("When there are more books than page size, should return next cursor")
+        void findAllAfter_hasNext() {
+            // given
+            var mocks = TestHelper.getBooksEntityMock();
+            Mockito.when(bookRepo.findAll(Mockito.any(), Mockito.any(Sort.class), Mockito.anyInt(), Mockito.anyInt())).thenReturn(mocks);
+            // when
+            var result = gatewayRepo.findAll(mocks.size() - 1, (BookCursor) null, "title", "ASC", BookFilter.NONE);
+            // then
+            assertEquals(mocks.size() - 1, result.getItems().size());
+            assertTrue(result.hasNext());
+            var cursor = BookCursor.decode(result.getNextCursor());
+            var lastBook = result.getItems().get(result.getItems().size() - 1);
+            assertEquals(lastBook.getId(), cursor.getId());
+            assertEquals(lastBook.getTitle(), cursor.getValue());
+        }
+
+        @Test
+        @DisplayName("When last page is fetched, should return no next cursor")
+        void findAllAfter_lastPage() {
+            // given
+            var mocks = TestHelper.getBooksEntityMock();
+            Mockito.when(bookRepo.findAll(Mockito.any(), Mockito.any(Sort.class), Mockito.anyInt(), Mockito.anyInt())).thenReturn(mocks);
+            // when
+            var result = gatewayRepo.findAll(mocks.size(), (BookCursor) null, "title", "ASC", BookFilter.NONE);
+            // then
+            assertEquals(mocks.size(), result.getItems().size());
+            assertFalse(result.hasNext());
+        }
+
+        @Test
+        @DisplayName("When the books with a sort value run out in the page, should continue with the books without one")
+        void findAllAfter_followingNulls() {
+            // given
+            var mocks = TestHelper.getBooksEntityMock();
+            var cursor = new BookCursor("yearOfPublication", "DESC", 1900, 10);
+            Mockito.when(bookRepo.findAll(Mockito.any(), Mockito.any(Sort.class), Mockito.eq(0), Mockito.eq(4)))
+                    .thenReturn(mocks.subList(0, 1));  // the last book with a year
+            Mockito.when(bookRepo.findAll(Mockito.any(), Mockito.any(Sort.class), Mockito.eq(0), Mockito.eq(3)))
+                    .thenReturn(mocks.subList(1, mocks.size()));
+            // when
+            var result = gatewayRepo.findAll(3, cursor, "yearOfPublication", "DESC", BookFilter.NONE);
+            // then
+            assertEquals(mocks.stream().map(BookEntity::getId).toList(),
+                    result.getItems().stream().map(Book::getId).toList());
+            assertFalse(result.hasNext());
         }
 
     }
@@ -104,7 +332,7 @@ class BookGatewayRepositoryTest {
             // given
             var entity = TestHelper.getBookEntityMock();
             entity.setId(1);
-            Mockito.when(bookRepo.save(Mockito.any(BookEntity.class))).thenReturn(entity);
+            Mockito.when(bookRepo.saveAndFlush(Mockito.any(BookEntity.class))).thenReturn(entity);
             // when
             var result = gatewayRepo.save(new Book());
             // then
@@ -113,6 +341,41 @@ class BookGatewayRepositoryTest {
 
     }
 
+    @Nested
+    class SaveAllTests {
+
+        @Test
+        @DisplayName("When books were saved in bulk, should return them with ids and keep the count")
+        void saveAll() {
+            // given
+            var entities = TestHelper.getBooksEntityMock();
+            Mockito.when(bookRepo.insertAll(Mockito.anyList())).thenReturn(entities);
+            Mockito.when(bookRepo.count()).thenReturn(3L);
+            gatewayRepo.count();
+            // when
+            var result = gatewayRepo.saveAll(TestHelper.getBooksMock());
+            // then
+            assertEquals(entities.size(), result.size());
+            assertEquals(entities.get(0).getId(), result.get(0).getId());
+            assertEquals(3L + entities.size(), gatewayRepo.count());
+        }
+
+        @Test
+        @DisplayName("When looking up titles, should return ids of registered ones")
+        void findIdsByTitles() {
+            // given
+            var row = Mockito.mock(BookRepository.BookTitle.class);
+            Mockito.when(row.getTitle()).thenReturn("title 1");
+            Mockito.when(row.getId()).thenReturn(1);
+            Mockito.when(bookRepo.findByTitleIn(Set.of("title 1", "title 9"))).thenReturn(List.of(row));
+            // when
+            var result = gatewayRepo.findIdsByTitles(Set.of("title 1", "title 9"));
+            // then
+            assertEquals(Map.of("title 1", 1), result);
+        }
+
+    }
+
     @Nested
     class FindByTitleTests {
 
@@ -142,6 +405,14 @@ class BookGatewayRepositoryTest {
     @Nested
     class UpdateTests {
 
+        @Test
+        @DisplayName("When book does not exist, should return empty result")
+        void update_notFound() {
+            Mockito.when(bookRepo.findById(Mockito.anyInt())).thenReturn(Optional.empty());
+            var result = gatewayRepo.update(TestHelper.getBookMock());
+            assertTrue(result.isEmpty());
+        }
+
         @Test
         @DisplayName("When updated values, should return updated result")
         void update() {
@@ -154,17 +425,53 @@ class BookGatewayRepositoryTest {
             updatedBook.setLanguage("Updated Language");
             updatedBook.setYearOfPublication(2000);
             updatedBook.setAuthors("Updated Authors");
-            var updatedEntity = mapper.toEntity(updatedBook);
             Mockito.when(bookRepo.findById(Mockito.anyInt())).thenReturn(Optional.of(bookBD));
-            Mockito.when(bookRepo.save(Mockito.any(BookEntity.class))).thenReturn(updatedEntity);
             // when
-            var result = gatewayRepo.update(updatedBook);
+            var result = gatewayRepo.update(updatedBook).get();
             // then
             assertEquals(bookBD.getId(), result.getId());
             assertEquals(updatedBook.getTitle(), result.getTitle());
             assertEquals(updatedBook.getLanguage(), result.getLanguage());
             assertEquals(updatedBook.getYearOfPublication(), result.getYearOfPublication());
             assertEquals(updatedBook.getAuthors(), result.getAuthors());
+            Mockito.verify(bookRepo, Mockito.never()).save(Mockito.any());  // flushed by dirty checking
+        }
+
+        @Test
+        @DisplayName("When updated values are null, should keep stored values")
+        void update_skipNulls() {
+            // given
+            var bookBD = TestHelper.getBookEntityMock();
+            var updatedBook = new Book(bookBD.getId(), "Updated Title", "Updated Language", null, null);
+            Mockito.when(bookRepo.findById(Mockito.anyInt())).thenReturn(Optional.of(bookBD));
+            // when
+            var result = gatewayRepo.update(updatedBook).get();
+            // then
+            assertEquals(updatedBook.getTitle(), result.getTitle());
+            assertEquals(bookBD.getYearOfPublication(), result.getYearOfPublication());
+            assertEquals(bookBD.getAuthors(), result.getAuthors());
+        }
+
+        @Test
+        @DisplayName("When book is at the expected version, should update values but not the version")
+        void update_expectedVersion() {
+            var bookBD = TestHelper.getBookEntityMock();
+            var updatedBook = new Book(bookBD.getId(), "Updated Title", null, null, null, bookBD.getVersion(), null);
+            Mockito.when(bookRepo.findById(Mockito.anyInt())).thenReturn(Optional.of(bookBD));
+            var result = gatewayRepo.update(updatedBook).get();
+            assertEquals(updatedBook.getTitle(), result.getTitle());
+            assertEquals(bookBD.getVersion(), result.getVersion());  // only hibernate changes it
+        }
+
+        @Test
+        @DisplayName("When book was modified since the expected version, should throw exception and keep stored values")
+        void update_staleVersion() {
+            var bookBD = TestHelper.getBookEntityMock();
+            var updatedBook = new Book(bookBD.getId(), "Updated Title", null, null, null, bookBD.getVersion() + 1, null);
+            Mockito.when(bookRepo.findById(Mockito.anyInt())).thenReturn(Optional.of(bookBD));
+            assertThrows(OptimisticLockingFailureException.class, () -> gatewayRepo.update(updatedBook));
+            assertNotEquals(updatedBook.getTitle(), bookBD.getTitle());
+            Mockito.verify(bookRepo, Mockito.never()).flush();
         }
 
     }
@@ -173,12 +480,29 @@ class BookGatewayRepositoryTest {
     class DeleteTests {
 
         @Test
-        @DisplayName("When deleted book, should result no errors")
+        @DisplayName("When deleted book, should remove its entity and return true")
         void delete() {
-            var book = TestHelper.getBookEntityMock();
-            Integer id = book.getId();
-            Mockito.when(bookRepo.findById(id)).thenReturn(Optional.of(book));
-            assertDoesNotThrow(() -> gatewayRepo.delete(id));
+            var entity = TestHelper.getBookEntityMock();
+            Mockito.when(bookRepo.findById(1)).thenReturn(Optional.of(entity));
+            assertTrue(gatewayRepo.delete(1, null));
+            Mockito.verify(bookRepo).delete(entity);
+        }
+
+        @Test
+        @DisplayName("When book does not exist, should return false")
+        void delete_notFound() {
+            Mockito.when(bookRepo.findById(1)).thenReturn(Optional.empty());
+            assertFalse(gatewayRepo.delete(1, null));
+            Mockito.verify(bookRepo, Mockito.never()).delete(Mockito.any());
+        }
+
+        @Test
+        @DisplayName("When book was modified since the expected version, should throw exception and keep it")
+        void delete_staleVersion() {
+            var entity = TestHelper.getBookEntityMock();
+            Mockito.when(bookRepo.findById(1)).thenReturn(Optional.of(entity));
+            assertThrows(OptimisticLockingFailureException.class, () -> gatewayRepo.delete(1, entity.getVersion() + 1));
+            Mockito.verify(bookRepo, Mockito.never()).delete(Mockito.any());
         }
 
     }
@@ -186,68 +510,234 @@ class BookGatewayRepositoryTest {
     @Nested
     class FindReviewOfBookTests {
 
+        @Test
+        @DisplayName("When book does not exist, should return empty result")
+        void findReviewsOfBook_notFound() {
+            Mockito.when(reviewRepo.findByBookId(Mockito.anyInt(), Mockito.any())).thenReturn(new SliceImpl<>(List.of()));
+            Mockito.when(bookRepo.findById(1)).thenReturn(Optional.empty());
+            var result = gatewayRepo.findReviewsOfBook(1, 20, 0);
+            assertTrue(result.isEmpty());
+        }
+
         @Test
         @DisplayName("When book has no reviews, should return empty list")
         void findReviewsOfBook_empty() {
             // given
-            var book = TestHelper.getBookEntityMock();
-            Mockito.when(bookRepo.findById(Mockito.anyInt())).thenReturn(Optional.of(book));
+            Mockito.when(reviewRepo.findByBookId(Mockito.anyInt(), Mockito.any())).thenReturn(new SliceImpl<>(List.of()));
+            Mockito.when(bookRepo.findById(1)).thenReturn(Optional.of(TestHelper.getBookEntityMock()));
             // when
-            var result = gatewayRepo.findReviewsOfBook(book.getId());
+            var result = gatewayRepo.findReviewsOfBook(1, 20, 0);
             // then
-            assertNotNull(result);
-            assertTrue(result.isEmpty());
+            assertTrue(result.isPresent());
+            assertTrue(result.get().getItems().isEmpty());
+            assertFalse(result.get().hasNext());
         }
 
         @Test
-        @DisplayName("When book has reviews, should return list")
+        @DisplayName("When book has reviews, should return page without checking the book")
         void findReviewsOfBook() {
             // given
-            var book = TestHelper.getBookEntityMock();
-            var reviews = TestHelper.getReviewsMock();
-            book.setReviews(reviews);
-            Mockito.when(bookRepo.findById(Mockito.anyInt())).thenReturn(Optional.of(book));
+            var reviews = TestHelper.getReviewModelsMock();
+            Mockito.when(reviewRepo.findByBookId(1, PageRequest.of(0, 20, Sort.by("id")))).thenReturn(new SliceImpl<>(reviews));
             // when
-            var result = gatewayRepo.findReviewsOfBook(book.getId());
+            var result = gatewayRepo.findReviewsOfBook(1, 20, 0);
             // then
-            assertNotNull(result);
-            assertFalse(result.isEmpty());
-            assertEquals(reviews.size(), result.size());
+            assertTrue(result.isPresent());
+            assertEquals(reviews.size(), result.get().getItems().size());
+            Mockito.verify(bookRepo, Mockito.never()).findById(Mockito.anyInt());
+        }
+
+        @Test
+        @DisplayName("When fetching a negative page of reviews, should return the first page")
+        void findReviewsOfBook_negativePage() {
+            // given
+            var reviews = TestHelper.getReviewModelsMock();
+            Mockito.when(reviewRepo.findByBookId(1, PageRequest.of(0, 20, Sort.by("id")))).thenReturn(new SliceImpl<>(reviews));
+            // when
+            var result = gatewayRepo.findReviewsOfBook(1, 20, -1);
+            // then
+            assertEquals(reviews.size(), result.get().getItems().size());
+        }
+
+        @Test
+        @DisplayName("When fetching a page of reviews beyond the largest offset, should return an empty page without querying")
+        void findReviewsOfBook_offsetOverflow() {
+            // given
+            Mockito.when(bookRepo.findById(1)).thenReturn(Optional.of(TestHelper.getBookEntityMock()));
+            // when
+            var result = gatewayRepo.findReviewsOfBook(1, 100, Integer.MAX_VALUE / 10);
+            // then
+            assertTrue(result.get().getItems().isEmpty());
+            assertFalse(result.get().hasNext());
+            Mockito.verify(reviewRepo, Mockito.never()).findByBookId(Mockito.anyInt(), Mockito.any());
+        }
+
+        @Test
+        @DisplayName("When there are more reviews after the page, should return cursor of its last review")
+        void findReviewsOfBookAfter_nextCursor() {
+            // given
+            var reviews = TestHelper.getReviewModelsMock().subList(1, 3);
+            var pageable = PageRequest.of(0, 2, Sort.by("id"));
+            Mockito.when(reviewRepo.findByBookIdAfter(1, 1L, pageable)).thenReturn(new SliceImpl<>(reviews, pageable, true));
+            // when
+            var result = gatewayRepo.findReviewsOfBook(1, 2, 1L);
+            // then
+            assertTrue(result.get().hasNext());
+            assertEquals(reviews.get(1).getId(), ReviewCursor.decode(result.get().getNextCursor()));
+        }
+
+        @Test
+        @DisplayName("When streaming reviews of nonexistent book, should return false without querying reviews")
+        void forEachReviewOfBook_notFound() {
+            Mockito.when(bookRepo.findById(1)).thenReturn(Optional.empty());
+            assertFalse(gatewayRepo.forEachReviewOfBook(1, r -> { }));
+            Mockito.verify(reviewRepo, Mockito.never()).streamByBookId(Mockito.anyInt());
+        }
+
+        @Test
+        @DisplayName("When streaming reviews, should pass each one to the action")
+        void forEachReviewOfBook() {
+            // given
+            var reviews = TestHelper.getReviewModelsMock();
+            Mockito.when(bookRepo.findById(1)).thenReturn(Optional.of(TestHelper.getBookEntityMock()));
+            Mockito.when(reviewRepo.streamByBookId(1)).thenReturn(reviews.stream());
+            var streamed = new ArrayList<Review>();
+            // when
+            boolean found = gatewayRepo.forEachReviewOfBook(1, streamed::add);
+            // then
+            assertTrue(found);
+            assertEquals(reviews, streamed);
         }
 
     }
 
     @Nested
-    class AddReviewOfBookTests {
+    class ForEachBookTests {
 
         @Test
-        @DisplayName("When first review, should return result")
-        void addReview_first() {
+        @DisplayName("When streaming books, should pass each one to the action")
+        void forEachBook() {
             // given
-            var book = TestHelper.getBookEntityMock();
-            var newReview = "New Review";
-            Mockito.when(bookRepo.findById(Mockito.anyInt())).thenReturn(Optional.of(book));
+            var books = TestHelper.getBooksMock();
+            Mockito.when(bookRepo.streamAll()).thenReturn(books.stream());
+            var streamed = new ArrayList<Book>();
+            // when
+            gatewayRepo.forEachBook(streamed::add);
+            // then
+            assertEquals(books, streamed);
+        }
+
+        @Test
+        @DisplayName("When streaming books with reviews, should pass each book once along with all its reviews, ordered by id")
+        void forEachBookWithReviews() {
+            // given
+            var books = TestHelper.getBooksMock();
+            var reviews = TestHelper.getReviewModelsMock();
+            var noReview = new Review(null, null, null);
+            Stream<Object[]> rows = Stream.of(
+                    new Object[] { books.get(0), reviews.get(1) }, new Object[] { books.get(0), reviews.get(0) },
+                    new Object[] { books.get(1), noReview }, new Object[] { books.get(2), reviews.get(2) });
+            Mockito.when(bookRepo.streamAllWithReviews()).thenReturn(rows);
+            var streamed = new LinkedHashMap<Book, List<Review>>();
             // when
-            var result = gatewayRepo.addReview(book.getId(), newReview);
+            gatewayRepo.forEachBookWithReviews(streamed::put);
             // then
-            assertEquals(newReview, result);
+            assertEquals(List.of(books.get(0), books.get(1), books.get(2)), new ArrayList<>(streamed.keySet()));
+            assertEquals(reviews.subList(0, 2), streamed.get(books.get(0)));
+            assertTrue(streamed.get(books.get(1)).isEmpty());
+            assertEquals(List.of(reviews.get(2)), streamed.get(books.get(2)));
+        }
+
+        @Test
+        @DisplayName("When there are no books, should not call the action")
+        void forEachBookWithReviews_noBooks() {
+            Mockito.when(bookRepo.streamAllWithReviews()).thenReturn(Stream.empty());
+            gatewayRepo.forEachBookWithReviews((book, reviews) -> fail("no book expected"));
+        }
+
+    }
+
+    @Nested
+    class AddReviewsTests {
+
+        @Test
+        @DisplayName("When adding reviews of many books, should insert them all at once referencing their books")
+        @SuppressWarnings("unchecked")
+        void addReviews() {
+            // given
+            Mockito.when(bookRepo.getReferenceById(Mockito.anyInt()))
+                    .thenAnswer(invocation -> new BookEntity(invocation.getArgument(0), null, null, null, null));
+            ArgumentCaptor<List<ReviewEntity>> captor = ArgumentCaptor.forClass(List.class);
+            // when
+            gatewayRepo.addReviews(Map.of(1, List.of("a", "b"), 2, List.of("c")));
+            // then
+            Mockito.verify(reviewRepo).insertAll(captor.capture());
+            var inserted = captor.getValue();
+            assertEquals(3, inserted.size());
+            assertEquals(List.of("a", "b"), inserted.stream().filter(r -> r.getBook().getId() == 1).map(ReviewEntity::getText).toList());
+            assertTrue(inserted.stream().allMatch(r -> r.getId() == null && r.getCreatedAt() != null));
+        }
+
+    }
+
+    @Nested
+    class FindReviewsOfBooksTests {
+
+        @Test
+        @DisplayName("When there are no books, should not query reviews")
+        void findReviewsOfBooks_noBooks() {
+            assertTrue(gatewayRepo.findReviewsOfBooks(List.of(), 10).isEmpty());
+            Mockito.verifyNoInteractions(reviewRepo);
+        }
+
+        @Test
+        @DisplayName("When books have reviews, should group them by book")
+        void findReviewsOfBooks() {
+            // given
+            var rows = List.of(bookReview(1, 10L, "a"), bookReview(1, 11L, "b"), bookReview(2, 12L, "c"));
+            Mockito.when(reviewRepo.findFirstByBookIds(List.of(1, 2, 3), 10)).thenReturn(rows);
+            // when
+            var result = gatewayRepo.findReviewsOfBooks(List.of(1, 2, 3), 10);
+            // then
+            assertEquals(List.of("a", "b"), result.get(1).stream().map(Review::getText).toList());
+            assertEquals(List.of("c"), result.get(2).stream().map(Review::getText).toList());
+            assertNull(result.get(3));
+        }
+
+        private ReviewRepository.BookReview bookReview(Integer bookId, Long id, String text) {
+            var row = Mockito.mock(ReviewRepository.BookReview.class);
+            Mockito.when(row.getBookId()).thenReturn(bookId);
+            Mockito.when(row.getId()).thenReturn(id);
+            Mockito.when(row.getText()).thenReturn(text);
+            return row;
+        }
+
+    }
+
+    @Nested
+    class AddReviewOfBookTests {
+
+        @Test
+        @DisplayName("When book does not exist, should return empty result")
+        void addReview_notFound() {
+            Mockito.when(reviewRepo.insertReview(Mockito.anyInt(), Mockito.anyString())).thenReturn(0);
+            var result = gatewayRepo.addReview(1, "New Review");
+            assertTrue(result.isEmpty());
         }
 
         @Test
         @DisplayName("When new review Should return result")
         void addReview_newReview() {
             // given
-            var book = TestHelper.getBookEntityMock();
-            var reviews = TestHelper.getReviewsMock();
-            book.setReviews(reviews);
             var newReview = "New Review";
-            Mockito.when(bookRepo.findById(Mockito.anyInt())).thenReturn(Optional.of(book));
+            Mockito.when(reviewRepo.insertReview(Mockito.anyInt(), Mockito.anyString())).thenReturn(1);
             // when
-            var result = gatewayRepo.addReview(book.getId(), newReview);
+            var result = gatewayRepo.addReview(1, newReview);
             // then
-            assertEquals(newReview, result);
+            assertEquals(newReview, result.get());
+            Mockito.verify(bookRepo, Mockito.never()).findById(Mockito.anyInt());
         }
 
     }
 
-}
\ No newline at end of file
+}
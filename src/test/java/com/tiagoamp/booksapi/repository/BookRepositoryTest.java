@@ -1,19 +1,40 @@
 package com.tiagoamp.booksapi.repository;
 
 import com.tiagoamp.booksapi.TestHelper;
+import com.tiagoamp.booksapi.model.Book;
+import com.tiagoamp.booksapi.model.BookCursor;
+import com.tiagoamp.booksapi.model.BookFilter;
+import com.tiagoamp.booksapi.model.Review;
+import com.tiagoamp.booksapi.service.UserService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.data.domain.Sort;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 @DataJpaTest
+@Import(CacheConfiguration.class)
 class BookRepositoryTest {
 
     @Autowired
@@ -22,6 +43,9 @@ class BookRepositoryTest {
     @Autowired
     private BookRepository repo; // class under test
 
+    @MockBean
+    private UserService userService;  // required by application runner
+
 
     @Nested
     @DisplayName("Find by Book Title")
@@ -57,4 +81,307 @@ class BookRepositoryTest {
 
     }
 
-}
\ No newline at end of file
+
+    @Nested
+    @DisplayName("Title uniqueness")
+    class TitleUniquenessTest {
+
+        @Test
+        @DisplayName("When saving a book with a registered title, should reject it")
+        void save_duplicatedTitle() {
+            // given
+            BookEntity book = TestHelper.getBooksEntityWithNoIdMock().get(0);
+            repo.saveAndFlush(book);
+            BookEntity duplicated = new BookEntity(null, book.getTitle(), "other", 2000, "other");
+            // when / then
+            var violation = assertThrows(DataIntegrityViolationException.class, () -> repo.saveAndFlush(duplicated));
+            assertTrue(BookGatewayRepository.violatesUniqueTitle(violation));  // told by the constraint name
+        }
+
+    }
+
+    @Nested
+    @DisplayName("Bulk insert")
+    class InsertAllTest {
+
+        @Test
+        @DisplayName("When inserting new books, should assign ids and find them by titles in one query")
+        void insertAll() {
+            // given
+            List<BookEntity> books = new ArrayList<>();
+            for (int i = 0; i < 120; i++)  // more than one JDBC batch
+                books.add(new BookEntity(null, "Bulk title " + i, "English", 2000, "Author"));
+            // when
+            List<BookEntity> inserted = repo.insertAll(books);
+            var titles = inserted.stream().map(BookEntity::getTitle).toList();
+            List<BookRepository.BookTitle> found = repo.findByTitleIn(titles);
+            // then
+            assertTrue(inserted.stream().allMatch(b -> b.getId() != null));
+            assertEquals(books.size(), inserted.stream().map(BookEntity::getId).distinct().count());
+            assertEquals(books.size(), found.size());
+            assertFalse(em.getEntityManager().contains(inserted.get(0)));  // detached after each batch
+        }
+
+    }
+
+    @Nested
+    @DisplayName("Find all after cursor")
+    class FindAllAfterTest {
+
+        @ParameterizedTest
+        @CsvSource({"title,ASC", "title,DESC", "yearOfPublication,ASC", "yearOfPublication,DESC", "authors,ASC", "id,DESC"})
+        @DisplayName("When walking pages by cursor, should return every book once in sort order")
+        void findAll_keysetPages(String sortField, String direction) {
+            // given
+            List<BookEntity> books = TestHelper.getBooksEntityWithNoIdMock();
+            books.get(0).setYearOfPublication(null);  // nulls must be positioned as the database sorts them
+            books.get(1).setAuthors(null);
+            books.forEach(b -> em.persist(b));
+            books.forEach(b -> em.persist(new BookEntity(null, b.getTitle() + " copy", b.getLanguage(),
+                    b.getYearOfPublication(), b.getAuthors())));  // duplicated sort values
+            Sort sort = Sort.by(Sort.Direction.valueOf(direction), sortField, "id");
+            List<Integer> expected = repo.findAll(sort).stream().map(BookEntity::getId).toList();
+            // when
+            List<Integer> walked = new ArrayList<>();
+            BookCursor cursor = null;
+            do {
+                var page = new ArrayList<>(repo.findAll(BookSpecifications.after(cursor), sort, 0, 2));
+                var following = BookSpecifications.following(cursor);
+                if (page.size() < 2 && following != null)  // as the gateway does
+                    page.addAll(repo.findAll(following, sort, 0, 2 - page.size()));
+                page.forEach(b -> walked.add(b.getId()));
+                var last = page.isEmpty() ? null : page.get(page.size() - 1);
+                cursor = last == null ? null : BookCursor.of(new Book(last.getId(), last.getTitle(), last.getLanguage(),
+                        last.getYearOfPublication(), last.getAuthors()), sortField, direction);
+            } while (cursor != null);
+            // then
+            assertEquals(expected, walked);
+        }
+
+    }
+
+    @Nested
+    @DisplayName("Find all matching filter")
+    class FindAllMatchingTest {
+
+        @Test
+        @DisplayName("When filtering, should return and count only the books matching every criteria")
+        void findAll_matching() {
+            // given
+            em.persist(new BookEntity(null, "Title 1", "Tupi", 1899, "Machado de Assis"));
+            em.persist(new BookEntity(null, "Title 2", "Tupi", 1882, "Machado de Assis"));
+            em.persist(new BookEntity(null, "Title 3", "Tupi", 1865, "Machado de Assis"));
+            em.persist(new BookEntity(null, "Title 4", "Tupi", 1897, "Bram Stoker"));
+            em.persist(new BookEntity(null, "Title 5", "Guarani", 1890, "100% Author"));
+            var filter = BookFilter.of("Tupi", 1870, 1900, "Machado");
+            Sort sort = Sort.by("title", "id");
+            // when
+            var books = repo.findAll(BookSpecifications.matching(filter), sort, 0, 10);
+            // then
+            assertEquals(List.of("Title 1", "Title 2"), books.stream().map(BookEntity::getTitle).toList());
+            assertEquals(2, repo.count(BookSpecifications.matching(filter)));
+            assertEquals(repo.count(), repo.count(BookSpecifications.matching(BookFilter.NONE)));
+            assertEquals(1, repo.count(BookSpecifications.matching(BookFilter.of("Tupi", null, 1870, null))));
+            assertEquals(1, repo.count(BookSpecifications.matching(BookFilter.of("Guarani", null, null, "100%"))));
+            assertEquals(0, repo.count(BookSpecifications.matching(BookFilter.of("Guarani", null, null, "1_0"))));  // not a wildcard
+        }
+
+        @Test
+        @DisplayName("When filtering by author, should match a surname or a co-author, not the middle of a word")
+        void findAll_matchingAuthorWords() {
+            // given
+            em.persist(new BookEntity(null, "Title 1", "English", 1818, "Ann Radclyffe"));
+            em.persist(new BookEntity(null, "Title 2", "Portuguese", 1899, "Joaquim de Quintais"));
+            em.persist(new BookEntity(null, "Title 3", "English", 1901, "Ann Radclyffe, Bram Stokesley"));
+            em.persist(new BookEntity(null, "Title 4", "English", 1902, "Arthur Doylan,H. G. Wellsby"));
+            Sort sort = Sort.by("title", "id");
+            // when
+            var bySurname = repo.findAll(BookSpecifications.matching(BookFilter.of(null, null, null, "Radclyffe")), sort, 0, 10);
+            var bySecondAuthor = repo.findAll(BookSpecifications.matching(BookFilter.of(null, null, null, "Stokesley")), sort, 0, 10);
+            // then
+            assertEquals(List.of("Title 1", "Title 3"), bySurname.stream().map(BookEntity::getTitle).toList());
+            assertEquals(List.of("Title 3"), bySecondAuthor.stream().map(BookEntity::getTitle).toList());
+            assertEquals(1, repo.count(BookSpecifications.matching(BookFilter.of(null, null, null, "quintais"))));  // case insensitive
+            assertEquals(1, repo.count(BookSpecifications.matching(BookFilter.of(null, null, null, "H. G."))));  // after a bare comma
+            assertEquals(0, repo.count(BookSpecifications.matching(BookFilter.of(null, null, null, "adclyffe"))));  // not inside a word
+        }
+
+        @Test
+        @DisplayName("When the authors of a book are changed, should match its new authors only")
+        void findAll_matchingUpdatedAuthors() {
+            // given
+            var book = em.persist(new BookEntity(null, "Title 1", "English", 1818, "Ann Radclyffe"));
+            em.flush();
+            // when
+            book.setAuthors("Ann Radclyffe, Bram Stokesley");
+            em.flush();
+            book.setAuthors("Bram Stokesley");
+            em.flush();
+            // then
+            assertEquals(0, repo.count(BookSpecifications.matching(BookFilter.of(null, null, null, "Radclyffe"))));
+            assertEquals(1, repo.count(BookSpecifications.matching(BookFilter.of(null, null, null, "Bram Stokes"))));
+            assertEquals(0, repo.count(BookSpecifications.matching(BookFilter.of(null, null, null, "Ann Stokes"))));  // every word must match
+        }
+
+    }
+
+
+    @Nested
+    @DisplayName("Delete")
+    class DeleteTest {
+
+        @Test
+        @DisplayName("When deleting a book with reviews, should delete it and let the database delete its reviews")
+        void delete() {
+            // given
+            BookEntity book = TestHelper.getBooksEntityWithNoIdMock().get(0);
+            em.persist(book);
+            TestHelper.getReviewsMock().forEach(r -> em.persist(new ReviewEntity(null, book, r, LocalDateTime.now())));
+            em.flush();
+            em.clear();
+            // when
+            repo.delete(repo.findById(book.getId()).get());
+            repo.flush();
+            // then
+            assertTrue(repo.findById(book.getId()).isEmpty());
+            assertEquals(0L, em.getEntityManager()
+                    .createQuery("select count(r) from ReviewEntity r where r.book.id = :id", Long.class)
+                    .setParameter("id", book.getId()).getSingleResult());
+        }
+
+    }
+
+    @Nested
+    @DisplayName("Stream All")
+    class StreamAllTest {
+
+        @Test
+        @DisplayName("When streaming, should return every book ordered by id as unmanaged values")
+        void streamAll() {
+            // given
+            var books = TestHelper.getBooksEntityWithNoIdMock();
+            books.forEach(em::persist);
+            em.flush();
+            // when
+            List<Book> result;
+            try (Stream<Book> stream = repo.streamAll()) {
+                result = stream.toList();
+            }
+            // then
+            var ids = result.stream().map(Book::getId).toList();
+            assertEquals(ids.stream().sorted().toList(), ids);
+            assertTrue(ids.containsAll(books.stream().map(BookEntity::getId).toList()));
+            var first = result.stream().filter(b -> b.getId().equals(books.get(0).getId())).findFirst().get();
+            assertEquals(books.get(0).getTitle(), first.getTitle());
+            assertEquals(books.get(0).getVersion(), first.getVersion());
+        }
+
+        @Test
+        @DisplayName("When streaming with reviews, should return one row per review and one row for books without reviews")
+        void streamAllWithReviews() {
+            // given
+            var books = TestHelper.getBooksEntityWithNoIdMock();
+            books.forEach(em::persist);
+            var reviews = TestHelper.getReviewsMock();
+            reviews.forEach(r -> em.persist(new ReviewEntity(null, books.get(0), r, LocalDateTime.now())));
+            em.flush();
+            // when
+            List<Object[]> rows;
+            try (Stream<Object[]> stream = repo.streamAllWithReviews()) {
+                rows = stream.filter(row -> ((Book) row[0]).getId().equals(books.get(0).getId())
+                        || ((Book) row[0]).getId().equals(books.get(1).getId())).toList();
+            }
+            // then
+            assertEquals(reviews.size() + 1, rows.size());
+            assertEquals(reviews, rows.subList(0, reviews.size()).stream().map(row -> ((Review) row[1]).getText()).toList());
+            var lastRow = rows.get(reviews.size());
+            assertEquals(books.get(1).getId(), ((Book) lastRow[0]).getId());
+            assertTrue(lastRow[1] == null || ((Review) lastRow[1]).getId() == null);
+        }
+
+    }
+
+    @Nested
+    @DisplayName("Version")
+    class VersionTest {
+
+        @Test
+        @DisplayName("When updating a book, should increment its version and last modification time")
+        void update_versioned() {
+            // given
+            BookEntity book = TestHelper.getBooksEntityWithNoIdMock().get(0);
+            em.persistAndFlush(book);
+            var created = book.getLastModified();
+            assertEquals(0, book.getVersion());
+            assertNotNull(created);
+            // when
+            book.setTitle("Updated title");
+            em.flush();
+            // then
+            assertEquals(1, book.getVersion());
+            assertFalse(book.getLastModified().isBefore(created));
+        }
+
+        @Test
+        @DisplayName("When updating a book modified by someone else, should fail")
+        void update_stale() {
+            // given
+            BookEntity book = TestHelper.getBooksEntityWithNoIdMock().get(0);
+            em.persistAndFlush(book);
+            em.detach(book);
+            repo.findById(book.getId()).get().setTitle("Concurrent title");
+            repo.flush();
+            // when
+            book.setTitle("Stale title");
+            // then
+            assertThrows(ObjectOptimisticLockingFailureException.class, () -> repo.saveAndFlush(book));
+        }
+
+    }
+
+    @Nested
+    @DisplayName("Second-level cache")
+    class SecondLevelCacheTest {
+
+        @Autowired
+        private EntityManagerFactory emf;
+
+        @Test
+        @Transactional(propagation = Propagation.NOT_SUPPORTED)  // cache entries are written when transactions complete
+        @DisplayName("When a book was already loaded, should find it again without querying the database")
+        void findById_cached() {
+            // given
+            BookEntity book = repo.save(TestHelper.getBooksEntityWithNoIdMock().get(0));
+            Statistics stats = emf.unwrap(SessionFactory.class).getStatistics();
+            stats.clear();
+            try {
+                // when
+                Optional<BookEntity> result = repo.findById(book.getId());
+                // then
+                assertTrue(result.isPresent());
+                assertEquals(1, stats.getSecondLevelCacheHitCount());
+                assertEquals(0, stats.getEntityLoadCount());
+            } finally {
+                repo.delete(book);
+            }
+        }
+
+        @Test
+        @Transactional(propagation = Propagation.NOT_SUPPORTED)
+        @DisplayName("When a cached book was deleted, should not find it anymore")
+        void delete_evicted() {
+            // given
+            BookEntity book = repo.save(TestHelper.getBooksEntityWithNoIdMock().get(0));
+            repo.findById(book.getId());
+            Statistics stats = emf.unwrap(SessionFactory.class).getStatistics();
+            // when
+            repo.delete(book);
+            stats.clear();
+            // then
+            assertTrue(repo.findById(book.getId()).isEmpty());
+            assertEquals(0, stats.getSecondLevelCacheHitCount());
+        }
+
+    }
+
+}
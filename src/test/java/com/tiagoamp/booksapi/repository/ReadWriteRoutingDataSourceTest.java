@@ -0,0 +1,102 @@
+package com.tiagoamp.booksapi.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReadWriteRoutingDataSourceTest {
+
+    private static final Duration WINDOW = Duration.ofMillis(200);
+
+    private JdbcTemplate jdbc;  // runs statements through the class under test
+
+
+    @BeforeEach
+    void setUp() {
+        // two local H2 databases stand for the primary and the replica, each one tells its name
+        var routing = new ReadWriteRoutingDataSource(node("primary"), node("replica"), WINDOW);
+        routing.afterPropertiesSet();
+        jdbc = new JdbcTemplate(routing);
+    }
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        TransactionSynchronizationManager.setActualTransactionActive(false);
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    @DisplayName("When transaction is not read-only, should use the primary")
+    void write_primary() {
+        assertEquals("primary", currentNode(false));
+    }
+
+    @Test
+    @DisplayName("When transaction is read-only, should use the replica")
+    void read_replica() {
+        assertEquals("replica", currentNode(true));
+        authenticate("reader@books.com");
+        assertEquals("replica", currentNode(true));
+    }
+
+    @Test
+    @DisplayName("When client wrote recently, should read from the primary until the window ends")
+    void readAfterWrite_primary() throws InterruptedException {
+        authenticate("writer@books.com");
+        currentNode(false);
+        assertEquals("primary", currentNode(true));
+        authenticate("reader@books.com");
+        assertEquals("replica", currentNode(true));  // other clients are not affected
+        authenticate("writer@books.com");
+        Thread.sleep(WINDOW.toMillis() * 2);
+        assertEquals("replica", currentNode(true));
+    }
+
+    @Test
+    @DisplayName("When reading outside of a transaction, should use the primary without pinning the client to it")
+    void readWithoutTransaction_primaryNotPinned() {
+        authenticate("reader@books.com");
+        assertEquals("primary", currentNodeWithoutTransaction());
+        assertEquals("replica", currentNode(true));
+    }
+
+
+    private String currentNode(boolean readOnly) {
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(readOnly);
+        return jdbc.queryForObject("SELECT NAME FROM NODE", String.class);
+    }
+
+    private String currentNodeWithoutTransaction() {
+        TransactionSynchronizationManager.setActualTransactionActive(false);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        return jdbc.queryForObject("SELECT NAME FROM NODE", String.class);
+    }
+
+    private void authenticate(String email) {
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(email, null, List.of()));
+    }
+
+    private DataSource node(String name) {
+        var dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + name + "-routing-test;DB_CLOSE_DELAY=-1");
+        var nodeJdbc = new JdbcTemplate(dataSource);
+        nodeJdbc.execute("CREATE TABLE IF NOT EXISTS NODE (NAME VARCHAR(20))");
+        nodeJdbc.update("DELETE FROM NODE");
+        nodeJdbc.update("INSERT INTO NODE (NAME) VALUES (?)", name);
+        return dataSource;
+    }
+
+}
@@ -0,0 +1,189 @@
+package com.tiagoamp.booksapi.repository;
+
+import com.tiagoamp.booksapi.service.BooksService;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Datasources used by whole requests, through the lazy connection proxy, the transactions of the services
+ * and the entity managers of the requests
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class ReadWriteRoutingIntegrationTest {
+
+    private static final List<String> connections = new CopyOnWriteArrayList<>();  // datasource of each connection fetched
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+
+    @BeforeEach
+    void setUp() {
+        entityManagerFactory.getCache().evictAll();  // books listed by other tests are not read again otherwise
+        connections.clear();
+    }
+
+    @Test
+    @DisplayName("When listing books, should read from the replica only")
+    void read_replica() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/books").with(user("reader@books.com").roles("USER"))
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+        assertFalse(connections.isEmpty());
+        assertTrue(connections.stream().allMatch("replica"::equals), connections.toString());
+    }
+
+    @Test
+    @DisplayName("When listing filtered books, counted along with their first page, should read from the replica only")
+    void filteredRead_replica() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/books").param("language", "English")
+                        .with(user("filter@books.com").roles("USER"))
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+        assertFalse(connections.isEmpty());
+        assertTrue(connections.stream().allMatch("replica"::equals), connections.toString());
+        assertReadsNotPinned("filter@books.com");
+    }
+
+    @Test
+    @DisplayName("When listing books with their first reviews, should read from the replica only")
+    void withReviewsRead_replica() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/books").param("include", "reviews")
+                        .with(user("reviews@books.com").roles("USER"))
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+        assertFalse(connections.isEmpty());
+        assertTrue(connections.stream().allMatch("replica"::equals), connections.toString());
+        assertReadsNotPinned("reviews@books.com");
+    }
+
+    @Test
+    @DisplayName("When registering a book, should write to the primary, then read from it for a while")
+    void write_primary() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.post("/books").with(user("writer@books.com").roles("ADMIN"))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\": \"Routing test\", \"language\": \"English\"}"))
+                .andExpect(status().isCreated());
+        assertEquals(List.of("primary"), connections);
+        connections.clear();
+        mockMvc.perform(MockMvcRequestBuilders.get("/books").with(user("writer@books.com").roles("USER"))
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+        assertFalse(connections.isEmpty());
+        assertTrue(connections.stream().allMatch("primary"::equals), connections.toString());  // reads its own writes
+    }
+
+    @Test
+    @DisplayName("When registering a registered title, should look up the registered book on the primary")
+    void titleConflict_primary() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.post("/books").with(user("conflict@books.com").roles("ADMIN"))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\": \"Frankenstein\", \"language\": \"English\"}"))
+                .andExpect(status().isBadRequest());
+        assertEquals(List.of("primary", "primary"), connections);  // the failed insert, then the lookup
+    }
+
+    @Test
+    @DisplayName("When a request reads and then writes, should read from the replica and write to the primary")
+    void readThenWrite_replicaThenPrimary() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.post("/routing-test/books/1/reviews")
+                        .with(user("reviewer@books.com").roles("ADMIN")))
+                .andExpect(status().isOk());
+        assertEquals(List.of("replica", "primary"), connections);  // a connection per transaction, none kept by the request
+    }
+
+
+    private void assertReadsNotPinned(String client) throws Exception {  // its reads did not count as writes
+        connections.clear();
+        mockMvc.perform(MockMvcRequestBuilders.get("/books").with(user(client).roles("USER"))
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+        assertTrue(connections.stream().allMatch("replica"::equals), connections.toString());
+    }
+
+
+    @TestConfiguration
+    static class RoutingTestConfig {
+
+        @Bean
+        static BeanPostProcessor recordingDataSource() {  // same pools and routing, telling which pool gives each connection
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if (!(bean instanceof LazyConnectionDataSourceProxy proxy))
+                        return bean;
+                    var targets = ((ReadWriteRoutingDataSource) proxy.getTargetDataSource()).getResolvedDataSources();
+                    var routing = new ReadWriteRoutingDataSource(
+                            recording("primary", targets.get(ReadWriteRoutingDataSource.Route.PRIMARY)),
+                            recording("replica", targets.get(ReadWriteRoutingDataSource.Route.REPLICA)),
+                            Duration.ofSeconds(5));
+                    routing.afterPropertiesSet();
+                    return new LazyConnectionDataSourceProxy(routing);
+                }
+            };
+        }
+
+        @Bean
+        ReadThenWriteController readThenWriteController(BooksService service) {
+            return new ReadThenWriteController(service);
+        }
+
+        private static DataSource recording(String name, DataSource target) {
+            return new DelegatingDataSource(target) {
+                @Override
+                public Connection getConnection() throws SQLException {
+                    connections.add(name);
+                    return super.getConnection();
+                }
+            };
+        }
+    }
+
+    @RestController
+    static class ReadThenWriteController {
+
+        private final BooksService service;
+
+        ReadThenWriteController(BooksService service) {
+            this.service = service;
+        }
+
+        @PostMapping("/routing-test/books/{id}/reviews")
+        String addReview(@PathVariable Integer id) {
+            service.findBookById(id);  // read-only transaction
+            return service.addReview(id, "Routing test");  // write transaction
+        }
+    }
+
+}
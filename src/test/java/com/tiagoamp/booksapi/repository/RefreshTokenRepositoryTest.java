@@ -0,0 +1,65 @@
+package com.tiagoamp.booksapi.repository;
+
+import com.tiagoamp.booksapi.model.AppUser;
+import com.tiagoamp.booksapi.model.RefreshToken;
+import com.tiagoamp.booksapi.model.Role;
+import com.tiagoamp.booksapi.service.UserService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@Import(CacheConfiguration.class)
+class RefreshTokenRepositoryTest {
+
+    @Autowired
+    private TestEntityManager em;
+
+    @Autowired
+    private RefreshTokenRepository repo;  // class under test
+
+    @MockBean
+    private UserService userService;  // required by application runner
+
+    private AppUser user;
+
+
+    @BeforeEach
+    void setUp() {
+        user = em.persist(new AppUser("Spock", "spock@enterprise.com", "secret", Role.ADMIN));
+    }
+
+    @Test
+    @DisplayName("When marking a token used, should succeed only the first time")
+    void markUsed() {
+        var token = em.persist(new RefreshToken("hash", "family", user, Instant.now().plusSeconds(60)));
+        assertEquals(1, repo.markUsed(token.getId()));
+        assertEquals(0, repo.markUsed(token.getId()));
+        em.clear();
+        assertTrue(repo.findByTokenHash("hash").get().isUsed());
+    }
+
+    @Test
+    @DisplayName("When deleting a family or expired tokens, should delete only those")
+    void delete() {
+        em.persist(new RefreshToken("a", "family", user, Instant.now().plusSeconds(60)));
+        em.persist(new RefreshToken("b", "family", user, Instant.now().plusSeconds(60)));
+        em.persist(new RefreshToken("c", "other", user, Instant.now().minusSeconds(60)));
+        em.persist(new RefreshToken("d", "other", user, Instant.now().plusSeconds(60)));
+        assertEquals(2, repo.deleteByFamily("family"));
+        assertEquals(1, repo.deleteExpired(user, Instant.now()));
+        assertTrue(repo.findByTokenHash("d").isPresent());
+        assertEquals(1, repo.deleteByUser(user));
+        assertEquals(0, repo.count());
+    }
+
+}
@@ -0,0 +1,176 @@
+package com.tiagoamp.booksapi.repository;
+
+import com.tiagoamp.booksapi.TestHelper;
+import com.tiagoamp.booksapi.model.Review;
+import com.tiagoamp.booksapi.service.UserService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+class ReviewRepositoryTest {
+
+    @Autowired
+    private TestEntityManager em;  // entity manager for tests
+
+    @Autowired
+    private ReviewRepository repo; // class under test
+
+    @MockBean
+    private UserService userService;  // required by application runner
+
+
+    @Nested
+    @DisplayName("Insert All")
+    class InsertAllTest {
+
+        @Test
+        @DisplayName("When inserting many reviews, should insert them all with ids and leave them detached")
+        void insertAll() {
+            // given
+            BookEntity book = TestHelper.getBooksEntityWithNoIdMock().get(0);
+            em.persistAndFlush(book);
+            var reviews = TestHelper.getReviewsMock().stream()
+                    .map(r -> new ReviewEntity(null, book, r, LocalDateTime.now())).toList();
+            // when
+            var inserted = repo.insertAll(reviews);
+            // then
+            assertTrue(inserted.stream().allMatch(r -> r.getId() != null));
+            assertFalse(em.getEntityManager().contains(inserted.get(0)));
+            try (Stream<Review> stream = repo.streamByBookId(book.getId())) {
+                assertEquals(TestHelper.getReviewsMock(), stream.map(Review::getText).toList());
+            }
+        }
+
+    }
+
+    @Nested
+    @DisplayName("Insert Review")
+    class InsertReviewTest {
+
+        @Test
+        @DisplayName("When book exists, should insert review with id and creation time")
+        void insertReview() {
+            // given
+            BookEntity book = TestHelper.getBooksEntityWithNoIdMock().get(0);
+            em.persistAndFlush(book);
+            // when
+            int inserted = repo.insertReview(book.getId(), "New Review");
+            // then
+            assertEquals(1, inserted);
+            var reviews = repo.findAll().stream().filter(r -> r.getBook().getId().equals(book.getId())).toList();
+            assertEquals(1, reviews.size());
+            assertNotNull(reviews.get(0).getId());
+            assertNotNull(reviews.get(0).getCreatedAt());
+            assertEquals("New Review", reviews.get(0).getText());
+        }
+
+        @Test
+        @DisplayName("When book does not exist, should insert nothing")
+        void insertReview_bookNotFound() {
+            assertEquals(0, repo.insertReview(-1, "New Review"));
+        }
+
+    }
+
+    @Nested
+    @DisplayName("Find Reviews by Book Id")
+    class FindByBookIdTest {
+
+        @Test
+        @DisplayName("When walking pages by cursor, should return every review once in insertion order")
+        void findByBookIdAfter() {
+            // given
+            BookEntity book = TestHelper.getBooksEntityWithNoIdMock().get(0);
+            em.persistAndFlush(book);
+            var reviews = TestHelper.getReviewsMock();
+            reviews.forEach(r -> repo.insertReview(book.getId(), r));
+            // when
+            var pageable = PageRequest.of(0, 2, Sort.by("id"));
+            Slice<Review> first = repo.findByBookIdAfter(book.getId(), 0L, pageable);
+            Slice<Review> second = repo.findByBookIdAfter(book.getId(), first.getContent().get(1).getId(), pageable);
+            // then
+            assertTrue(first.hasNext());
+            assertFalse(second.hasNext());
+            var walked = new ArrayList<>(first.getContent());
+            walked.addAll(second.getContent());
+            assertEquals(reviews, walked.stream().map(Review::getText).toList());
+        }
+
+        @Test
+        @DisplayName("When requesting a page, should return its reviews")
+        void findByBookId() {
+            // given
+            BookEntity book = TestHelper.getBooksEntityWithNoIdMock().get(0);
+            em.persistAndFlush(book);
+            var reviews = TestHelper.getReviewsMock();
+            reviews.forEach(r -> repo.insertReview(book.getId(), r));
+            // when
+            Slice<Review> page = repo.findByBookId(book.getId(), PageRequest.of(1, 2, Sort.by("id")));
+            // then
+            assertFalse(page.hasNext());
+            assertEquals(List.of(reviews.get(2)), page.getContent().stream().map(Review::getText).toList());
+        }
+
+        @Test
+        @DisplayName("When streaming, should return every review in insertion order")
+        void streamByBookId() {
+            // given
+            BookEntity book = TestHelper.getBooksEntityWithNoIdMock().get(0);
+            em.persistAndFlush(book);
+            var reviews = TestHelper.getReviewsMock();
+            reviews.forEach(r -> repo.insertReview(book.getId(), r));
+            // when
+            List<String> result;
+            try (Stream<Review> stream = repo.streamByBookId(book.getId())) {
+                result = stream.map(Review::getText).toList();
+            }
+            // then
+            assertEquals(reviews, result);
+        }
+
+    }
+
+    @Nested
+    @DisplayName("Find First Reviews by Book Ids")
+    class FindFirstByBookIdsTest {
+
+        @Test
+        @DisplayName("When books have reviews, should return at most the limit per book in one query")
+        void findFirstByBookIds() {
+            // given
+            var books = TestHelper.getBooksEntityWithNoIdMock();
+            books.forEach(em::persist);
+            em.flush();
+            var reviews = TestHelper.getReviewsMock();
+            reviews.forEach(r -> repo.insertReview(books.get(0).getId(), r));
+            repo.insertReview(books.get(1).getId(), reviews.get(0));
+            var ids = books.stream().map(BookEntity::getId).toList();
+            // when
+            var result = repo.findFirstByBookIds(ids, 2);
+            // then
+            assertEquals(3, result.size());
+            assertEquals(List.of(books.get(0).getId(), books.get(0).getId(), books.get(1).getId()),
+                    result.stream().map(ReviewRepository.BookReview::getBookId).toList());
+            assertEquals(reviews.subList(0, 2), result.subList(0, 2).stream().map(ReviewRepository.BookReview::getText).toList());
+            assertNotNull(result.get(0).getId());
+            assertNotNull(result.get(0).getCreatedAt());
+        }
+
+    }
+
+}
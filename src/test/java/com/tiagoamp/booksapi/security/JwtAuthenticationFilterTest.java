@@ -0,0 +1,96 @@
+package com.tiagoamp.booksapi.security;
+
+import com.tiagoamp.booksapi.model.AppUser;
+import com.tiagoamp.booksapi.model.Role;
+import com.tiagoamp.booksapi.service.TokenService;
+import com.tiagoamp.booksapi.service.UserService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+class JwtAuthenticationFilterTest {
+
+    @Mock
+    private UserService userService;
+
+    private final TokenService tokenService = new TokenService(new JwtKeyRing("1234567890qwertyuiop", "default", ""), 100);
+    private JwtAuthenticationFilter filter;
+    private final AppUser user = new AppUser(1, "Spock", "spock@enterprise.com", "secret", Role.ADMIN);
+
+
+    @BeforeEach
+    void setUp() {
+        filter = new JwtAuthenticationFilter(tokenService, userService);
+        ReflectionTestUtils.setField(filter, "stateless", true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    @DisplayName("When stateless, should authenticate from the token claims without loading the user")
+    void stateless_authenticated() throws Exception {
+        Mockito.when(userService.findTokenVersion(user.getEmail(), 0)).thenReturn(Optional.of(0));
+        var chain = new MockFilterChain();
+        filter.doFilter(request(tokenService.generateToken(user)), new MockHttpServletResponse(), chain);
+        assertNotNull(chain.getRequest());
+        var authentication = SecurityContextHolder.getContext().getAuthentication();
+        assertEquals(user.getEmail(), authentication.getPrincipal());
+        assertEquals(List.of("ROLE_ADMIN"), authentication.getAuthorities().stream().map(GrantedAuthority::getAuthority).toList());
+        Mockito.verify(userService, Mockito.never()).loadUserByUsername(Mockito.anyString());
+    }
+
+    @Test
+    @DisplayName("When the tokens of the user were revoked, should reject the request")
+    void stateless_revoked() throws Exception {
+        String token = tokenService.generateToken(user);
+        Mockito.when(userService.findTokenVersion(user.getEmail(), 0)).thenReturn(Optional.of(1));
+        var chain = new MockFilterChain();
+        var response = new MockHttpServletResponse();
+        filter.doFilter(request(token), response, chain);
+        assertEquals(HttpStatus.FORBIDDEN.value(), response.getStatus());
+        assertNull(chain.getRequest());
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+    }
+
+    @Test
+    @DisplayName("When not stateless, should authenticate with the authorities of the loaded user")
+    void stateful_authenticated() throws Exception {
+        ReflectionTestUtils.setField(filter, "stateless", false);
+        String token = tokenService.generateToken(user);
+        user.setRole(Role.USER);  // changed since the token was issued
+        Mockito.when(userService.loadUserByUsername(user.getEmail())).thenReturn(user);
+        filter.doFilter(request(token), new MockHttpServletResponse(), new MockFilterChain());
+        var authentication = SecurityContextHolder.getContext().getAuthentication();
+        assertEquals(List.of("ROLE_USER"), authentication.getAuthorities().stream().map(GrantedAuthority::getAuthority).toList());
+    }
+
+
+    private MockHttpServletRequest request(String token) {
+        var request = new MockHttpServletRequest("GET", "/books");
+        request.addHeader(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+        return request;
+    }
+
+}
@@ -0,0 +1,44 @@
+package com.tiagoamp.booksapi.security;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtKeyRingTest {
+
+    private final JwtKeyRing keyRing = new JwtKeyRing("current-secret", "k2", "k0=oldest-secret, k1=old=secret");
+
+
+    @Test
+    @DisplayName("When a token was signed with the current or a retired key, should verify it with the key of its id")
+    void verify_byKeyId() {
+        assertEquals("a", keyRing.verify(token("k2", "current-secret", "a")).getSubject());
+        assertEquals("b", keyRing.verify(token("k1", "old=secret", "b")).getSubject());
+        assertEquals("c", keyRing.verify(token("k0", "oldest-secret", "c")).getSubject());
+        assertEquals("d", keyRing.verify(token(null, "current-secret", "d")).getSubject());  // issued before key ids
+    }
+
+    @Test
+    @DisplayName("When the key id is unknown or does not match the signature, should reject the token")
+    void verify_rejected() {
+        assertThrows(JWTVerificationException.class, () -> keyRing.verify(token("k3", "current-secret", "a")));
+        assertThrows(JWTVerificationException.class, () -> keyRing.verify(token("k1", "current-secret", "a")));
+        assertThrows(JWTVerificationException.class, () -> keyRing.verify("not a token"));
+    }
+
+    @Test
+    @DisplayName("When retired keys are not id and secret pairs, should fail")
+    void retiredKeys_invalid() {
+        assertThrows(IllegalArgumentException.class, () -> new JwtKeyRing("secret", "k1", "k0"));
+    }
+
+
+    private String token(String keyId, String secret, String subject) {
+        return JWT.create().withKeyId(keyId).withSubject(subject).sign(Algorithm.HMAC256(secret.getBytes()));
+    }
+
+}
@@ -0,0 +1,61 @@
+package com.tiagoamp.booksapi.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.Pbkdf2PasswordEncoder;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PasswordEncoderConfigurationTest {
+
+    private final DelegatingPasswordEncoder encoder = PasswordEncoderConfiguration.delegatingEncoder(5);  // low strengths keep the test fast
+
+
+    @Test
+    @DisplayName("When encoding, should hash with BCrypt at the strength, prefixed by its id")
+    void encode() {
+        String hash = encoder.encode("secret");
+        assertTrue(hash.startsWith("{bcrypt}$2a$05$"));
+        assertTrue(encoder.matches("secret", hash));
+        assertFalse(encoder.matches("wrong", hash));
+        assertFalse(encoder.upgradeEncoding(hash));
+    }
+
+    @Test
+    @DisplayName("When hashes are stored without id, with PBKDF2 or a lower strength, should match them and need an upgrade")
+    void matches_olderHashes() {
+        String withoutId = new BCryptPasswordEncoder(4).encode("secret");
+        String pbkdf2 = "{pbkdf2}" + Pbkdf2PasswordEncoder.defaultsForSpringSecurity_v5_8().encode("secret");
+        String lowerStrength = "{bcrypt}" + new BCryptPasswordEncoder(4).encode("secret");
+        for (String hash : new String[] { withoutId, pbkdf2, lowerStrength }) {
+            assertTrue(encoder.matches("secret", hash));
+            assertTrue(encoder.upgradeEncoding(hash));
+        }
+    }
+
+    @Test
+    @DisplayName("When strength is configured, should hash at it without calibrating")
+    void passwordEncoder_configuredStrength() {
+        var registry = new SimpleMeterRegistry();
+        var configured = new PasswordEncoderConfiguration().passwordEncoder(
+                PasswordEncoderConfiguration.MIN_STRENGTH, Duration.ofHours(1), registry);  // calibrated, it would be the highest
+        assertTrue(configured.encode("secret").startsWith("{bcrypt}$2a$10$"));
+        assertEquals(PasswordEncoderConfiguration.MIN_STRENGTH, registry.get("login.password.strength").gauge().value());
+    }
+
+    @Test
+    @DisplayName("When calibrating, should pick the highest strength within the target time, within bounds")
+    void strengthFor() {
+        long measured = Duration.ofMillis(20).toNanos();  // at strength 8
+        assertEquals(11, PasswordEncoderConfiguration.strengthFor(measured, Duration.ofMillis(250)));  // 160 ms
+        assertEquals(12, PasswordEncoderConfiguration.strengthFor(measured, Duration.ofMillis(320)));
+        assertEquals(PasswordEncoderConfiguration.MIN_STRENGTH, PasswordEncoderConfiguration.strengthFor(measured, Duration.ofMillis(1)));
+        assertEquals(PasswordEncoderConfiguration.MAX_STRENGTH, PasswordEncoderConfiguration.strengthFor(measured, Duration.ofHours(1)));
+    }
+
+}
@@ -0,0 +1,71 @@
+package com.tiagoamp.booksapi.security;
+
+import com.tiagoamp.booksapi.exception.ServiceOverloadedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.BadCredentialsException;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PasswordVerificationExecutorTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final PasswordVerificationExecutor executor =
+            new PasswordVerificationExecutor(1, 1, Duration.ofSeconds(2), registry);
+
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    @DisplayName("When the verification succeeds or fails, should return its result or rethrow its exception")
+    void verify() {
+        assertEquals("ok", executor.verify(() -> "ok"));
+        assertThrows(BadCredentialsException.class, () -> executor.verify(() -> { throw new BadCredentialsException("bad"); }));
+        assertEquals(2, registry.get("login.password.hash").timer().count());
+        assertEquals(2, registry.get("login.password.wait").timer().count());
+    }
+
+    @Test
+    @DisplayName("When the thread is busy and the queue is full, should reject the verification at once")
+    void verify_overloaded() throws Exception {
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var running = CompletableFuture.supplyAsync(() -> executor.verify(() -> {
+            started.countDown();
+            return await(release);
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        var queued = CompletableFuture.supplyAsync(() -> executor.verify(() -> "queued"));
+        while (registry.get("login.password.queue").gauge().value() < 1)
+            Thread.onSpinWait();
+
+        var ex = assertThrows(ServiceOverloadedException.class, () -> executor.verify(() -> "rejected"));
+        assertEquals(Duration.ofSeconds(2), ex.getRetryAfter());
+        assertEquals(1, registry.get("login.password.rejected").counter().count());
+
+        release.countDown();
+        assertEquals("released", running.get(5, TimeUnit.SECONDS));
+        assertEquals("queued", queued.get(5, TimeUnit.SECONDS));
+    }
+
+
+    private static String await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+            return "released";
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
@@ -0,0 +1,163 @@
+package com.tiagoamp.booksapi.service;
+
+import com.tiagoamp.booksapi.exception.AuthenticationFailedException;
+import com.tiagoamp.booksapi.exception.ServiceOverloadedException;
+import com.tiagoamp.booksapi.model.AppUser;
+import com.tiagoamp.booksapi.model.RefreshToken;
+import com.tiagoamp.booksapi.model.Role;
+import com.tiagoamp.booksapi.repository.RefreshTokenRepository;
+import com.tiagoamp.booksapi.security.PasswordVerificationExecutor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+class AuthenticationServiceTest {
+
+    @Mock
+    private AuthenticationManager authenticationManager;
+
+    @Mock
+    private TokenService tokenService;
+
+    @Mock
+    private RefreshTokenRepository refreshTokenRepo;
+
+    @Spy
+    private PasswordVerificationExecutor passwordVerifier =
+            new PasswordVerificationExecutor(1, 1, Duration.ofSeconds(1), new SimpleMeterRegistry());
+
+    @InjectMocks
+    private AuthenticationService service;
+
+    private final AppUser user = new AppUser(1, "Spock", "spock@enterprise.com", "secret", Role.ADMIN);
+
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(service, "refreshTokenTimeToLive", Duration.ofDays(7));
+    }
+
+    @Nested
+    class AuthenticateTests {
+
+        @Test
+        @DisplayName("When credentials are valid, should issue an access token and a refresh token of a new family")
+        void authenticate() {
+            Mockito.when(authenticationManager.authenticate(Mockito.any()))
+                    .thenReturn(new UsernamePasswordAuthenticationToken(user, null));
+            Mockito.when(tokenService.generateToken(user)).thenReturn("access");
+            Mockito.when(tokenService.generateRefreshToken()).thenReturn("refresh");
+            Mockito.when(tokenService.hashOf("refresh")).thenReturn("hash");
+            var tokens = service.authenticate(user.getEmail(), "secret");
+            assertEquals("access", tokens.getAccessToken());
+            assertEquals("refresh", tokens.getRefreshToken());
+            var saved = ArgumentCaptor.forClass(RefreshToken.class);
+            Mockito.verify(refreshTokenRepo).save(saved.capture());
+            assertEquals("hash", saved.getValue().getTokenHash());
+            assertNotNull(saved.getValue().getFamilyId());
+            assertTrue(saved.getValue().getExpiresAt().isAfter(Instant.now().plus(Duration.ofDays(6))));
+        }
+
+        @Test
+        @DisplayName("When credentials are invalid, should throw exception without issuing tokens")
+        void authenticate_invalid() {
+            Mockito.when(authenticationManager.authenticate(Mockito.any())).thenThrow(new BadCredentialsException("bad"));
+            assertThrows(AuthenticationFailedException.class, () -> service.authenticate(user.getEmail(), "wrong"));
+            Mockito.verifyNoInteractions(refreshTokenRepo);
+        }
+
+        @Test
+        @DisplayName("When too many logins are in progress, should throw exception without checking the password")
+        void authenticate_overloaded() {
+            Mockito.doThrow(new ServiceOverloadedException("busy", Duration.ofSeconds(1)))
+                    .when(passwordVerifier).verify(Mockito.any());
+            assertThrows(ServiceOverloadedException.class, () -> service.authenticate(user.getEmail(), "secret"));
+            Mockito.verifyNoInteractions(authenticationManager, refreshTokenRepo);
+        }
+
+    }
+
+    @Nested
+    class RefreshTests {
+
+        @Test
+        @DisplayName("When the refresh token is valid, should mark it used and issue tokens in the same family")
+        void refresh() {
+            var stored = new RefreshToken(7, "hash", "family", user, Instant.now().plusSeconds(60), false);
+            Mockito.when(tokenService.hashOf("refresh")).thenReturn("hash");
+            Mockito.when(refreshTokenRepo.findByTokenHash("hash")).thenReturn(Optional.of(stored));
+            Mockito.when(refreshTokenRepo.markUsed(7)).thenReturn(1);
+            Mockito.when(tokenService.generateToken(user)).thenReturn("access");
+            Mockito.when(tokenService.generateRefreshToken()).thenReturn("next");
+            Mockito.when(tokenService.hashOf("next")).thenReturn("next-hash");
+            var tokens = service.refresh("refresh");
+            assertEquals("access", tokens.getAccessToken());
+            assertEquals("next", tokens.getRefreshToken());
+            var saved = ArgumentCaptor.forClass(RefreshToken.class);
+            Mockito.verify(refreshTokenRepo).save(saved.capture());
+            assertEquals("family", saved.getValue().getFamilyId());
+            Mockito.verify(refreshTokenRepo).deleteExpired(Mockito.eq(user), Mockito.any());
+            Mockito.verifyNoInteractions(authenticationManager);
+        }
+
+        @Test
+        @DisplayName("When a used refresh token is presented again, should revoke its family")
+        void refresh_reused() {
+            var stored = new RefreshToken(7, "hash", "family", user, Instant.now().plusSeconds(60), true);
+            Mockito.when(tokenService.hashOf("refresh")).thenReturn("hash");
+            Mockito.when(refreshTokenRepo.findByTokenHash("hash")).thenReturn(Optional.of(stored));
+            assertThrows(AuthenticationFailedException.class, () -> service.refresh("refresh"));
+            Mockito.verify(refreshTokenRepo).deleteByFamily("family");
+            Mockito.verify(refreshTokenRepo, Mockito.never()).save(Mockito.any());
+        }
+
+        @Test
+        @DisplayName("When the refresh token was used concurrently, should revoke its family")
+        void refresh_concurrentlyUsed() {
+            var stored = new RefreshToken(7, "hash", "family", user, Instant.now().plusSeconds(60), false);
+            Mockito.when(tokenService.hashOf("refresh")).thenReturn("hash");
+            Mockito.when(refreshTokenRepo.findByTokenHash("hash")).thenReturn(Optional.of(stored));
+            Mockito.when(refreshTokenRepo.markUsed(7)).thenReturn(0);
+            assertThrows(AuthenticationFailedException.class, () -> service.refresh("refresh"));
+            Mockito.verify(refreshTokenRepo).deleteByFamily("family");
+        }
+
+        @Test
+        @DisplayName("When the refresh token is unknown or expired, should throw exception without marking it used")
+        void refresh_invalid() {
+            var expired = new RefreshToken(7, "hash", "family", user, Instant.now().minusSeconds(1), false);
+            Mockito.when(tokenService.hashOf(Mockito.anyString())).thenAnswer(i -> i.getArgument(0));
+            Mockito.when(refreshTokenRepo.findByTokenHash("unknown")).thenReturn(Optional.empty());
+            Mockito.when(refreshTokenRepo.findByTokenHash("hash")).thenReturn(Optional.of(expired));
+            assertThrows(AuthenticationFailedException.class, () -> service.refresh("unknown"));
+            var ex = assertThrows(AuthenticationFailedException.class, () -> service.refresh("hash"));
+            assertEquals("Invalid refresh token", ex.getMessage());
+            Mockito.verify(refreshTokenRepo).deleteExpired(Mockito.eq(user), Mockito.any());  // the expired one included
+            Mockito.verify(refreshTokenRepo, Mockito.never()).markUsed(Mockito.anyInt());
+            Mockito.verify(refreshTokenRepo, Mockito.never()).deleteByFamily(Mockito.anyString());
+            Mockito.verify(refreshTokenRepo, Mockito.never()).save(Mockito.any());
+        }
+
+    }
+
+}
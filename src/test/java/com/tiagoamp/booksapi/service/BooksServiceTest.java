@@ -1,10 +1,22 @@
 package com.tiagoamp.booksapi.service;
 
 import com.tiagoamp.booksapi.TestHelper;
+import com.tiagoamp.booksapi.exception.ConcurrentUpdateException;
+import com.tiagoamp.booksapi.exception.InvalidCursorException;
+import com.tiagoamp.booksapi.exception.PreconditionFailedException;
 import com.tiagoamp.booksapi.exception.ResourceAlreadyExistsException;
 import com.tiagoamp.booksapi.exception.ResourceNotFoundException;
 import com.tiagoamp.booksapi.model.Book;
+import com.tiagoamp.booksapi.model.BookCursor;
+import com.tiagoamp.booksapi.model.BookFilter;
+import com.tiagoamp.booksapi.model.CursorPage;
+import com.tiagoamp.booksapi.model.ItemResult;
+import com.tiagoamp.booksapi.model.Review;
+import com.tiagoamp.booksapi.model.ReviewCursor;
 import com.tiagoamp.booksapi.repository.BookGatewayRepository;
+import com.tiagoamp.booksapi.util.BookResponseCache;
+import com.tiagoamp.booksapi.util.BookSearchIndex;
+import com.tiagoamp.booksapi.util.BookTitleTrie;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
@@ -13,10 +25,15 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.BiConsumer;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -26,6 +43,15 @@ class BooksServiceTest {
     @Mock
     private BookGatewayRepository repo;
 
+    @Mock
+    private BookResponseCache responseCache;
+
+    @Mock
+    private BookSearchIndex searchIndex;
+
+    @Mock
+    private BookTitleTrie titleTrie;
+
     @InjectMocks
     private BooksService service;
 
@@ -36,11 +62,11 @@ class BooksServiceTest {
         @Test
         @DisplayName("When no books registered, should return empty list")
         void findAllBooks_emptyList() {
-            Mockito.when(repo.findAll(Mockito.anyInt(), Mockito.anyInt(), Mockito.anyString(), Mockito.anyString()))
-                    .thenReturn(new ArrayList<>());
-            List<Book> result = service.findBooks(10, 0, "title", "ASC");
+            Mockito.when(repo.findAll(Mockito.anyInt(), Mockito.anyInt(), Mockito.anyString(), Mockito.anyString(), Mockito.any()))
+                    .thenReturn(new CursorPage<>(new ArrayList<>(), null));
+            CursorPage<Book> result = service.findBooks(10, 0, "title", "ASC", BookFilter.NONE);
             assertNotNull(result);
-            assertTrue(result.isEmpty());
+            assertTrue(result.getItems().isEmpty());
         }
 
         @Test
@@ -48,13 +74,51 @@ class BooksServiceTest {
         void findAllBooks_resultList() {
             // given
             var books = TestHelper.getBooksMock();
-            Mockito.when(repo.findAll(Mockito.anyInt(), Mockito.anyInt(), Mockito.anyString(), Mockito.anyString()))
-                    .thenReturn(books);
+            Mockito.when(repo.findAll(Mockito.anyInt(), Mockito.anyInt(), Mockito.anyString(), Mockito.anyString(), Mockito.any()))
+                    .thenReturn(new CursorPage<>(books, null));
             // when
-            List<Book> result = service.findBooks(10, 0, "title", "ASC");
+            CursorPage<Book> result = service.findBooks(10, 0, "title", "ASC", BookFilter.NONE);
             // then
-            assertFalse(result.isEmpty());
-            assertEquals(books.size(), result.size());
+            assertFalse(result.getItems().isEmpty());
+            assertEquals(books.size(), result.getItems().size());
+        }
+
+    }
+
+    @Nested
+    class FindAllAfterTests {
+
+        @Test
+        @DisplayName("When cursor is empty, should fetch first page")
+        void findBooksAfter_firstPage() {
+            var books = TestHelper.getBooksMock();
+            Mockito.when(repo.findAll(10, (BookCursor) null, "title", "ASC", BookFilter.NONE)).thenReturn(new CursorPage<>(books, null));
+            CursorPage<Book> result = service.findBooks(10, "", "title", "ASC", BookFilter.NONE);
+            assertEquals(books.size(), result.getItems().size());
+        }
+
+        @Test
+        @DisplayName("When page size is too large, should bound it")
+        void findBooksAfter_boundedSize() {
+            Mockito.when(repo.findAll(BooksService.MAX_BOOKS_PAGE_SIZE, (BookCursor) null, "title", "ASC", BookFilter.NONE))
+                    .thenReturn(new CursorPage<>(new ArrayList<>(), null));
+            assertDoesNotThrow(() -> service.findBooks(1_000_000, "", "title", "ASC", BookFilter.NONE));
+            Mockito.when(repo.findAll(BooksService.MAX_BOOKS_PAGE_SIZE, 0, "title", "ASC", BookFilter.NONE))
+                    .thenReturn(new CursorPage<>(new ArrayList<>(), null));
+            assertDoesNotThrow(() -> service.findBooks(1_000_000, 0, "title", "ASC", BookFilter.NONE));
+        }
+
+        @Test
+        @DisplayName("When cursor was issued for another sort, should throw exception")
+        void findBooksAfter_sortMismatch() {
+            var cursor = BookCursor.of(TestHelper.getBookMock(), "title", "ASC").encode();
+            assertThrows(InvalidCursorException.class, () -> service.findBooks(10, cursor, "title", "DESC", BookFilter.NONE));
+        }
+
+        @Test
+        @DisplayName("When sort field is not supported, should throw exception")
+        void findBooksAfter_invalidSortField() {
+            assertThrows(InvalidCursorException.class, () -> service.findBooks(10, "", "reviews", "ASC", BookFilter.NONE));
         }
 
     }
@@ -90,21 +154,194 @@ class BooksServiceTest {
         @DisplayName("When book already registered, should throw exception")
         void createBook_exception() {
             var book = TestHelper.getBookMock();
-            Mockito.when(repo.findBookByTitle(Mockito.anyString())).thenReturn(Optional.of(book));
-            assertThrows(ResourceAlreadyExistsException.class, () -> service.createBook(book));
+            var registered = new Book(7, book.getTitle(), "lang", 2000, "author");
+            Mockito.when(repo.save(Mockito.any(Book.class))).thenThrow(new DataIntegrityViolationException("UK_BOOKS_TITLE"));
+            Mockito.when(repo.findBookByTitle(book.getTitle())).thenReturn(Optional.of(registered));
+            var exception = assertThrows(ResourceAlreadyExistsException.class, () -> service.createBook(book));
+            assertTrue(exception.getMessage().contains("'7'"));
         }
 
         @Test
-        @DisplayName("When book not registered, should insert book")
+        @DisplayName("When title constraint is violated by a book not readable, should throw exception without its id")
+        void createBook_titleConflictNotReadable() {
+            var book = TestHelper.getBookMock();
+            Mockito.when(repo.save(Mockito.any(Book.class))).thenThrow(new DataIntegrityViolationException("UK_BOOKS_TITLE"));
+            Mockito.when(repo.findBookByTitle(book.getTitle())).thenReturn(Optional.empty());
+            var exception = assertThrows(ResourceAlreadyExistsException.class, () -> service.createBook(book));
+            assertEquals("Resource 'Book' already registered", exception.getMessage());
+        }
+
+        @Test
+        @DisplayName("When another constraint is violated, should propagate the violation")
+        void createBook_otherViolation() {
+            var book = TestHelper.getBookMock();
+            Mockito.when(repo.save(Mockito.any(Book.class))).thenThrow(new DataIntegrityViolationException("NOT NULL"));
+            Mockito.when(repo.findBookByTitle(book.getTitle())).thenReturn(Optional.empty());
+            assertThrows(DataIntegrityViolationException.class, () -> service.createBook(book));
+        }
+
+        @Test
+        @DisplayName("When book not registered, should insert book without looking up its title")
         void createBook() {
             // given
             var book = TestHelper.getBookMock();
-            Mockito.when(repo.findBookByTitle(Mockito.anyString())).thenReturn(Optional.empty());
             Mockito.when(repo.save(Mockito.any(Book.class))).thenReturn(book);
             // when
             Book result = service.createBook(book);
             // then
             assertEquals(book.getId(), result.getId());
+            Mockito.verify(repo, Mockito.never()).findBookByTitle(Mockito.anyString());
+            Mockito.verify(searchIndex).put(book);
+            Mockito.verify(titleTrie).put(book);
+        }
+
+    }
+
+    @Nested
+    class SearchBooksTests {
+
+        @Test
+        @DisplayName("When searching, should query the index with the offset of the page and a bounded page size")
+        void searchBooks() {
+            var hits = new BookSearchIndex.Hits(TestHelper.getBooksMock(), 3);
+            Mockito.when(searchIndex.search("query", 200, 100)).thenReturn(hits);
+            assertEquals(hits, service.searchBooks("query", 1000, 2));
+            Mockito.verifyNoInteractions(repo);
+        }
+
+        @Test
+        @DisplayName("When searching beyond the ranked results, should only count the matches, whatever the page number")
+        void searchBooks_deepPage() {
+            var hits = new BookSearchIndex.Hits(List.of(), 3);
+            Mockito.when(searchIndex.search("query", 0, 0)).thenReturn(hits);
+            assertEquals(hits, service.searchBooks("query", 100, 100));
+            assertEquals(hits, service.searchBooks("query", 100, 21474837));  // offset overflows an int
+            assertEquals(hits, service.searchBooks("query", 100, Integer.MAX_VALUE));
+        }
+
+        @Test
+        @DisplayName("When the last page reaches beyond the ranked results, should query only the ranked ones")
+        void searchBooks_lastPage() {
+            var hits = new BookSearchIndex.Hits(TestHelper.getBooksMock(), 3);
+            Mockito.when(searchIndex.search("query", 9_990, 10)).thenReturn(hits);
+            assertEquals(hits, service.searchBooks("query", 30, 333));
+        }
+
+        @Test
+        @DisplayName("When starting up, should count the books before requests are served")
+        void countBooks_startup() {
+            service.afterSingletonsInstantiated();
+            Mockito.verify(repo).loadCount();
+        }
+
+        @Test
+        @DisplayName("When indexing on startup, should index every book with the texts of its reviews")
+        void indexBooks() {
+            var book = TestHelper.getBookMock();
+            var reviews = TestHelper.getReviewModelsMock();
+            Mockito.doAnswer(invocation -> {
+                BiConsumer<Book, List<Review>> action = invocation.getArgument(0);
+                action.accept(book, reviews);
+                return null;
+            }).when(repo).forEachBookWithReviews(Mockito.any());
+            service.indexBooks();
+            Mockito.verify(searchIndex).put(book, reviews.stream().map(Review::getText).toList());
+            Mockito.verify(titleTrie).put(book);
+        }
+
+    }
+
+    @Nested
+    class SuggestTitlesTests {
+
+        @Test
+        @DisplayName("When suggesting titles, should query the trie with a bounded number of suggestions")
+        void suggestTitles() {
+            Mockito.when(titleTrie.suggest("dom", 20)).thenReturn(List.of("Dom Casmurro"));
+            assertEquals(List.of("Dom Casmurro"), service.suggestTitles("dom", 1000));
+            Mockito.verifyNoInteractions(repo);
+        }
+
+    }
+
+    @Nested
+    class CreateBooksTests {
+
+        @Test
+        @DisplayName("When some titles are registered or repeated, should insert only new titles once and keep order")
+        void createBooks() {
+            // given
+            var registered = new Book(null, "registered", "lang", 2000, "author");
+            var first = new Book(null, "new", "lang", 2000, "author");
+            var repeated = new Book(null, "new", "lang", 2001, "author");
+            Mockito.when(repo.findIdsByTitles(Set.of("registered", "new"))).thenReturn(Map.of("registered", 7));
+            Mockito.when(repo.saveAll(List.of(first))).thenReturn(List.of(new Book(8, "new", "lang", 2000, "author")));
+            // when
+            List<ItemResult<Book>> result = service.createBooks(List.of(registered, first, repeated));
+            // then
+            assertEquals(3, result.size());
+            assertInstanceOf(ResourceAlreadyExistsException.class, result.get(0).getError());
+            assertTrue(result.get(0).getError().getMessage().contains("'7'"));
+            assertTrue(result.get(1).isOk());
+            assertEquals(8, result.get(1).getItem().getId());
+            assertTrue(result.get(2).getError().getMessage().contains("'8'"));
+            Mockito.verify(repo, Mockito.never()).findBookByTitle(Mockito.anyString());
+        }
+
+        @Test
+        @DisplayName("When a title is registered concurrently, should insert books one by one and fail only its item")
+        void createBooks_concurrentTitle() {
+            // given
+            var concurrent = new Book(null, "concurrent", "lang", 2000, "author");
+            var other = new Book(null, "other", "lang", 2000, "author");
+            Mockito.when(repo.findIdsByTitles(Set.of("concurrent", "other"))).thenReturn(Map.of());
+            Mockito.when(repo.saveAll(List.of(concurrent, other))).thenThrow(new DataIntegrityViolationException("UK_BOOKS_TITLE"));
+            Mockito.when(repo.save(concurrent)).thenThrow(new DataIntegrityViolationException("UK_BOOKS_TITLE"));
+            Mockito.when(repo.findBookByTitle("concurrent")).thenReturn(Optional.of(new Book(7, "concurrent", "lang", 2000, "author")));
+            Mockito.when(repo.save(other)).thenReturn(new Book(8, "other", "lang", 2000, "author"));
+            // when
+            List<ItemResult<Book>> result = service.createBooks(List.of(concurrent, other));
+            // then
+            assertInstanceOf(ResourceAlreadyExistsException.class, result.get(0).getError());
+            assertTrue(result.get(0).getError().getMessage().contains("'7'"));
+            assertEquals(8, result.get(1).getItem().getId());
+            Mockito.verify(titleTrie).put(result.get(1).getItem());
+        }
+
+    }
+
+    @Nested
+    class ImportBooksTests {
+
+        @Test
+        @DisplayName("When importing books with reviews, should add the reviews of the registered books only")
+        void importBooks() {
+            // given
+            var registered = new Book(null, "registered", "lang", 2000, "author");
+            var first = new Book(null, "new", "lang", 2000, "author");
+            var noReviews = new Book(null, "other", "lang", 2000, "author");
+            Mockito.when(repo.findIdsByTitles(Set.of("registered", "new", "other"))).thenReturn(Map.of("registered", 7));
+            Mockito.when(repo.saveAll(List.of(first, noReviews))).thenReturn(List.of(
+                    new Book(8, "new", "lang", 2000, "author"), new Book(9, "other", "lang", 2000, "author")));
+            // when
+            var result = service.importBooks(List.of(registered, first, noReviews),
+                    List.of(List.of("ignored"), List.of("a", "b"), List.of()));
+            // then
+            assertFalse(result.get(0).isOk());
+            assertTrue(result.get(1).isOk());
+            Mockito.verify(repo).addReviews(Map.of(8, List.of("a", "b")));
+            Mockito.verify(searchIndex).addReviews(8, List.of("a", "b"));
+            Mockito.verify(searchIndex, Mockito.times(2)).put(Mockito.any(Book.class));
+        }
+
+        @Test
+        @DisplayName("When no registered book has reviews, should not add reviews")
+        void importBooks_noReviews() {
+            var book = new Book(null, "new", "lang", 2000, "author");
+            Mockito.when(repo.findIdsByTitles(Set.of("new"))).thenReturn(Map.of());
+            Mockito.when(repo.saveAll(List.of(book))).thenReturn(List.of(new Book(8, "new", "lang", 2000, "author")));
+            service.importBooks(List.of(book), List.of(List.of()));
+            Mockito.verify(repo, Mockito.never()).addReviews(Mockito.anyMap());
         }
 
     }
@@ -115,8 +352,8 @@ class BooksServiceTest {
         @Test
         @DisplayName("When book does not exist, should throw exception")
         void updateBook_exception() {
-            Mockito.when(repo.find(Mockito.anyInt())).thenReturn(Optional.empty());
-            assertThrows(ResourceNotFoundException.class, () -> service.findBookById(1));
+            Mockito.when(repo.update(Mockito.any(Book.class))).thenReturn(Optional.empty());
+            assertThrows(ResourceNotFoundException.class, () -> service.updateBook(TestHelper.getBookMock()));
         }
 
         @Test
@@ -124,12 +361,58 @@ class BooksServiceTest {
         void updateBook() {
             // given
             var book = TestHelper.getBookMock();
-            Mockito.when(repo.find(Mockito.anyInt())).thenReturn(Optional.of(book));
-            Mockito.when(repo.update(Mockito.any(Book.class))).thenReturn(book);
+            Mockito.when(repo.update(Mockito.any(Book.class))).thenReturn(Optional.of(book));
             // when
             Book result = service.updateBook(book);
             // then
             assertEquals(book.getId(), result.getId());
+            Mockito.verify(repo, Mockito.never()).find(Mockito.anyInt());
+            Mockito.verify(responseCache).evict(book.getId(), book.getVersion());
+            Mockito.verify(searchIndex).put(book);
+            Mockito.verify(titleTrie).put(book);
+        }
+
+        @Test
+        @DisplayName("When title belongs to another book, should throw exception")
+        void updateBook_titleConflict() {
+            var book = TestHelper.getBookMock();
+            Mockito.when(repo.update(book)).thenThrow(new DataIntegrityViolationException("UK_BOOKS_TITLE"));
+            Mockito.when(repo.findBookByTitle(book.getTitle()))
+                    .thenReturn(Optional.of(new Book(book.getId() + 1, book.getTitle(), "lang", 2000, "author")));
+            assertThrows(ResourceAlreadyExistsException.class, () -> service.updateBook(book));
+        }
+
+        @Test
+        @DisplayName("When book was modified since the expected version, should throw exception")
+        void updateBook_preconditionFailed() {
+            var book = TestHelper.getBookMock();
+            Mockito.when(repo.update(book)).thenThrow(new OptimisticLockingFailureException("version"));
+            assertThrows(PreconditionFailedException.class, () -> service.updateBook(book));
+            Mockito.verify(repo).update(book);
+        }
+
+        @Test
+        @DisplayName("When book without version is modified concurrently, should retry the update")
+        void updateBook_concurrentUpdate_retried() {
+            var book = TestHelper.getBookMock();
+            book.setVersion(null);
+            Mockito.when(repo.update(book))
+                    .thenThrow(new OptimisticLockingFailureException("version"))
+                    .thenReturn(Optional.of(book));
+            Book result = service.updateBook(book);
+            assertEquals(book.getId(), result.getId());
+            Mockito.verify(repo, Mockito.times(2)).update(book);
+        }
+
+        @Test
+        @DisplayName("When book without version is modified concurrently again, should throw exception")
+        void updateBook_concurrentUpdate_conflict() {
+            var book = TestHelper.getBookMock();
+            book.setVersion(null);
+            Mockito.when(repo.update(book)).thenThrow(new OptimisticLockingFailureException("version"));
+            assertThrows(ConcurrentUpdateException.class, () -> service.updateBook(book));
+            Mockito.verify(repo, Mockito.times(2)).update(book);
+            Mockito.verifyNoInteractions(responseCache);
         }
 
     }
@@ -140,16 +423,38 @@ class BooksServiceTest {
         @Test
         @DisplayName("When book does not exist, should throw exception")
         void deleteBook_exception() {
-            Mockito.when(repo.find(Mockito.anyInt())).thenReturn(Optional.empty());
-            assertThrows(ResourceNotFoundException.class, () -> service.deleteBook(1));
+            Mockito.when(repo.delete(Mockito.anyInt(), Mockito.isNull())).thenReturn(false);
+            assertThrows(ResourceNotFoundException.class, () -> service.deleteBook(1, null));
         }
 
         @Test
         @DisplayName("When book exists, should delete book")
         void deleteBook() {
             var book = TestHelper.getBookMock();
-            Mockito.when(repo.find(Mockito.anyInt())).thenReturn(Optional.of(book));
-            assertDoesNotThrow(() -> service.deleteBook(book.getId()));
+            Mockito.when(repo.delete(Mockito.anyInt(), Mockito.isNull())).thenReturn(true);
+            assertDoesNotThrow(() -> service.deleteBook(book.getId(), null));
+            Mockito.verify(repo, Mockito.never()).find(Mockito.anyInt());
+            Mockito.verify(responseCache).evictDeleted(book.getId());
+            Mockito.verify(searchIndex).remove(book.getId());
+            Mockito.verify(titleTrie).remove(book.getId());
+        }
+
+        @Test
+        @DisplayName("When book was modified since the expected version, should throw exception")
+        void deleteBook_preconditionFailed() {
+            Mockito.when(repo.delete(1, 0)).thenThrow(new OptimisticLockingFailureException("version"));
+            assertThrows(PreconditionFailedException.class, () -> service.deleteBook(1, 0));
+        }
+
+        @Test
+        @DisplayName("When book is deleted without version while modified concurrently, should retry the delete")
+        void deleteBook_concurrentUpdate_retried() {
+            Mockito.when(repo.delete(1, null))
+                    .thenThrow(new OptimisticLockingFailureException("version"))
+                    .thenReturn(true);
+            service.deleteBook(1, null);
+            Mockito.verify(repo, Mockito.times(2)).delete(1, null);
+            Mockito.verify(responseCache).evictDeleted(1);
         }
 
     }
@@ -160,8 +465,8 @@ class BooksServiceTest {
         @Test
         @DisplayName("When book does not exist, should throw exception")
         void findReviewsOfBook_exception() {
-            Mockito.when(repo.find(Mockito.anyInt())).thenReturn(Optional.empty());
-            assertThrows(ResourceNotFoundException.class, () -> service.findReviews(1));
+            Mockito.when(repo.findReviewsOfBook(Mockito.anyInt(), Mockito.anyInt(), Mockito.anyInt())).thenReturn(Optional.empty());
+            assertThrows(ResourceNotFoundException.class, () -> service.findReviews(1, 20, 0));
         }
 
         @Test
@@ -169,13 +474,13 @@ class BooksServiceTest {
         void findReviewsOfBook_emptyList() {
             // given
             var book = TestHelper.getBookMock();
-            Mockito.when(repo.find(Mockito.anyInt())).thenReturn(Optional.of(book));
-            Mockito.when(repo.findReviewsOfBook(Mockito.anyInt())).thenReturn(new ArrayList<>());
+            Mockito.when(repo.findReviewsOfBook(Mockito.anyInt(), Mockito.anyInt(), Mockito.anyInt()))
+                    .thenReturn(Optional.of(new CursorPage<>(new ArrayList<>(), null)));
             // when
-            List<String> result = service.findReviews(book.getId());
+            CursorPage<Review> result = service.findReviews(book.getId(), 20, 0);
             // then
             assertNotNull(result);
-            assertTrue(result.isEmpty());
+            assertTrue(result.getItems().isEmpty());
         }
 
         @Test
@@ -183,14 +488,49 @@ class BooksServiceTest {
         void findReviewsOfBook_result() {
             // given
             var book = TestHelper.getBookMock();
-            var reviews = TestHelper.getReviewsMock();
-            Mockito.when(repo.find(Mockito.anyInt())).thenReturn(Optional.of(book));
-            Mockito.when(repo.findReviewsOfBook(Mockito.anyInt())).thenReturn(reviews);
+            var reviews = TestHelper.getReviewModelsMock();
+            Mockito.when(repo.findReviewsOfBook(Mockito.anyInt(), Mockito.anyInt(), Mockito.anyInt()))
+                    .thenReturn(Optional.of(new CursorPage<>(reviews, null)));
             // when
-            List<String> result = service.findReviews(book.getId());
+            CursorPage<Review> result = service.findReviews(book.getId(), 20, 0);
             // then
-            assertFalse(result.isEmpty());
-            assertEquals(reviews.size(), result.size());
+            assertFalse(result.getItems().isEmpty());
+            assertEquals(reviews.size(), result.getItems().size());
+        }
+
+        @Test
+        @DisplayName("When page size is too large, should bound it")
+        void findReviewsOfBook_boundedSize() {
+            Mockito.when(repo.findReviewsOfBook(1, BooksService.MAX_REVIEWS_PAGE_SIZE, 0))
+                    .thenReturn(Optional.of(new CursorPage<>(new ArrayList<>(), null)));
+            assertDoesNotThrow(() -> service.findReviews(1, 1_000_000, 0));
+        }
+
+        @Test
+        @DisplayName("When cursor is given, should continue after its review")
+        void findReviewsOfBook_afterCursor() {
+            // given
+            var reviews = TestHelper.getReviewModelsMock();
+            String cursor = ReviewCursor.encode(reviews.get(0));
+            Mockito.when(repo.findReviewsOfBook(1, 20, reviews.get(0).getId()))
+                    .thenReturn(Optional.of(new CursorPage<>(reviews.subList(1, 3), null)));
+            // when
+            CursorPage<Review> result = service.findReviews(1, 20, cursor);
+            // then
+            assertEquals(2, result.getItems().size());
+        }
+
+        @Test
+        @DisplayName("When cursor is invalid, should throw exception")
+        void findReviewsOfBook_invalidCursor() {
+            assertThrows(InvalidCursorException.class, () -> service.findReviews(1, 20, "not a cursor"));
+        }
+
+        @Test
+        @DisplayName("When streaming reviews of nonexistent book, should throw exception")
+        void forEachReview_exception() {
+            Mockito.when(repo.forEachReviewOfBook(Mockito.anyInt(), Mockito.any())).thenReturn(false);
+            assertThrows(ResourceNotFoundException.class, () -> service.forEachReview(1, r -> { }));
         }
 
     }
@@ -201,7 +541,7 @@ class BooksServiceTest {
         @Test
         @DisplayName("When book does not exist, should throw exception")
         void addReview_exception() {
-            Mockito.when(repo.find(Mockito.anyInt())).thenReturn(Optional.empty());
+            Mockito.when(repo.addReview(Mockito.anyInt(), Mockito.anyString())).thenReturn(Optional.empty());
             assertThrows(ResourceNotFoundException.class, () -> service.addReview(1, "Review"));
         }
 
@@ -211,14 +551,15 @@ class BooksServiceTest {
             // given
             var book = TestHelper.getBookMock();
             var review = TestHelper.getReviewMock();
-            Mockito.when(repo.find(Mockito.anyInt())).thenReturn(Optional.of(book));
-            Mockito.when(repo.addReview(Mockito.anyInt(), Mockito.anyString())).thenReturn(review);
+            Mockito.when(repo.addReview(Mockito.anyInt(), Mockito.anyString())).thenReturn(Optional.of(review));
             // when
             String result = service.addReview(book.getId(), review);
             // then
             assertEquals(review, result);
+            Mockito.verify(responseCache).evictReviews(book.getId());
+            Mockito.verify(searchIndex).addReviews(book.getId(), List.of(review));
         }
 
     }
 
-}
\ No newline at end of file
+}
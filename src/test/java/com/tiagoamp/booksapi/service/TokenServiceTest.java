@@ -0,0 +1,56 @@
+package com.tiagoamp.booksapi.service;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.tiagoamp.booksapi.model.AppUser;
+import com.tiagoamp.booksapi.model.Role;
+import com.tiagoamp.booksapi.security.JwtKeyRing;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenServiceTest {
+
+    private final JwtKeyRing keyRing = new JwtKeyRing("1234567890qwertyuiop", "k1", "");
+    private final AppUser user = new AppUser(1, "Spock", "spock@enterprise.com", "secret", Role.ADMIN);
+
+
+    @Test
+    @DisplayName("When generating a token, should sign it with the current key and send its id")
+    void generateToken() {
+        var tokenService = new TokenService(keyRing, 100);
+        var decoded = tokenService.getDecodedTokenFrom(tokenService.generateToken(user));
+        assertEquals("k1", decoded.getKeyId());
+        assertEquals(user.getEmail(), decoded.getSubject());
+        assertEquals("ADMIN", decoded.getClaim(TokenService.ROLES_CLAIM).asString());
+    }
+
+    @Test
+    @DisplayName("When a token was verified, should take it from the cache instead of verifying it again")
+    void getDecodedTokenFrom_cached() {
+        var tokenService = new TokenService(keyRing, 100);
+        String token = tokenService.generateToken(user);
+        assertSame(tokenService.getDecodedTokenFrom(token), tokenService.getDecodedTokenFrom(token));
+        var uncached = new TokenService(keyRing, 0);
+        assertNotSame(uncached.getDecodedTokenFrom(token), uncached.getDecodedTokenFrom(token));
+    }
+
+    @Test
+    @DisplayName("When a token is invalid or expired, should reject it every time")
+    void getDecodedTokenFrom_invalid() {
+        var tokenService = new TokenService(keyRing, 100);
+        String expired = JWT.create().withKeyId("k1").withSubject(user.getEmail())
+                .withExpiresAt(Instant.now().minusSeconds(1)).sign(keyRing.getSigningAlgorithm());
+        String forged = JWT.create().withKeyId("k1").withSubject(user.getEmail())
+                .sign(Algorithm.HMAC256("another secret".getBytes()));
+        for (int i = 0; i < 2; i++) {
+            assertThrows(JWTVerificationException.class, () -> tokenService.getDecodedTokenFrom(expired));
+            assertThrows(JWTVerificationException.class, () -> tokenService.getDecodedTokenFrom(forged));
+        }
+    }
+
+}
@@ -0,0 +1,81 @@
+package com.tiagoamp.booksapi.service;
+
+import com.tiagoamp.booksapi.model.AppUser;
+import com.tiagoamp.booksapi.model.Role;
+import com.tiagoamp.booksapi.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+class UserServiceTest {
+
+    @Mock
+    private UserRepository userRepo;
+
+    private UserService service;
+
+    private final AppUser user = new AppUser(1, "Spock", "spock@enterprise.com", "secret", Role.ADMIN);
+
+
+    @BeforeEach
+    void setUp() {
+        service = new UserService(userRepo, null, null, Duration.ofMinutes(1));
+    }
+
+    @Nested
+    class FindTokenVersionTests {
+
+        @Test
+        @DisplayName("When the version of the user is known, should not read it again")
+        void findTokenVersion_kept() {
+            Mockito.when(userRepo.findByEmail(user.getEmail())).thenReturn(Optional.of(user));
+            assertEquals(Optional.of(0), service.findTokenVersion(user.getEmail(), 0));
+            assertEquals(Optional.of(0), service.findTokenVersion(user.getEmail(), 0));
+            assertEquals(Optional.of(0), service.findTokenVersion(user.getEmail(), null));
+            Mockito.verify(userRepo, Mockito.times(1)).findByEmail(user.getEmail());
+        }
+
+        @Test
+        @DisplayName("When a token carries a newer version, should read the version again")
+        void findTokenVersion_revokedElsewhere() {
+            Mockito.when(userRepo.findByEmail(user.getEmail())).thenReturn(Optional.of(user));
+            assertEquals(Optional.of(0), service.findTokenVersion(user.getEmail(), 0));
+            user.setTokenVersion(1);  // revoked by another instance
+            assertEquals(Optional.of(1), service.findTokenVersion(user.getEmail(), 1));
+            assertEquals(Optional.of(1), service.findTokenVersion(user.getEmail(), 0));  // older tokens are rejected
+            Mockito.verify(userRepo, Mockito.times(2)).findByEmail(user.getEmail());
+        }
+
+        @Test
+        @DisplayName("When the version was kept longer than its time to live, should read it again")
+        void findTokenVersion_expired() {
+            service = new UserService(userRepo, null, null, Duration.ZERO);
+            Mockito.when(userRepo.findByEmail(user.getEmail())).thenReturn(Optional.of(user));
+            assertEquals(Optional.of(0), service.findTokenVersion(user.getEmail(), 0));
+            user.setTokenVersion(1);
+            assertEquals(Optional.of(1), service.findTokenVersion(user.getEmail(), 0));
+        }
+
+        @Test
+        @DisplayName("When the user is unknown, should return empty without keeping it")
+        void findTokenVersion_unknown() {
+            Mockito.when(userRepo.findByEmail("unknown@email.com")).thenReturn(Optional.empty());
+            assertTrue(service.findTokenVersion("unknown@email.com", 0).isEmpty());
+            assertTrue(service.findTokenVersion("unknown@email.com", 0).isEmpty());
+            Mockito.verify(userRepo, Mockito.times(2)).findByEmail("unknown@email.com");
+        }
+
+    }
+
+}
@@ -0,0 +1,64 @@
+package com.tiagoamp.booksapi.util;
+
+import com.tiagoamp.booksapi.TestHelper;
+import com.tiagoamp.booksapi.dto.BookRequest;
+import com.tiagoamp.booksapi.repository.BookEntity;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BookMapperTest {
+
+    private final BookMapper mapper = new BookMapper();
+
+
+    @Test
+    @DisplayName("When mapping a book to entity and back, should keep all values")
+    void toEntity_toModel() {
+        var book = TestHelper.getBookMock();
+        assertEquals(book, mapper.toModel(mapper.toEntity(book)));
+    }
+
+    @Test
+    @DisplayName("When mapping a request, should map a book with no id")
+    void toModel_request() {
+        var request = new BookRequest("title", "lang", 2000, "author");
+        var book = mapper.toModel(request);
+        assertNull(book.getId());
+        assertEquals(request, mapper.toRequest(book));
+    }
+
+    @Test
+    @DisplayName("When mapping a book to responses, should map its values and no reviews")
+    void toResponse() {
+        var book = TestHelper.getBookMock();
+        var response = mapper.toResponse(book);
+        assertEquals(book.getId(), response.getId());
+        assertEquals(book.getTitle(), response.getTitle());
+        assertEquals(book.getAuthors(), response.getAuthors());
+        assertNull(response.getReviews());
+        assertTrue(response.getLinks().isEmpty());
+        var plain = mapper.toPlainResponse(book);
+        assertEquals(book.getYearOfPublication(), plain.getYearOfPublication());
+        assertEquals(book.getLanguage(), plain.getLanguage());
+        assertNull(plain.getReviews());
+    }
+
+    @Test
+    @DisplayName("When copying values, should skip null values")
+    void copyValues_skipNulls() {
+        var destination = TestHelper.getBookEntityMock();
+        var source = new BookEntity(null, "Updated title", null, 1999, null);
+        var copied = mapper.copyValues(source, destination);
+        assertSame(destination, copied);
+        assertEquals(1, copied.getId());
+        assertEquals("Updated title", copied.getTitle());
+        assertEquals("lang 1", copied.getLanguage());
+        assertEquals(1999, copied.getYearOfPublication());
+        assertEquals("author 1", copied.getAuthors());
+        assertEquals(0, copied.getVersion());
+        assertNotNull(copied.getLastModified());
+    }
+
+}
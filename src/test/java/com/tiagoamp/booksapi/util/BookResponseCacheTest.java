@@ -0,0 +1,89 @@
+package com.tiagoamp.booksapi.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.hateoas.MediaTypes;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BookResponseCacheTest {
+
+    private static final BookResponseCache.Variant HAL = new BookResponseCache.Variant(MediaTypes.HAL_JSON, false, "http://localhost:80");
+    private static final BookResponseCache.Variant HAL_WITH_REVIEWS = new BookResponseCache.Variant(MediaTypes.HAL_JSON, true, "http://localhost:80");
+
+    private final BookResponseCache cache = new BookResponseCache(DataSize.ofMegabytes(1), Duration.ofMinutes(1));
+
+
+    @Test
+    @DisplayName("When responses of the same version are cached, should keep all of them")
+    void put_sameVersion() {
+        cache.put(1, 0, 0, 1000, HAL, new byte[] {1});
+        cache.put(1, 0, 0, 1000, HAL_WITH_REVIEWS, new byte[] {2});
+        var entry = cache.get(1);
+        assertArrayEquals(new byte[] {1}, entry.body(HAL));
+        assertArrayEquals(new byte[] {2}, entry.body(HAL_WITH_REVIEWS));
+        assertNull(cache.get(2));
+    }
+
+    @Test
+    @DisplayName("When the book was updated, should drop its responses and ignore responses of the previous version")
+    void evict_staleResponse() {
+        cache.put(1, 0, 0, 1000, HAL, new byte[] {1});
+        cache.evict(1, 1);
+        assertNull(cache.get(1).body(HAL));
+        cache.put(1, 0, 0, 1000, HAL, new byte[] {1});  // serialized before the update
+        assertNull(cache.get(1).body(HAL));
+        cache.put(1, 1, 0, 2000, HAL, new byte[] {3});
+        assertArrayEquals(new byte[] {3}, cache.get(1).body(HAL));
+        assertEquals(2000, cache.get(1).lastModified());
+    }
+
+    @Test
+    @DisplayName("When the book was deleted, should ignore any response of it")
+    void evictDeleted() {
+        cache.evictDeleted(1);
+        cache.put(1, 5, 0, 1000, HAL, new byte[] {1});
+        assertNull(cache.get(1).body(HAL));
+    }
+
+    @Test
+    @DisplayName("When a review was added, should drop only the responses with embedded reviews")
+    void evictReviews() {
+        cache.put(1, 0, 0, 1000, HAL, new byte[] {1});
+        cache.put(1, 0, 0, 1000, HAL_WITH_REVIEWS, new byte[] {2});
+        cache.evictReviews(1);
+        assertArrayEquals(new byte[] {1}, cache.get(1).body(HAL));
+        assertNull(cache.get(1).body(HAL_WITH_REVIEWS));
+    }
+
+    @Test
+    @DisplayName("When a review was added while a response embedding reviews was serialized, should not cache it")
+    void evictReviews_staleResponse() {
+        cache.put(1, 0, cache.reviewsStamp(), 1000, HAL, new byte[] {1});
+        long stamp = cache.reviewsStamp();  // the reviews are read
+        cache.evictReviews(1);  // a review is added
+        cache.put(1, 0, stamp, 1000, HAL_WITH_REVIEWS, new byte[] {2});  // serialized with the reviews read before
+        assertNull(cache.get(1).body(HAL_WITH_REVIEWS));
+        assertArrayEquals(new byte[] {1}, cache.get(1).body(HAL));
+        cache.put(1, 0, cache.reviewsStamp(), 1000, HAL_WITH_REVIEWS, new byte[] {3});  // reviews read after it
+        assertArrayEquals(new byte[] {3}, cache.get(1).body(HAL_WITH_REVIEWS));
+    }
+
+    @Test
+    @DisplayName("When a review was added to a book without cached responses, should not cache responses embedding older reviews")
+    void evictReviews_notCached_staleResponse() {
+        long stamp = cache.reviewsStamp();
+        cache.evictReviews(1);
+        cache.put(1, 0, stamp, 1000, HAL_WITH_REVIEWS, new byte[] {2});
+        assertNull(cache.get(1).body(HAL_WITH_REVIEWS));
+        cache.put(1, 0, stamp, 1000, HAL, new byte[] {1});  // without reviews, cached as usual
+        assertArrayEquals(new byte[] {1}, cache.get(1).body(HAL));
+        cache.evict(1, 1);  // the review write is still known after the book is updated
+        cache.put(1, 1, stamp, 2000, HAL_WITH_REVIEWS, new byte[] {3});
+        assertNull(cache.get(1).body(HAL_WITH_REVIEWS));
+    }
+
+}
@@ -0,0 +1,91 @@
+package com.tiagoamp.booksapi.util;
+
+import com.tiagoamp.booksapi.model.Book;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BookSearchIndexTest {
+
+    private final BookSearchIndex index = new BookSearchIndex();
+
+
+    @Test
+    @DisplayName("When tokenizing, should split words ignoring case, accents and punctuation")
+    void tokens() {
+        assertEquals(List.of("o", "alienista", "machado", "de", "assis", "1882"),
+                BookSearchIndex.tokens("O Alienista: Machado-de-Assís (1882)"));
+        assertTrue(BookSearchIndex.tokens("  ").isEmpty());
+    }
+
+    @Test
+    @DisplayName("When words are in titles, authors and reviews, should rank title matches first and count all matches")
+    void search_ranked() {
+        index.put(book(1, "The Time Machine", "H. G. Wells"), List.of());
+        index.put(book(2, "Frankenstein", "Mary Shelley"), List.of("a machine made of flesh"));
+        index.put(book(3, "Machine Learning", "Tom Mitchell"), List.of("a classic about machine learning"));
+        index.put(book(4, "Dracula", "Bram Stoker"), List.of());
+        var hits = index.search("MACHINE learning", 0, 10);
+        assertEquals(3, hits.total());
+        assertEquals(List.of(3, 1, 2), hits.books().stream().map(Book::getId).toList());
+        assertEquals(List.of(4), index.search("stoker", 0, 10).books().stream().map(Book::getId).toList());
+        assertEquals(0, index.search("nothing", 0, 10).total());
+    }
+
+    @Test
+    @DisplayName("When paging, should return the requested slice of the ranking with the total of matches")
+    void search_paged() {
+        for (int id = 1; id <= 5; id++)
+            index.put(book(id, "Title " + id, "Author"), List.of());
+        var hits = index.search("author", 2, 2);
+        assertEquals(5, hits.total());
+        assertEquals(List.of(3, 4), hits.books().stream().map(Book::getId).toList());  // same score, by id
+        assertTrue(index.search("author", 6, 2).books().isEmpty());
+    }
+
+    @Test
+    @DisplayName("When paging far beyond the matches, should keep no more books than the matches")
+    void search_deepPage() {
+        for (int id = 1; id <= 5; id++)
+            index.put(book(id, "Title " + id, "Author"), List.of());
+        var hits = index.search("author", Integer.MAX_VALUE - 1, 100);  // offset + limit overflows an int
+        assertEquals(5, hits.total());
+        assertTrue(hits.books().isEmpty());
+        var counted = index.search("author title", 0, 0);
+        assertEquals(5, counted.total());
+        assertTrue(counted.books().isEmpty());
+    }
+
+    @Test
+    @DisplayName("When a book is updated, should replace the terms of its values and keep the terms of its reviews")
+    void put_updated() {
+        index.put(book(1, "Old Title", "Author"), List.of("great reading"));
+        index.put(book(1, "New Title", "Author"));
+        assertEquals(0, index.search("old", 0, 10).total());
+        assertEquals("New Title", index.search("new", 0, 10).books().get(0).getTitle());
+        assertEquals(1, index.search("reading", 0, 10).total());
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    @DisplayName("When reviews are added or the book removed, should find it accordingly")
+    void addReviews_remove() {
+        index.put(book(1, "Title", "Author"));
+        index.addReviews(1, List.of("unforgettable"));
+        index.addReviews(2, List.of("not indexed"));
+        assertEquals(1, index.search("unforgettable", 0, 10).total());
+        assertEquals(0, index.search("indexed", 0, 10).total());
+        index.remove(1);
+        assertEquals(0, index.search("title unforgettable", 0, 10).total());
+        assertEquals(0, index.size());
+    }
+
+
+    private Book book(int id, String title, String authors) {
+        return new Book(id, title, "English", 2000, authors);
+    }
+
+}
@@ -0,0 +1,65 @@
+package com.tiagoamp.booksapi.util;
+
+import com.tiagoamp.booksapi.model.Book;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BookTitleTrieTest {
+
+    private final BookTitleTrie trie = new BookTitleTrie();
+    private int nextId = 1;
+
+
+    @Test
+    @DisplayName("When normalizing, should ignore case, accents and repeated or leading spaces")
+    void key() {
+        assertEquals("sao bernardo ", BookTitleTrie.key("  São   Bernardo "));
+    }
+
+    @Test
+    @DisplayName("When suggesting, should return titles starting with the prefix in alphabetical order up to the limit")
+    void suggest() {
+        List.of("Dom Quixote", "Dom Casmurro", "Dom", "Domingo", "O Alienista", "Iracema").forEach(this::put);
+        assertEquals(List.of("Dom", "Dom Casmurro", "Dom Quixote", "Domingo"), trie.suggest("dom", 10));
+        assertEquals(List.of("Dom Casmurro", "Dom Quixote"), trie.suggest("DOM ", 10));
+        assertEquals(List.of("Dom", "Dom Casmurro"), trie.suggest("do", 2));
+        assertEquals(List.of("Dom Casmurro"), trie.suggest("dom c", 10));  // prefix ending inside an edge
+        assertEquals(List.of("Iracema"), trie.suggest("Iracema", 10));
+        assertTrue(trie.suggest("dom x", 10).isEmpty());
+        assertTrue(trie.suggest("Iracemas", 10).isEmpty());
+        assertTrue(trie.suggest(" ", 10).isEmpty());
+    }
+
+    @Test
+    @DisplayName("When titles only differ by accents, should suggest both by book id")
+    void suggest_sameKey() {
+        trie.put(new Book(2, "Sao Paulo", "Portuguese", 2000, "Author"));
+        trie.put(new Book(1, "São Paulo", "Portuguese", 2000, "Author"));
+        assertEquals(List.of("São Paulo", "Sao Paulo"), trie.suggest("sao", 10));
+    }
+
+    @Test
+    @DisplayName("When a book is updated or removed, should suggest its new title only or nothing")
+    void put_updated_remove() {
+        trie.put(new Book(1, "Old Title", "English", 2000, "Author"));
+        trie.put(new Book(2, "Old Times", "English", 2000, "Author"));
+        trie.put(new Book(1, "New Title", "English", 2000, "Author"));
+        assertEquals(List.of("Old Times"), trie.suggest("old", 10));
+        assertEquals(List.of("New Title"), trie.suggest("new", 10));
+        trie.remove(2);
+        trie.remove(3);
+        assertTrue(trie.suggest("old", 10).isEmpty());
+        assertEquals(List.of("New Title"), trie.suggest("n", 10));
+        assertEquals(1, trie.size());
+    }
+
+
+    private void put(String title) {
+        trie.put(new Book(nextId++, title, "English", 2000, "Author"));
+    }
+
+}
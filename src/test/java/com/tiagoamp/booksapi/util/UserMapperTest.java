@@ -0,0 +1,49 @@
+package com.tiagoamp.booksapi.util;
+
+import com.tiagoamp.booksapi.dto.AppUserRequest;
+import com.tiagoamp.booksapi.model.AppUser;
+import com.tiagoamp.booksapi.model.Role;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserMapperTest {
+
+    private final UserMapper mapper = new UserMapper();
+
+
+    @Test
+    @DisplayName("When mapping a request, should map the role by name")
+    void toModel() {
+        var request = new AppUserRequest();
+        request.setName("James Kirk");
+        request.setEmail("james@enterprise.com");
+        request.setPassword("123456");
+        request.setRole("ADMIN");
+        var user = mapper.toModel(request);
+        assertNull(user.getId());
+        assertEquals(Role.ADMIN, user.getRole());
+        assertEquals(request, mapper.toRequest(user));
+    }
+
+    @Test
+    @DisplayName("When mapping a request with an unknown role, should throw exception")
+    void toModel_unknownRole() {
+        var request = new AppUserRequest();
+        request.setRole("CAPTAIN");
+        assertThrows(IllegalArgumentException.class, () -> mapper.toModel(request));
+    }
+
+    @Test
+    @DisplayName("When mapping a user to response, should not expose the password")
+    void toResponse() {
+        var user = new AppUser(1, "Spock", "spock@enterprise.com", "secret", Role.USER);
+        var response = mapper.toResponse(user);
+        assertEquals(1, response.getId());
+        assertEquals("Spock", response.getName());
+        assertEquals("spock@enterprise.com", response.getEmail());
+        assertEquals("USER", response.getRole());
+    }
+
+}